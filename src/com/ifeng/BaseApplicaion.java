@@ -3,6 +3,7 @@ package com.ifeng;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
 
 import android.app.ActivityManager;
@@ -19,10 +20,15 @@ import com.baidu.mapapi.BMapManager;
 import com.baidu.mapapi.MKGeneralListener;
 import com.baidu.mapapi.map.MKEvent;
 import com.ifeng.android.BuildConfig;
+import com.ifeng.util.ByteArrayPool;
 import com.ifeng.util.CrashHandler;
 import com.ifeng.util.download.DownloadServiceCallback;
 import com.ifeng.util.logging.Configuration;
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.requestor.AbstractRequestor;
+import com.ifeng.util.net.requestor.CacheWarmUp;
+import com.ifeng.util.net.requestor.CacheWriteQueue;
+import com.ifeng.util.net.requestor.RequestMemoryCache;
 
 /**
  * 基类application，实现了地图sdk以及下载管理服务，以及全局的配置信息
@@ -85,6 +91,15 @@ public class BaseApplicaion extends Application implements
 	public void onCreate() {
 		super.onCreate();
 
+		// 尽早开始并行读取启动关键页面的缓存
+		List<AbstractRequestor> warmUpRequestors = getWarmUpRequestors();
+		if (warmUpRequestors != null) {
+			for (AbstractRequestor requestor : warmUpRequestors) {
+				CacheWarmUp.register(requestor);
+			}
+		}
+		CacheWarmUp.start();
+
 		// 初始化定位服务
 		initLocationService();
 		// 初始化地图引擎
@@ -96,10 +111,38 @@ public class BaseApplicaion extends Application implements
 
 	@Override
 	public void onTerminate() {
+		// 写入尚未保存的请求缓存
+		CacheWriteQueue.flush();
 		clearReference();
 		super.onTerminate();
 	}
 
+	@Override
+	public void onLowMemory() {
+		super.onLowMemory();
+		RequestMemoryCache.clear();
+		ByteArrayPool.clear();
+	}
+
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		// 根据内存状态释放请求数据的内存缓存，进入后台后不再保留缓冲区
+		RequestMemoryCache.trimMemory(level);
+		if (level >= TRIM_MEMORY_BACKGROUND) {
+			ByteArrayPool.clear();
+		}
+	}
+
+	/**
+	 * 启动时需要预热缓存的requestor，子类可重写返回首页等启动关键页面所使用的requestor
+	 * 
+	 * @return 可为null
+	 */
+	protected List<AbstractRequestor> getWarmUpRequestors() {
+		return null;
+	}
+
 	@Override
 	public void onDownloadServiceCreate() {
 
@@ -119,6 +162,7 @@ public class BaseApplicaion extends Application implements
 	 * @param context
 	 */
 	public void AppExit() {
+		CacheWriteQueue.flush();
 		try {
 			ActivityManager activityMgr = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
 			activityMgr.restartPackage(getPackageName());
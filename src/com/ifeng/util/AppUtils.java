@@ -487,22 +487,24 @@ public final class AppUtils {
 			return null;
 		}
 		byte[] b = null;
+		// 解压数据通常为压缩数据的数倍，预分配以减少扩容
+		PooledByteArrayOutputStream baos = new PooledByteArrayOutputStream(
+				Math.min(data.length * 4, ByteArrayPool.MAX_BUFFER_SIZE));
 		try {
 			ByteArrayInputStream bis = new ByteArrayInputStream(data);
 			GZIPInputStream gzip = new GZIPInputStream(bis);
-			byte[] buf = new byte[NUM_1024];
-			int num = -1;
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			while ((num = gzip.read(buf, 0, buf.length)) != -1) {
-				baos.write(buf, 0, num);
-			}
+			baos.readFrom(gzip);
 			b = baos.toByteArray();
-			baos.flush();
-			baos.close();
 			gzip.close();
 			bis.close();
 		} catch (Exception ex) {
 			ex.printStackTrace();
+		} finally {
+			try {
+				baos.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		return b;
 	}
@@ -0,0 +1,145 @@
+package com.ifeng.util;
+
+import java.util.LinkedList;
+
+/**
+ * 按大小分级的byte数组缓冲池，用于网络数据读取、解压等场景，避免每次读取都分配新的缓冲区造成频繁GC。
+ * 缓冲区的大小为2的幂，从{@link #MIN_BUFFER_SIZE}到{@link #MAX_BUFFER_SIZE}，更大的缓冲区不进行缓存；
+ * 池中缓存的总大小不超过{@link #setMaxPoolSize(int)}设置的上限。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class ByteArrayPool {
+
+	/** 最小的缓冲区大小 */
+	public static final int MIN_BUFFER_SIZE = 1024;
+	/** 可缓存的最大缓冲区大小 */
+	public static final int MAX_BUFFER_SIZE = 256 * 1024;
+	/** 默认缓冲池的总大小上限 */
+	public static final int DEFAULT_MAX_POOL_SIZE = 512 * 1024;
+
+	/** 最小缓冲区大小的位数 */
+	private static final int MIN_BUFFER_BITS = 10;
+	/** 大小级别数量 */
+	private static final int SIZE_CLASS_COUNT = 9;
+
+	/** 各大小级别的空闲缓冲区 */
+	@SuppressWarnings("unchecked")
+	private static final LinkedList<byte[]>[] BUFFERS = new LinkedList[SIZE_CLASS_COUNT];
+
+	static {
+		for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+			BUFFERS[i] = new LinkedList<byte[]>();
+		}
+	}
+
+	/** 缓冲池的总大小上限 */
+	private static int sMaxPoolSize = DEFAULT_MAX_POOL_SIZE;
+	/** 当前缓存的总大小 */
+	private static int sPoolSize;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private ByteArrayPool() {
+	}
+
+	/**
+	 * 获取不小于指定大小的缓冲区，使用完毕后通过{@link #release(byte[])}归还
+	 * 
+	 * @param minSize
+	 *            最小大小
+	 * @return 缓冲区，长度可能大于minSize，内容未清空
+	 */
+	public static byte[] acquire(int minSize) {
+		int sizeClass = getSizeClass(minSize);
+		if (sizeClass < 0) {
+			return new byte[minSize];
+		}
+		synchronized (ByteArrayPool.class) {
+			byte[] buffer = BUFFERS[sizeClass].poll();
+			if (buffer != null) {
+				sPoolSize -= buffer.length;
+				return buffer;
+			}
+		}
+		return new byte[MIN_BUFFER_SIZE << sizeClass];
+	}
+
+	/**
+	 * 归还缓冲区，归还后调用者不可再使用该缓冲区
+	 * 
+	 * @param buffer
+	 *            可为null，非本缓冲池分配的大小将被忽略
+	 */
+	public static void release(byte[] buffer) {
+		if (buffer == null) {
+			return;
+		}
+		int sizeClass = getSizeClass(buffer.length);
+		if (sizeClass < 0 || (MIN_BUFFER_SIZE << sizeClass) != buffer.length) {
+			return;
+		}
+		synchronized (ByteArrayPool.class) {
+			if (sPoolSize + buffer.length > sMaxPoolSize) {
+				return;
+			}
+			BUFFERS[sizeClass].add(buffer);
+			sPoolSize += buffer.length;
+		}
+	}
+
+	/**
+	 * 设置缓冲池的总大小上限，超出部分立即释放
+	 * 
+	 * @param maxPoolSize
+	 */
+	public static synchronized void setMaxPoolSize(int maxPoolSize) {
+		sMaxPoolSize = Math.max(0, maxPoolSize);
+		trimToSize(sMaxPoolSize);
+	}
+
+	/**
+	 * 释放所有缓存的缓冲区，可在内存不足时调用
+	 */
+	public static synchronized void clear() {
+		trimToSize(0);
+	}
+
+	/**
+	 * @return 当前缓存的总大小
+	 */
+	public static synchronized int getPoolSize() {
+		return sPoolSize;
+	}
+
+	/**
+	 * 从大到小释放缓冲区，直到总大小不超过上限
+	 * 
+	 * @param maxSize
+	 */
+	private static void trimToSize(int maxSize) {
+		for (int i = SIZE_CLASS_COUNT - 1; i >= 0 && sPoolSize > maxSize; i--) {
+			while (sPoolSize > maxSize && !BUFFERS[i].isEmpty()) {
+				sPoolSize -= BUFFERS[i].poll().length;
+			}
+		}
+	}
+
+	/**
+	 * 计算容纳指定大小所需的级别
+	 * 
+	 * @param size
+	 * @return 超出可缓存的最大缓冲区时返回-1
+	 */
+	private static int getSizeClass(int size) {
+		if (size > MAX_BUFFER_SIZE) {
+			return -1;
+		}
+		if (size <= MIN_BUFFER_SIZE) {
+			return 0;
+		}
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_BUFFER_BITS;
+	}
+}
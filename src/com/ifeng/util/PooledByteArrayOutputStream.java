@@ -0,0 +1,114 @@
+package com.ifeng.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * 使用{@link ByteArrayPool}中缓冲区的ByteArrayOutputStream，扩容时从缓冲池获取更大的缓冲区并归还原缓冲区。
+ * 可通过{@link #toString(String)}、{@link #toInputStream()}直接访问内部缓冲区，不再复制数据；
+ * 使用完毕后需要调用{@link #close()}归还缓冲区，之后不可再使用。
+ * 
+ * @author Calvin
+ * 
+ */
+public class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+	/** 默认初始大小 */
+	private static final int DEFAULT_SIZE = 4 * 1024;
+
+	/**
+	 * 构造
+	 */
+	public PooledByteArrayOutputStream() {
+		this(DEFAULT_SIZE);
+	}
+
+	/**
+	 * 构造
+	 * 
+	 * @param size
+	 *            初始大小，例如已知的数据长度
+	 */
+	public PooledByteArrayOutputStream(int size) {
+		buf = ByteArrayPool.acquire(Math.max(size, ByteArrayPool.MIN_BUFFER_SIZE));
+	}
+
+	@Override
+	public synchronized void write(int oneByte) {
+		expand(1);
+		super.write(oneByte);
+	}
+
+	@Override
+	public synchronized void write(byte[] buffer, int offset, int len) {
+		expand(len);
+		super.write(buffer, offset, len);
+	}
+
+	/**
+	 * 从数据流中读取全部数据，读取使用缓冲池中的缓冲区
+	 * 
+	 * @param in
+	 * @throws IOException
+	 */
+	public void readFrom(InputStream in) throws IOException {
+		byte[] buffer = ByteArrayPool.acquire(ByteArrayPool.MIN_BUFFER_SIZE * 4);
+		try {
+			int len;
+			while ((len = in.read(buffer, 0, buffer.length)) != -1) {
+				write(buffer, 0, len);
+			}
+		} finally {
+			ByteArrayPool.release(buffer);
+		}
+	}
+
+	/**
+	 * 以内部缓冲区构造数据流，不复制数据，在{@link #close()}之前有效
+	 * 
+	 * @return
+	 */
+	public synchronized InputStream toInputStream() {
+		return new ByteArrayInputStream(buf, 0, count);
+	}
+
+	/**
+	 * 直接从内部缓冲区解码字符串，不复制数据
+	 */
+	@Override
+	public synchronized String toString(String charsetName)
+			throws UnsupportedEncodingException {
+		return new String(buf, 0, count, charsetName);
+	}
+
+	/**
+	 * 归还缓冲区，之后不可再使用
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (buf != null) {
+			ByteArrayPool.release(buf);
+			buf = null;
+		}
+		super.close();
+	}
+
+	/**
+	 * 确保缓冲区能再容纳指定长度的数据
+	 * 
+	 * @param len
+	 */
+	private void expand(int len) {
+		if (count + len <= buf.length) {
+			return;
+		}
+		byte[] newBuf = ByteArrayPool.acquire(Math.max(count + len,
+				buf.length * 2));
+		System.arraycopy(buf, 0, newBuf, 0, count);
+		ByteArrayPool.release(buf);
+		buf = newBuf;
+	}
+}
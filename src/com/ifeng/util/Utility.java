@@ -1,7 +1,6 @@
 package com.ifeng.util;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -31,6 +30,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Random;
+import java.util.zip.GZIPInputStream;
 
 import org.apache.http.conn.util.InetAddressUtils;
 
@@ -48,9 +48,7 @@ import android.content.pm.PackageManager;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Resources;
 import android.database.Cursor;
-import android.net.ConnectivityManager;
 import android.net.DhcpInfo;
-import android.net.NetworkInfo;
 import android.net.Uri;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
@@ -75,7 +73,8 @@ import android.view.inputmethod.InputMethodManager;
 
 import com.ifeng.BaseApplicaion;
 import com.ifeng.util.logging.Log;
-import com.ifeng.util.net.ConnectManager;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
 
 /**
  * 提供一些常用工具方法.
@@ -677,22 +676,7 @@ public final class Utility {
 	 * @return true 表示有可用网络，false 表示无可用网络
 	 */
 	public static boolean isNetWorkEnabled(Context context) {
-
-		ConnectivityManager manager = (ConnectivityManager) context
-				.getApplicationContext().getSystemService(
-						Context.CONNECTIVITY_SERVICE);
-
-		if (manager == null) {
-			return false;
-		}
-
-		for (NetworkInfo info : manager.getAllNetworkInfo()) {
-			if (info != null && info.isConnected()) {
-				return true;
-			}
-		}
-
-		return false;
+		return NetworkMonitor.getInstance(context).isConnected();
 	}
 
 	/**
@@ -703,26 +687,12 @@ public final class Utility {
 	 * @return true 是wifi网络，false 非wifi网络
 	 */
 	public static boolean isWifiNetWork(Context context) {
-		String networktype = "NotAvaliable";
-		ConnectivityManager manager = (ConnectivityManager) context
-				.getApplicationContext().getSystemService(
-						Context.CONNECTIVITY_SERVICE);
-		if (manager != null) {
-			NetworkInfo networkinfo = manager.getActiveNetworkInfo();
-			if (networkinfo != null && networkinfo.isAvailable()) {
-				networktype = networkinfo.getTypeName().toLowerCase();
-				if (networktype.equalsIgnoreCase("wifi")) {
-					return true;
-				}
-			} else {
-				// 无网环境
-				return true;
-			}
-		} else {
-			// 无网环境
+		NetworkState state = NetworkMonitor.getInstance(context).getState();
+		// 无网环境
+		if (!state.isConnected()) {
 			return true;
 		}
-		return false;
+		return state.isWifi();
 	}
 
 	/**
@@ -733,8 +703,8 @@ public final class Utility {
 	 * @return network-type wifi或具体apn
 	 */
 	public static String getCurrentNetWorkType(Context context) {
-		ConnectManager cm = new ConnectManager(context);
-		return cm.getNetType();
+		return NetworkMonitor.getInstance(context).getConnectManager()
+				.getNetType();
 	}
 
 	/**
@@ -745,72 +715,10 @@ public final class Utility {
 	 * @return WF 2G 3G 4G，或空 如果没网
 	 */
 	public static String getWifiOr2gOr3G(Context context) {
-		String networkType = "";
-		if (context != null) {
-			ConnectivityManager cm = (ConnectivityManager) context
-					.getApplicationContext().getSystemService(
-							Context.CONNECTIVITY_SERVICE);
-			NetworkInfo activeNetInfo = cm.getActiveNetworkInfo();
-			if (activeNetInfo != null
-					&& activeNetInfo.isConnectedOrConnecting()) { // 有网
-				networkType = activeNetInfo.getTypeName().toLowerCase();
-				if (networkType.equals("wifi")) {
-					networkType = "WF";
-				} else { // 移动网络
-					// //如果使用移动网络，则取得apn
-					// apn = activeNetInfo.getExtraInfo();
-					// 将移动网络具体类型归一化到2G 3G 4G
-					networkType = "2G"; // 默认是2G
-					int subType = activeNetInfo.getSubtype();
-					switch (subType) {
-					case TelephonyManager.NETWORK_TYPE_1xRTT:
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_CDMA: // IS95
-						break;
-					case TelephonyManager.NETWORK_TYPE_EDGE: // 2.75
-						break;
-					case TelephonyManager.NETWORK_TYPE_EVDO_0:
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_EVDO_A:
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_GPRS: // 2.5
-						break;
-					case TelephonyManager.NETWORK_TYPE_HSDPA: // 3.5
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_HSPA: // 3.5
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_HSUPA:
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_UMTS:
-						networkType = "3G";
-						break;
-					case TelephonyManager.NETWORK_TYPE_EHRPD:
-						networkType = "3G";
-						break; // ~ 1-2 Mbps
-					case TelephonyManager.NETWORK_TYPE_EVDO_B:
-						networkType = "3G";
-						break; // ~ 5 Mbps
-					case TelephonyManager.NETWORK_TYPE_HSPAP:
-						networkType = "3G";
-						break; // ~ 10-20 Mbps
-					case TelephonyManager.NETWORK_TYPE_IDEN:
-						break; // ~25 kbps
-					case TelephonyManager.NETWORK_TYPE_LTE:
-						networkType = "4G";
-						break; // ~ 10+ Mbps
-					default:
-						break;
-					}
-				} // end 移动网络if
-			} // end 有网的if
+		if (context == null) {
+			return "";
 		}
-		return networkType;
+		return NetworkMonitor.getInstance(context).getState().getGeneration();
 	}
 
 	/**
@@ -1123,34 +1031,27 @@ public final class Utility {
 	 */
 	public static String recieveData(InputStream is, boolean isGzip) {
 		String s = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		if (is == null) {
 			if (DEBUG) {
 				Log.d(TAG, "recieveData inputstream is null.");
 			}
 			return null;
 		}
+		PooledByteArrayOutputStream baos = new PooledByteArrayOutputStream();
 		try {
-			// os = new BufferedOutputStream();
-			byte[] buff = new byte[BUFFERSIZE];
-			int readed = -1;
-			while ((readed = is.read(buff)) != -1) {
-				baos.write(buff, 0, readed);
-			}
-			byte[] result = null;
-			if (isGzip) {
-				result = AppUtils.unGZip(baos.toByteArray());
-			} else {
-				result = baos.toByteArray();
-			}
-			if (result == null) {
-				return null;
-			}
-			s = new String(result, "utf-8");
-			is.close();
-			baos.close();
+			// 边读取边解压，数据直接写入缓冲池中的缓冲区并从中解码
+			InputStream in = isGzip ? new GZIPInputStream(is, BUFFERSIZE) : is;
+			baos.readFrom(in);
+			s = baos.toString("utf-8");
+			in.close();
 		} catch (Exception e) {
 			e.printStackTrace();
+		} finally {
+			try {
+				baos.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		if (DEBUG) {
 			Log.s(TAG, "服务器下发数据:" + s);
@@ -1876,13 +1777,21 @@ public final class Utility {
 	 * @return 字符串
 	 */
 	public static String getStringFromInput(InputStream inputStream) {
-
-		byte[] buf = getByteFromInputStream(inputStream);
-		if (buf != null) {
-			return new String(buf);
+		if (inputStream == null) {
+			return null;
 		}
 
-		return null;
+		PooledByteArrayOutputStream bos = new PooledByteArrayOutputStream();
+		try {
+			readFromInputStream(inputStream, bos);
+			return bos.toString();
+		} finally {
+			try {
+				bos.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
 	}
 
 	/**
@@ -1897,24 +1806,10 @@ public final class Utility {
 			return null;
 		}
 
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-
-		byte[] buffer = new byte[1024]; // SUPPRESS CHECKSTYLE
-		do {
-			int len = 0;
-			try {
-				len = inputStream.read(buffer, 0, buffer.length);
-			} catch (IOException e) {
-				e.printStackTrace();
-			}
-			if (len != -1) {
-				bos.write(buffer, 0, len);
-			} else {
-				break;
-			}
-		} while (true);
+		PooledByteArrayOutputStream bos = new PooledByteArrayOutputStream();
+		readFromInputStream(inputStream, bos);
 
-		buffer = bos.toByteArray();
+		byte[] buffer = bos.toByteArray();
 		try {
 			bos.close();
 		} catch (IOException e) {
@@ -1924,6 +1819,23 @@ public final class Utility {
 		return buffer;
 	}
 
+	/**
+	 * 将输入流读入缓冲池中的缓冲区，读取失败时保留已读取的数据
+	 * 
+	 * @param inputStream
+	 *            输入流
+	 * @param bos
+	 *            输出
+	 */
+	private static void readFromInputStream(InputStream inputStream,
+			PooledByteArrayOutputStream bos) {
+		try {
+			bos.readFrom(inputStream);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * 读取文本文件内容
 	 * 
@@ -44,6 +44,9 @@ import android.os.Process;
 import android.text.TextUtils;
 
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
+import com.ifeng.util.net.NetworkMonitor.OnNetworkChangedListener;
 
 /**
  * Performs the background downloads requested by applications that use the
@@ -59,6 +62,18 @@ public class DownloadService extends Service {
 	/** Observer to get notified when the content observer's data changes */
 	private DownloadManagerContentObserver mObserver;
 
+	/** 网络恢复或切换时，重新检查等待网络的下载任务 */
+	private final OnNetworkChangedListener mOnNetworkChangedListener = new OnNetworkChangedListener() {
+
+		@Override
+		public void onNetworkChanged(NetworkState oldState,
+				NetworkState newState) {
+			if (newState.isConnected()) {
+				updateFromProvider();
+			}
+		}
+	};
+
 	/** Class to handle Notification Manager updates */
 	private DownloadNotification mNotifier;
 
@@ -287,6 +302,8 @@ public class DownloadService extends Service {
 				mMediaScannerConnectionClient);
 
 		mNotifier = new DownloadNotification(this, mSystemFacade);
+		NetworkMonitor.getInstance(this).addOnNetworkChangedListener(
+				mOnNetworkChangedListener);
 		// 如果下载启动时，取消所有的notification,则会导致更新提示的notification也消失
 		// mSystemFacade.cancelAllNotifications();
 
@@ -305,6 +322,8 @@ public class DownloadService extends Service {
 	@Override
 	public void onDestroy() {
 		getContentResolver().unregisterContentObserver(mObserver);
+		NetworkMonitor.getInstance(this).removeOnNetworkChangedListener(
+				mOnNetworkChangedListener);
 		if (Constants.LOGVV) {
 			Log.v(Constants.TAG, "Service onDestroy");
 		}
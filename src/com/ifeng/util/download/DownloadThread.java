@@ -31,6 +31,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.params.HttpProtocolParams;
 
 import android.content.ContentValues;
 import android.content.Context;
@@ -44,7 +45,7 @@ import com.ifeng.android.R;
 import com.ifeng.util.AppUtils;
 import com.ifeng.util.logging.Log;
 import com.ifeng.util.logging.Utils;
-import com.ifeng.util.net.ProxyHttpClient;
+import com.ifeng.util.net.SharedHttpClient;
 
 /**
  * Runs an actual download
@@ -207,7 +208,7 @@ public class DownloadThread extends Thread {
 		Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
 
 		State state = new State(mInfo);
-		ProxyHttpClient client = null;
+		HttpClient client = null;
 		PowerManager.WakeLock wakeLock = null;
 		int finalStatus = Downloads.Impl.STATUS_UNKNOWN_ERROR;
 
@@ -222,7 +223,7 @@ public class DownloadThread extends Thread {
 				Log.v(Constants.TAG, "initiating download for " + mInfo.mUri);
 			}
 
-			client = new ProxyHttpClient(mContext, userAgent());
+			client = SharedHttpClient.getHttpClient(mContext);
 			boolean finished = false;
 			while (!finished) {
 				Log.i(Constants.TAG, "Initiating request for download "
@@ -271,10 +272,6 @@ public class DownloadThread extends Thread {
 				wakeLock.release();
 				wakeLock = null;
 			}
-			if (client != null) {
-				client.close();
-				client = null;
-			}
 			cleanupDestination(state, finalStatus);
 
 			notifyDownloadCompleted(finalStatus, state.mCountRetry,
@@ -377,7 +374,7 @@ public class DownloadThread extends Thread {
 	 * @throws RetryDownload
 	 *             RetryDownload
 	 */
-	private void executeDownload(State state, ProxyHttpClient client,
+	private void executeDownload(State state, HttpClient client,
 			HttpGet request) throws StopRequest, RetryDownload {
 		InnerState innerState = new InnerState();
 
@@ -389,7 +386,7 @@ public class DownloadThread extends Thread {
 		// check just before sending the request to avoid using an invalid
 		// connection at all
 		checkConnectivity(state);
-		if (client.isWap()) {
+		if (SharedHttpClient.isWap()) {
 			if (Constants.LOGV) {
 				Log.d(Constants.TAG, "use wap download ");
 			}
@@ -451,7 +448,7 @@ public class DownloadThread extends Thread {
 	 *            buffer size
 	 */
 	private void wapDownload(State state, InnerState innerState,
-			ProxyHttpClient client, HttpGet request, byte[] data)
+			HttpClient client, HttpGet request, byte[] data)
 			throws StopRequest, RetryDownload {
 		if (Constants.LOGV) {
 			Log.d(Constants.TAG, "mInfo.CurrentBytes = " + mInfo.mCurrentBytes);
@@ -506,12 +503,18 @@ public class DownloadThread extends Thread {
 			}
 			HttpGet waprequest = new HttpGet(state.mRequestUri);
 			waprequest.addHeader("Range", "bytes=" + begin + "-" + end);
+			HttpProtocolParams.setUserAgent(waprequest.getParams(), userAgent());
 
-			response = sendRequest(state, client, waprequest);
-			handleExceptionalStatus(state, innerState, response);
-			processResponseHeadersForWap(state, innerState, response);
-			entityStream = openResponseEntity(state, response);
-			transferDataForWap(state, innerState, data, entityStream);
+			try {
+				response = sendRequest(state, client, waprequest);
+				handleExceptionalStatus(state, innerState, response);
+				processResponseHeadersForWap(state, innerState, response);
+				entityStream = openResponseEntity(state, response);
+				transferDataForWap(state, innerState, data, entityStream);
+			} finally {
+				// 将连接归还共享连接池
+				waprequest.abort();
+			}
 
 			begin = end + 1;
 			end = end + RANG_SIZE;
@@ -1532,6 +1535,8 @@ public class DownloadThread extends Thread {
 	 *            request
 	 */
 	private void addRequestHeaders(InnerState innerState, HttpGet request) {
+		// 共享的HttpClient不携带下载的UserAgent，需要设置在每个请求上
+		HttpProtocolParams.setUserAgent(request.getParams(), userAgent());
 		for (Pair<String, String> header : mInfo.getHeaders()) {
 			request.addHeader(header.mFirst, header.mSecond);
 		}
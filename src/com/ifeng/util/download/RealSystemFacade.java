@@ -10,6 +10,8 @@ import android.net.NetworkInfo;
 import android.telephony.TelephonyManager;
 
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
 
 /**
  * the real System Facade implements.
@@ -44,17 +46,10 @@ class RealSystemFacade implements SystemFacade {
 	 * @return see NetworkInfo.getType
 	 */
 	public Integer getActiveNetworkType() {
-		ConnectivityManager connectivity = (ConnectivityManager) mContext
-				.getSystemService(Context.CONNECTIVITY_SERVICE);
-		if (connectivity == null) {
-			Log.w(Constants.TAG, "couldn't get connectivity manager");
-			return null;
-		}
-
-		for (NetworkInfo info : connectivity.getAllNetworkInfo()) {
-			if (info != null && info.isConnectedOrConnecting()) {
-				return info.getType();
-			}
+		// 使用已缓存的网络状态，避免下载过程中反复查询
+		NetworkState state = NetworkMonitor.getInstance(mContext).getState();
+		if (state.isConnected()) {
+			return state.getType();
 		}
 
 		return null;
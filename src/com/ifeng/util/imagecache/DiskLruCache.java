@@ -520,11 +520,25 @@ public final class DiskLruCache implements Closeable {
 	 * edit is in progress.
 	 */
 	public Editor edit(String key) throws IOException {
-		return edit(key, ANY_SEQUENCE_NUMBER);
+		return edit(key, ANY_SEQUENCE_NUMBER, true);
+	}
+
+	/**
+	 * Returns an editor for the entry named {@code key}, or null immediately
+	 * if another edit is in progress. Unlike {@link #edit(String)} this never
+	 * waits for the current editor and never discards the readable entry.
+	 */
+	public Editor tryEdit(String key) throws IOException {
+		return edit(key, ANY_SEQUENCE_NUMBER, false);
 	}
 
 	private Editor edit(String key, long expectedSequenceNumber)
 			throws IOException {
+		return edit(key, expectedSequenceNumber, true);
+	}
+
+	private Editor edit(String key, long expectedSequenceNumber,
+			boolean waitForEditor) throws IOException {
 		Entry entry = null;
 
 		synchronized (this) {
@@ -539,6 +553,16 @@ public final class DiskLruCache implements Closeable {
 				entry = new Entry(key);
 				lruEntries.put(key, entry);
 			}
+			if (!waitForEditor) {
+				if (entry.currentEditor != null) {
+					return null; // another edit is in progress
+				}
+				Editor editor = new Editor(entry);
+				entry.currentEditor = editor;
+				journalWriter.write(DIRTY + ' ' + key + '\n');
+				journalWriter.flush();
+				return editor;
+			}
 		}
 
 		if (entry.currentEditor != null) {
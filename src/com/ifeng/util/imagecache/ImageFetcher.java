@@ -29,15 +29,15 @@ import org.apache.http.client.methods.HttpGet;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.os.Build;
 import android.text.TextUtils;
 import android.widget.ImageView;
 
 import com.ifeng.android.BuildConfig;
 import com.ifeng.util.logging.Log;
-import com.ifeng.util.net.ProxyHttpClient;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.NetworkProfile;
+import com.ifeng.util.net.SharedHttpClient;
 
 /**
  * A simple subclass of {@link ImageResizer} that fetches and resizes images
@@ -179,10 +179,7 @@ public class ImageFetcher extends ImageResizer {
 	 * @param context
 	 */
 	private void checkConnection(Context context) {
-		final ConnectivityManager cm = (ConnectivityManager) context
-				.getSystemService(Context.CONNECTIVITY_SERVICE);
-		final NetworkInfo networkInfo = cm.getActiveNetworkInfo();
-		if (networkInfo == null || !networkInfo.isConnectedOrConnecting()) {
+		if (!NetworkMonitor.getInstance(context).isConnected()) {
 			// TODO 网络状态反馈
 			// Toast.makeText(context, R.string.no_network_connection_toast,
 			// Toast.LENGTH_LONG).show();
@@ -344,7 +341,7 @@ public class ImageFetcher extends ImageResizer {
 	public boolean downloadUrlToStream(String urlString,
 			OutputStream outputStream, OnProcessProgressUpdate processCallback) {
 		disableConnectionReuseIfNecessary();
-		ProxyHttpClient client = null;
+		HttpGet request = null;
 		BufferedOutputStream out = null;
 		BufferedInputStream in = null;
 
@@ -353,16 +350,22 @@ public class ImageFetcher extends ImageResizer {
 			return false;
 		}
 
+		// 无网络时直接失败，不再等待连接超时
+		if (!NetworkMonitor.getInstance(mContext).isConnected()) {
+			return false;
+		}
+
 		try {
-			client = new ProxyHttpClient(mContext);
 			if (TextUtils.isEmpty(urlString)) {
 				return false;
 			}
 
 			processCallback.updateProgress(0);
 
-			HttpGet request = new HttpGet(urlString);
-			HttpResponse response = client.execute(request);
+			request = new HttpGet(urlString);
+			NetworkProfile.getCurrent().applyTo(request.getParams());
+			HttpResponse response = SharedHttpClient.getHttpClient(mContext)
+					.execute(request);
 			in = new BufferedInputStream(response.getEntity().getContent(),
 					IO_BUFFER_SIZE);
 			out = new BufferedOutputStream(outputStream, IO_BUFFER_SIZE);
@@ -389,13 +392,12 @@ public class ImageFetcher extends ImageResizer {
 		} catch (final IOException e) {
 			Log.e(TAG, "Error in downloadBitmap - " + e);
 			Log.e(TAG, e);
+			abortRequest(request);
 		} catch (Exception e) {
 			e.printStackTrace();
 			Log.e(TAG, "caught unknow exception - " + e);
+			abortRequest(request);
 		} finally {
-			if (client != null) {
-				client.close();
-			}
 			try {
 				if (out != null) {
 					out.close();
@@ -409,6 +411,17 @@ public class ImageFetcher extends ImageResizer {
 		return false;
 	}
 
+	/**
+	 * 中断请求，将连接归还连接池
+	 * 
+	 * @param request
+	 */
+	private void abortRequest(HttpGet request) {
+		if (request != null) {
+			request.abort();
+		}
+	}
+
 	/**
 	 * 是否可以进行网络请求加载图片
 	 * 
@@ -1,8 +1,6 @@
 package com.ifeng.util.model;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 import android.content.Context;
 import android.os.Handler;
@@ -11,6 +9,7 @@ import android.os.Process;
 
 import com.ifeng.BaseApplicaion;
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.PriorityScheduler.Lane;
 
 /**
  * Model的基类，所有的Model本质上都从它继承，重写{@link #process()}方法将耗时操作在此实现，并借由
@@ -35,9 +34,12 @@ public abstract class AbstractModel {
 
 	/** 线程优先级 */
 	private int mPriority = Process.THREAD_PRIORITY_DEFAULT;
-	/** 线程池 */
-	private static final ScheduledExecutorService THREAD_POOL = Executors
-			.newScheduledThreadPool(5);
+	/** 任务调度通道，默认为用户交互通道 */
+	private Lane mLane = Lane.INTERACTIVE;
+	/** 最近一次异步任务在线程池中的排队时间，未记录时为-1 */
+	private volatile long mQueueWaitTime = -1;
+	/** 最近一次提交的异步任务，取消时一并撤销尚未开始执行的任务 */
+	private volatile Future<?> mFuture;
 
 	/** 当前model的状态 */
 	protected ModelProcessState mProcessState;
@@ -45,7 +47,7 @@ public abstract class AbstractModel {
 	protected OnModelProcessListener mOnModelProcessListener;
 
 	/** 是否任务已经取消 */
-	private boolean mIsCanceled;
+	private volatile boolean mIsCanceled;
 	/** 是否任务已经暂停 */
 	private boolean mIsPaused;
 	/** 任务暂停锁 */
@@ -109,14 +111,17 @@ public abstract class AbstractModel {
 			return;
 		}
 
-		THREAD_POOL.schedule(new Runnable() {
+		final long readyTime = System.currentTimeMillis() + milliseconds;
+		mFuture = PriorityScheduler.getInstance().schedule(new Runnable() {
 
 			@Override
 			public void run() {
+				mQueueWaitTime = Math.max(0, System.currentTimeMillis()
+						- readyTime);
 				Process.setThreadPriority(mPriority);
 				process();
 			}
-		}, milliseconds, TimeUnit.MILLISECONDS);
+		}, getLane(), milliseconds);
 	}
 
 	/**
@@ -238,6 +243,12 @@ public abstract class AbstractModel {
 
 		mIsCanceled = true;
 
+		// 撤销尚未开始执行的异步任务，避免其占用线程
+		Future<?> future = mFuture;
+		if (future != null) {
+			future.cancel(false);
+		}
+
 		synchronized (mPauseLock) {
 			mPauseLock.notifyAll();
 		}
@@ -314,6 +325,34 @@ public abstract class AbstractModel {
 		this.mPriority = priority;
 	}
 
+	/**
+	 * 获取最近一次异步任务在线程池中的排队时间，获取后清除
+	 * 
+	 * @return 未记录时返回-1
+	 */
+	protected long takeQueueWaitTime() {
+		long queueWaitTime = mQueueWaitTime;
+		mQueueWaitTime = -1;
+		return queueWaitTime;
+	}
+
+	/**
+	 * @return the lane
+	 */
+	public Lane getLane() {
+		return mLane;
+	}
+
+	/**
+	 * 设置任务调度通道，预取及后台任务应设置为对应通道，避免阻塞用户操作触发的任务
+	 * 
+	 * @param lane
+	 *            the lane to set
+	 */
+	public void setLane(Lane lane) {
+		this.mLane = lane;
+	}
+
 	/**
 	 * 数据获取结果的Listener
 	 * 
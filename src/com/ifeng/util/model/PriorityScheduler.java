@@ -0,0 +1,357 @@
+package com.ifeng.util.model;
+
+import java.util.LinkedList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Process;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+
+/**
+ * 按优先级调度的任务线程池，替代原有的FIFO线程池。任务按用途分为交互、预取、后台三个通道，空闲线程总是优先执行
+ * 高优先级通道中等待最久的任务；为避免低优先级任务饿死，任务每等待{@link #PROMOTION_INTERVAL_MS}
+ * 即提升一级优先级。同时统计各通道的排队数量与等待时间，便于监控。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class PriorityScheduler {
+
+	/** log tag. */
+	private static final String TAG = PriorityScheduler.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 工作线程数 */
+	private static final int WORKER_COUNT = 5;
+
+	/** 任务等待多久提升一级优先级 */
+	private static final long PROMOTION_INTERVAL_MS = 2000L;
+
+	/** 单例 */
+	private static PriorityScheduler sInstance;
+
+	/**
+	 * 任务通道，按优先级从高到低排列
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public enum Lane {
+		/** 用户操作直接触发的任务 */
+		INTERACTIVE,
+		/** 预取任务 */
+		PREFETCH,
+		/** 后台任务 */
+		BACKGROUND;
+	}
+
+	/** 各通道的等待队列 */
+	private final LinkedList<Entry>[] mQueues;
+	/** 各通道的统计信息 */
+	private final LaneStats[] mLaneStats;
+	/** 延时任务的计时线程 */
+	private final ScheduledExecutorService mTimer;
+
+	/**
+	 * 获取单例
+	 * 
+	 * @return
+	 */
+	public static synchronized PriorityScheduler getInstance() {
+		if (sInstance == null) {
+			sInstance = new PriorityScheduler();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * 构造
+	 */
+	@SuppressWarnings("unchecked")
+	private PriorityScheduler() {
+		Lane[] lanes = Lane.values();
+		mQueues = new LinkedList[lanes.length];
+		mLaneStats = new LaneStats[lanes.length];
+		for (int i = 0; i < lanes.length; i++) {
+			mQueues[i] = new LinkedList<Entry>();
+			mLaneStats[i] = new LaneStats();
+		}
+
+		mTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, TAG + " timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		for (int i = 0; i < WORKER_COUNT; i++) {
+			new Worker(i + 1).start();
+		}
+	}
+
+	/**
+	 * 立即提交任务
+	 * 
+	 * @param runnable
+	 *            任务
+	 * @param lane
+	 *            任务通道
+	 * @return 可用于取消任务的Future
+	 */
+	public Future<?> execute(Runnable runnable, Lane lane) {
+		return schedule(runnable, lane, 0);
+	}
+
+	/**
+	 * 延时提交任务，延时结束后任务才进入等待队列
+	 * 
+	 * @param runnable
+	 *            任务
+	 * @param lane
+	 *            任务通道
+	 * @param delayMillis
+	 *            延时
+	 * @return 可用于取消任务的Future
+	 */
+	public Future<?> schedule(Runnable runnable, Lane lane, long delayMillis) {
+		final Entry entry = new Entry(runnable, lane == null ? Lane.INTERACTIVE
+				: lane);
+		if (delayMillis <= 0) {
+			enqueue(entry);
+		} else {
+			mTimer.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					if (!entry.isCancelled()) {
+						enqueue(entry);
+					}
+				}
+			}, delayMillis, TimeUnit.MILLISECONDS);
+		}
+		return entry;
+	}
+
+	/**
+	 * 获取通道当前的排队数量
+	 * 
+	 * @param lane
+	 * @return
+	 */
+	public int getQueueDepth(Lane lane) {
+		synchronized (mQueues) {
+			return mQueues[lane.ordinal()].size();
+		}
+	}
+
+	/**
+	 * 获取通道统计信息的快照
+	 * 
+	 * @param lane
+	 * @return
+	 */
+	public LaneStats getLaneStats(Lane lane) {
+		synchronized (mQueues) {
+			LaneStats snapshot = new LaneStats();
+			LaneStats stats = mLaneStats[lane.ordinal()];
+			snapshot.queueDepth = mQueues[lane.ordinal()].size();
+			snapshot.executedCount = stats.executedCount;
+			snapshot.promotedCount = stats.promotedCount;
+			snapshot.totalWaitTime = stats.totalWaitTime;
+			snapshot.maxWaitTime = stats.maxWaitTime;
+			return snapshot;
+		}
+	}
+
+	/**
+	 * 加入等待队列
+	 * 
+	 * @param entry
+	 */
+	private void enqueue(Entry entry) {
+		synchronized (mQueues) {
+			entry.mEnqueueTime = System.currentTimeMillis();
+			mQueues[entry.mLane.ordinal()].addLast(entry);
+			mQueues.notify();
+		}
+	}
+
+	/**
+	 * 取出下一个需要执行的任务，无任务时阻塞等待
+	 * 
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private Entry dequeue() throws InterruptedException {
+		synchronized (mQueues) {
+			while (true) {
+				long now = System.currentTimeMillis();
+				int selected = -1;
+				long selectedRank = Long.MAX_VALUE;
+				for (int i = 0; i < mQueues.length; i++) {
+					LinkedList<Entry> queue = mQueues[i];
+					// 清除已经取消的任务
+					while (!queue.isEmpty() && queue.getFirst().isCancelled()) {
+						queue.removeFirst();
+					}
+					if (queue.isEmpty()) {
+						continue;
+					}
+					// 每个通道内为FIFO，队首即为等待最久的任务
+					long rank = getEffectiveRank(queue.getFirst(), now);
+					if (rank < selectedRank) {
+						selectedRank = rank;
+						selected = i;
+					}
+				}
+
+				if (selected < 0) {
+					mQueues.wait();
+					continue;
+				}
+
+				Entry entry = mQueues[selected].removeFirst();
+				long waitTime = now - entry.mEnqueueTime;
+				LaneStats stats = mLaneStats[selected];
+				stats.executedCount++;
+				stats.totalWaitTime += waitTime;
+				if (waitTime > stats.maxWaitTime) {
+					stats.maxWaitTime = waitTime;
+				}
+				if (selectedRank < selected) {
+					stats.promotedCount++;
+				}
+				return entry;
+			}
+		}
+	}
+
+	/**
+	 * 计算任务当前的有效优先级，数值越小越优先
+	 * 
+	 * @param entry
+	 * @param now
+	 * @return
+	 */
+	private static long getEffectiveRank(Entry entry, long now) {
+		return entry.mLane.ordinal() - (now - entry.mEnqueueTime)
+				/ PROMOTION_INTERVAL_MS;
+	}
+
+	/**
+	 * 等待队列中的任务
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Entry extends FutureTask<Void> {
+		/** 任务通道 */
+		private final Lane mLane;
+		/** 进入等待队列的时间 */
+		private long mEnqueueTime;
+
+		/**
+		 * 构造
+		 * 
+		 * @param runnable
+		 * @param lane
+		 */
+		private Entry(Runnable runnable, Lane lane) {
+			super(runnable, null);
+			mLane = lane;
+		}
+
+		/**
+		 * 任务执行时抛出的异常由FutureTask保存，不会传递到工作线程，在此输出
+		 */
+		@Override
+		protected void done() {
+			try {
+				get();
+			} catch (ExecutionException e) {
+				if (DEBUG) {
+					Log.e(TAG, e.getCause());
+				}
+			} catch (CancellationException e) {
+			} catch (InterruptedException e) {
+			}
+		}
+	}
+
+	/**
+	 * 工作线程
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private class Worker extends Thread {
+
+		/**
+		 * 构造
+		 * 
+		 * @param index
+		 */
+		private Worker(int index) {
+			super(TAG + " #" + index);
+			// 常驻线程不阻止进程退出
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				Entry entry;
+				try {
+					entry = dequeue();
+				} catch (InterruptedException e) {
+					return;
+				}
+
+				entry.run();
+				// 任务可能修改了线程优先级，执行完毕后恢复
+				Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+			}
+		}
+	}
+
+	/**
+	 * 通道统计信息
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public static class LaneStats {
+		/** 当前排队数量 */
+		public int queueDepth;
+		/** 已开始执行的任务数 */
+		public long executedCount;
+		/** 因等待过久而被提升优先级后执行的任务数 */
+		public long promotedCount;
+		/** 累计等待时间 */
+		public long totalWaitTime;
+		/** 最长等待时间 */
+		public long maxWaitTime;
+
+		/**
+		 * 平均等待时间
+		 * 
+		 * @return
+		 */
+		public long getAverageWaitTime() {
+			return executedCount == 0 ? 0 : totalWaitTime / executedCount;
+		}
+	}
+}
@@ -25,10 +25,26 @@ public class ConnectManager {
 	private boolean mUseWap;
 	private String mNetType;
 
+	/**
+	 * 查询当前网络并解析，建议使用{@link NetworkMonitor#getConnectManager()}获取已缓存的结果
+	 * 
+	 * @param context
+	 */
 	public ConnectManager(Context context) {
 		checkNetworkType(context);
 	}
 
+	/**
+	 * 解析指定的网络
+	 * 
+	 * @param context
+	 * @param networkinfo
+	 *            可为null
+	 */
+	ConnectManager(Context context, NetworkInfo networkinfo) {
+		checkNetworkType(context, networkinfo);
+	}
+
 	private void checkApn(Context context, NetworkInfo networkinfo) {
 		if (networkinfo.getExtraInfo() != null) {
 			String s = networkinfo.getExtraInfo().toLowerCase();
@@ -78,7 +94,10 @@ public class ConnectManager {
 	private void checkNetworkType(Context context) {
 		ConnectivityManager connectivitymanager = (ConnectivityManager) context
 				.getApplicationContext().getSystemService("connectivity");
-		NetworkInfo networkinfo = connectivitymanager.getActiveNetworkInfo();
+		checkNetworkType(context, connectivitymanager.getActiveNetworkInfo());
+	}
+
+	private void checkNetworkType(Context context, NetworkInfo networkinfo) {
 		if (networkinfo != null)
 			if ("wifi".equals(networkinfo.getTypeName().toLowerCase())) {
 				mNetType = "wifi";
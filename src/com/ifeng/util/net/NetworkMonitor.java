@@ -0,0 +1,366 @@
+package com.ifeng.util.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.telephony.TelephonyManager;
+import android.text.TextUtils;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+
+/**
+ * 进程内共享的网络状态监听，通过网络变化广播更新并缓存当前的网络类型、代理及带宽等级，
+ * 避免每次请求都重新查询ConnectivityManager及解析apn；网络变化时通知已注册的
+ * {@link OnNetworkChangedListener}。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class NetworkMonitor {
+
+	/** log tag. */
+	private static final String TAG = NetworkMonitor.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = BaseApplicaion.DEBUG;
+
+	/** 网络类型：wifi */
+	public static final String GENERATION_WIFI = "WF";
+	/** 网络类型：2G */
+	public static final String GENERATION_2G = "2G";
+	/** 网络类型：3G */
+	public static final String GENERATION_3G = "3G";
+	/** 网络类型：4G */
+	public static final String GENERATION_4G = "4G";
+
+	/** 单例 */
+	private static NetworkMonitor sInstance;
+
+	/** context */
+	private final Context mContext;
+	/** 网络状态变化的监听 */
+	private final List<OnNetworkChangedListener> mListeners = new ArrayList<OnNetworkChangedListener>();
+	/** 当前网络状态 */
+	private volatile NetworkState mState;
+
+	/**
+	 * 带宽等级
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public enum BandwidthClass {
+		/** 无网络 */
+		NONE,
+		/** 2G网络 */
+		POOR,
+		/** 3G网络 */
+		MODERATE,
+		/** 4G及wifi网络 */
+		GOOD;
+	}
+
+	/**
+	 * 构造，注册网络变化广播
+	 * 
+	 * @param context
+	 */
+	private NetworkMonitor(Context context) {
+		mContext = context.getApplicationContext();
+		mState = queryState();
+		NetworkProfile.onNetworkChanged(mState);
+		mContext.registerReceiver(new BroadcastReceiver() {
+
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				onConnectivityChanged();
+			}
+		}, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+	}
+
+	/**
+	 * 获取单例，首次调用时开始监听网络变化
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static synchronized NetworkMonitor getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new NetworkMonitor(context);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * @return 当前网络状态
+	 */
+	public NetworkState getState() {
+		return mState;
+	}
+
+	/**
+	 * @return 当前网络是否已连接
+	 */
+	public boolean isConnected() {
+		return mState.isConnected();
+	}
+
+	/**
+	 * @return 根据当前网络自适应的请求参数
+	 */
+	public NetworkProfile getProfile() {
+		return NetworkProfile.getCurrent();
+	}
+
+	/**
+	 * @return 当前网络的apn及代理信息
+	 */
+	public ConnectManager getConnectManager() {
+		return mState.getConnectManager();
+	}
+
+	/**
+	 * 注册网络状态变化的监听，回调在主线程中执行
+	 * 
+	 * @param listener
+	 */
+	public void addOnNetworkChangedListener(OnNetworkChangedListener listener) {
+		synchronized (mListeners) {
+			if (!mListeners.contains(listener)) {
+				mListeners.add(listener);
+			}
+		}
+	}
+
+	/**
+	 * 注销网络状态变化的监听
+	 * 
+	 * @param listener
+	 */
+	public void removeOnNetworkChangedListener(OnNetworkChangedListener listener) {
+		synchronized (mListeners) {
+			mListeners.remove(listener);
+		}
+	}
+
+	/**
+	 * 收到网络变化广播，重新查询网络状态，发生变化时通知监听
+	 */
+	private void onConnectivityChanged() {
+		NetworkState oldState = mState;
+		NetworkState newState = queryState();
+		mState = newState;
+		if (newState.equals(oldState)) {
+			return;
+		}
+
+		if (DEBUG) {
+			Log.d(TAG, "network changed : " + newState);
+		}
+		NetworkProfile.onNetworkChanged(newState);
+		OnNetworkChangedListener[] listeners;
+		synchronized (mListeners) {
+			listeners = mListeners.toArray(new OnNetworkChangedListener[mListeners
+					.size()]);
+		}
+		for (OnNetworkChangedListener listener : listeners) {
+			listener.onNetworkChanged(oldState, newState);
+		}
+	}
+
+	/**
+	 * 查询当前网络状态
+	 * 
+	 * @return
+	 */
+	private NetworkState queryState() {
+		NetworkInfo networkInfo = null;
+		try {
+			ConnectivityManager connectivityManager = (ConnectivityManager) mContext
+					.getSystemService(Context.CONNECTIVITY_SERVICE);
+			if (connectivityManager != null) {
+				networkInfo = connectivityManager.getActiveNetworkInfo();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		return new NetworkState(networkInfo, new ConnectManager(mContext,
+				networkInfo));
+	}
+
+	/**
+	 * 将网络归类为wifi、2G、3G、4G
+	 * 
+	 * @param networkInfo
+	 * @return 未连接时返回空字符串
+	 */
+	private static String getGeneration(NetworkInfo networkInfo) {
+		if (networkInfo == null || !networkInfo.isConnectedOrConnecting()) {
+			return "";
+		}
+		if (networkInfo.getType() == ConnectivityManager.TYPE_WIFI) {
+			return GENERATION_WIFI;
+		}
+		switch (networkInfo.getSubtype()) {
+		case TelephonyManager.NETWORK_TYPE_1xRTT:
+		case TelephonyManager.NETWORK_TYPE_EVDO_0:
+		case TelephonyManager.NETWORK_TYPE_EVDO_A:
+		case TelephonyManager.NETWORK_TYPE_HSDPA: // 3.5
+		case TelephonyManager.NETWORK_TYPE_HSPA: // 3.5
+		case TelephonyManager.NETWORK_TYPE_HSUPA:
+		case TelephonyManager.NETWORK_TYPE_UMTS:
+		case TelephonyManager.NETWORK_TYPE_EHRPD: // ~ 1-2 Mbps
+		case TelephonyManager.NETWORK_TYPE_EVDO_B: // ~ 5 Mbps
+		case TelephonyManager.NETWORK_TYPE_HSPAP: // ~ 10-20 Mbps
+			return GENERATION_3G;
+		case TelephonyManager.NETWORK_TYPE_LTE: // ~ 10+ Mbps
+			return GENERATION_4G;
+		default:
+			// CDMA、EDGE、GPRS、IDEN等均归为2G
+			return GENERATION_2G;
+		}
+	}
+
+	/**
+	 * 网络状态
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public static final class NetworkState {
+		/** 是否已连接 */
+		private final boolean mIsConnected;
+		/** 网络类型，ConnectivityManager.TYPE_*，无网络时为-1 */
+		private final int mType;
+		/** 网络归类，wifi、2G、3G、4G，无网络时为空字符串 */
+		private final String mGeneration;
+		/** 带宽等级 */
+		private final BandwidthClass mBandwidthClass;
+		/** apn及代理信息 */
+		private final ConnectManager mConnectManager;
+
+		/**
+		 * 构造
+		 * 
+		 * @param networkInfo
+		 *            可为null
+		 * @param connectManager
+		 */
+		private NetworkState(NetworkInfo networkInfo,
+				ConnectManager connectManager) {
+			mIsConnected = networkInfo != null && networkInfo.isConnected();
+			mType = networkInfo == null ? -1 : networkInfo.getType();
+			mGeneration = NetworkMonitor.getGeneration(networkInfo);
+			mConnectManager = connectManager;
+
+			if (GENERATION_WIFI.equals(mGeneration)
+					|| GENERATION_4G.equals(mGeneration)) {
+				mBandwidthClass = BandwidthClass.GOOD;
+			} else if (GENERATION_3G.equals(mGeneration)) {
+				mBandwidthClass = BandwidthClass.MODERATE;
+			} else if (GENERATION_2G.equals(mGeneration)) {
+				mBandwidthClass = BandwidthClass.POOR;
+			} else {
+				mBandwidthClass = BandwidthClass.NONE;
+			}
+		}
+
+		/**
+		 * @return 是否已连接
+		 */
+		public boolean isConnected() {
+			return mIsConnected;
+		}
+
+		/**
+		 * @return 是否为wifi网络
+		 */
+		public boolean isWifi() {
+			return mType == ConnectivityManager.TYPE_WIFI;
+		}
+
+		/**
+		 * @return 网络类型，ConnectivityManager.TYPE_*，无网络时为-1
+		 */
+		public int getType() {
+			return mType;
+		}
+
+		/**
+		 * @return WF 2G 3G 4G，无网络时为空字符串
+		 */
+		public String getGeneration() {
+			return mGeneration;
+		}
+
+		/**
+		 * @return 带宽等级
+		 */
+		public BandwidthClass getBandwidthClass() {
+			return mBandwidthClass;
+		}
+
+		/**
+		 * @return apn及代理信息
+		 */
+		public ConnectManager getConnectManager() {
+			return mConnectManager;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof NetworkState)) {
+				return false;
+			}
+			NetworkState other = (NetworkState) o;
+			return mIsConnected == other.mIsConnected
+					&& mType == other.mType
+					&& mGeneration.equals(other.mGeneration)
+					&& TextUtils.equals(mConnectManager.getApn(),
+							other.mConnectManager.getApn())
+					&& TextUtils.equals(mConnectManager.getProxy(),
+							other.mConnectManager.getProxy())
+					&& TextUtils.equals(mConnectManager.getProxyPort(),
+							other.mConnectManager.getProxyPort());
+		}
+
+		@Override
+		public int hashCode() {
+			return mType * 31 + mGeneration.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "connected=" + mIsConnected + " type=" + mType
+					+ " generation=" + mGeneration + " bandwidth="
+					+ mBandwidthClass + " apn=" + mConnectManager.getApn()
+					+ " proxy=" + mConnectManager.getProxy();
+		}
+	}
+
+	/**
+	 * 网络状态变化的监听
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public interface OnNetworkChangedListener {
+		/**
+		 * 网络状态发生变化，在主线程中回调
+		 * 
+		 * @param oldState
+		 * @param newState
+		 */
+		void onNetworkChanged(NetworkState oldState, NetworkState newState);
+	}
+}
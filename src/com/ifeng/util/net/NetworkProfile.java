@@ -0,0 +1,308 @@
+package com.ifeng.util.net;
+
+import java.util.Arrays;
+
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.NetworkMonitor.BandwidthClass;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
+
+/**
+ * 根据网络环境自适应的请求参数，包括超时、单域名并发数、是否预取及图片质量建议。以{@link NetworkMonitor}
+ * 识别的网络类型为基准，再根据最近一段时间实际请求的响应耗时及下载速度进行升降级，
+ * 例如信号较差的4G按3G处理，wap代理下的网络按2G处理。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class NetworkProfile {
+
+	/** log tag. */
+	private static final String TAG = NetworkProfile.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = BaseApplicaion.DEBUG;
+
+	/** 统计窗口内保留的样本数 */
+	private static final int WINDOW_SIZE = 20;
+	/** 根据实际请求调整所需的最少样本数 */
+	private static final int MIN_SAMPLES = 5;
+	/** 每记录若干个样本重新计算一次 */
+	private static final int RECALCULATE_INTERVAL = 5;
+	/** 统计下载速度所需的最小数据量，数据过小时主要为延时 */
+	private static final long MIN_THROUGHPUT_BYTES = 8 * 1024;
+
+	/** 响应耗时高于该值时降级 */
+	private static final long SLOW_RESPONSE_TIME = 1500;
+	/** 响应耗时低于该值(且下载速度足够)时升级 */
+	private static final long FAST_RESPONSE_TIME = 300;
+	/** 下载速度(字节/秒)低于该值时降级 */
+	private static final long SLOW_THROUGHPUT = 16 * 1024;
+	/** 下载速度(字节/秒)高于该值(且响应耗时足够短)时升级 */
+	private static final long FAST_THROUGHPUT = 256 * 1024;
+	/** 读取超时至少为响应耗时中位数的倍数 */
+	private static final int SO_TIMEOUT_RESPONSE_FACTOR = 5;
+	/** 读取超时上限 */
+	private static final int MAX_SO_TIMEOUT = 60 * 1000;
+
+	/** 最近的响应耗时 */
+	private static final long[] RESPONSE_TIMES = new long[WINDOW_SIZE];
+	/** 最近的下载速度 */
+	private static final long[] THROUGHPUTS = new long[WINDOW_SIZE];
+	/** 已记录的响应耗时数 */
+	private static int sResponseTimeCount;
+	/** 已记录的下载速度数 */
+	private static int sThroughputCount;
+	/** 上次计算后新记录的样本数 */
+	private static int sNewSampleCount;
+	/** 网络类型对应的带宽等级 */
+	private static BandwidthClass sNetworkClass = BandwidthClass.MODERATE;
+
+	/** 当前的参数 */
+	private static volatile NetworkProfile sCurrent = new NetworkProfile(
+			BandwidthClass.MODERATE, -1);
+
+	/**
+	 * 图片质量建议
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public enum ImageQuality {
+		/** 原图 */
+		HIGH,
+		/** 中等尺寸 */
+		MEDIUM,
+		/** 缩略图 */
+		LOW;
+	}
+
+	/** 实际采用的带宽等级 */
+	private final BandwidthClass mBandwidthClass;
+	/** 连接超时 */
+	private final int mConnectTimeout;
+	/** 读取超时 */
+	private final int mSoTimeout;
+	/** 单域名最大并发数 */
+	private final int mMaxConcurrentPerHost;
+	/** 是否进行预取 */
+	private final boolean mPrefetchEnabled;
+	/** 图片质量建议 */
+	private final ImageQuality mImageQuality;
+
+	/**
+	 * 构造
+	 * 
+	 * @param bandwidthClass
+	 *            带宽等级
+	 * @param responseTime
+	 *            响应耗时中位数，未知时为-1
+	 */
+	private NetworkProfile(BandwidthClass bandwidthClass, long responseTime) {
+		mBandwidthClass = bandwidthClass;
+		int soTimeout;
+		switch (bandwidthClass) {
+		case GOOD:
+			mConnectTimeout = 10 * 1000;
+			soTimeout = 15 * 1000;
+			mMaxConcurrentPerHost = 6;
+			mPrefetchEnabled = true;
+			mImageQuality = ImageQuality.HIGH;
+			break;
+		case MODERATE:
+			mConnectTimeout = 15 * 1000;
+			soTimeout = 20 * 1000;
+			mMaxConcurrentPerHost = 4;
+			mPrefetchEnabled = true;
+			mImageQuality = ImageQuality.MEDIUM;
+			break;
+		default:
+			mConnectTimeout = 20 * 1000;
+			soTimeout = 30 * 1000;
+			mMaxConcurrentPerHost = 2;
+			mPrefetchEnabled = false;
+			mImageQuality = ImageQuality.LOW;
+			break;
+		}
+		if (responseTime > 0) {
+			soTimeout = (int) Math.max(soTimeout, Math.min(MAX_SO_TIMEOUT,
+					responseTime * SO_TIMEOUT_RESPONSE_FACTOR));
+		}
+		mSoTimeout = soTimeout;
+	}
+
+	/**
+	 * @return 当前的参数
+	 */
+	public static NetworkProfile getCurrent() {
+		return sCurrent;
+	}
+
+	/**
+	 * 网络发生变化，以新的网络类型为基准重新开始统计
+	 * 
+	 * @param state
+	 */
+	static synchronized void onNetworkChanged(NetworkState state) {
+		if (state.getConnectManager().isWapNetwork()) {
+			// wap代理的速度通常与2G相当
+			sNetworkClass = BandwidthClass.POOR;
+		} else {
+			sNetworkClass = state.getBandwidthClass();
+		}
+		sResponseTimeCount = 0;
+		sThroughputCount = 0;
+		sNewSampleCount = 0;
+		recalculate();
+	}
+
+	/**
+	 * 记录一次请求的响应耗时(获取连接到收到响应头)
+	 * 
+	 * @param millis
+	 */
+	public static synchronized void recordResponseTime(long millis) {
+		if (millis < 0) {
+			return;
+		}
+		RESPONSE_TIMES[sResponseTimeCount % WINDOW_SIZE] = millis;
+		sResponseTimeCount++;
+		onSampleRecorded();
+	}
+
+	/**
+	 * 记录一次响应数据的下载速度
+	 * 
+	 * @param bytes
+	 *            数据量
+	 * @param millis
+	 *            读取耗时
+	 */
+	public static synchronized void recordThroughput(long bytes, long millis) {
+		if (bytes < MIN_THROUGHPUT_BYTES) {
+			return;
+		}
+		THROUGHPUTS[sThroughputCount % WINDOW_SIZE] = bytes * 1000
+				/ Math.max(1, millis);
+		sThroughputCount++;
+		onSampleRecorded();
+	}
+
+	/**
+	 * 每记录若干个样本重新计算一次
+	 */
+	private static void onSampleRecorded() {
+		if (++sNewSampleCount >= RECALCULATE_INTERVAL) {
+			sNewSampleCount = 0;
+			recalculate();
+		}
+	}
+
+	/**
+	 * 根据网络类型及统计窗口内的样本重新计算参数
+	 */
+	private static void recalculate() {
+		long responseTime = median(RESPONSE_TIMES, sResponseTimeCount);
+		long throughput = median(THROUGHPUTS, sThroughputCount);
+
+		int level = Math.max(BandwidthClass.POOR.ordinal(),
+				sNetworkClass.ordinal());
+		if (responseTime > SLOW_RESPONSE_TIME
+				|| (throughput >= 0 && throughput < SLOW_THROUGHPUT)) {
+			level = Math.max(BandwidthClass.POOR.ordinal(), level - 1);
+		} else if (responseTime >= 0 && responseTime < FAST_RESPONSE_TIME
+				&& throughput > FAST_THROUGHPUT) {
+			level = Math.min(BandwidthClass.GOOD.ordinal(), level + 1);
+		}
+
+		NetworkProfile profile = new NetworkProfile(
+				BandwidthClass.values()[level], responseTime);
+		if (DEBUG && profile.mBandwidthClass != sCurrent.mBandwidthClass) {
+			Log.d(TAG, "network profile changed : " + profile
+					+ " , response time:" + responseTime + " , throughput:"
+					+ throughput);
+		}
+		sCurrent = profile;
+	}
+
+	/**
+	 * 计算窗口内样本的中位数
+	 * 
+	 * @param samples
+	 * @param count
+	 *            已记录的样本数
+	 * @return 样本不足时返回-1
+	 */
+	private static long median(long[] samples, int count) {
+		if (count < MIN_SAMPLES) {
+			return -1;
+		}
+		long[] sorted = new long[Math.min(count, WINDOW_SIZE)];
+		System.arraycopy(samples, 0, sorted, 0, sorted.length);
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/**
+	 * 将超时设置到请求或client的参数中
+	 * 
+	 * @param params
+	 */
+	public void applyTo(HttpParams params) {
+		HttpConnectionParams.setConnectionTimeout(params, mConnectTimeout);
+		HttpConnectionParams.setSoTimeout(params, mSoTimeout);
+	}
+
+	/**
+	 * @return 实际采用的带宽等级
+	 */
+	public BandwidthClass getBandwidthClass() {
+		return mBandwidthClass;
+	}
+
+	/**
+	 * @return 连接超时
+	 */
+	public int getConnectTimeout() {
+		return mConnectTimeout;
+	}
+
+	/**
+	 * @return 读取超时
+	 */
+	public int getSoTimeout() {
+		return mSoTimeout;
+	}
+
+	/**
+	 * @return 单域名最大并发数
+	 */
+	public int getMaxConcurrentPerHost() {
+		return mMaxConcurrentPerHost;
+	}
+
+	/**
+	 * @return 是否进行预取，弱网环境下关闭
+	 */
+	public boolean isPrefetchEnabled() {
+		return mPrefetchEnabled;
+	}
+
+	/**
+	 * @return 图片质量建议，可据此选择请求的图片尺寸
+	 */
+	public ImageQuality getImageQuality() {
+		return mImageQuality;
+	}
+
+	@Override
+	public String toString() {
+		return "bandwidth=" + mBandwidthClass + " connectTimeout="
+				+ mConnectTimeout + " soTimeout=" + mSoTimeout
+				+ " maxConcurrentPerHost=" + mMaxConcurrentPerHost
+				+ " prefetch=" + mPrefetchEnabled + " image=" + mImageQuality;
+	}
+}
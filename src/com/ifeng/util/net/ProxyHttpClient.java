@@ -18,7 +18,6 @@ public class ProxyHttpClient extends DefaultHttpClient {
 	private String mProxy;
 	private String mPort;
 	private boolean mUseWap;
-	private static final int HTTP_TIMEOUT_MS = 15000;
 	private RuntimeException mLeakedException = new IllegalStateException(
 			"ProxyHttpClient created and never closed");
 
@@ -39,7 +38,8 @@ public class ProxyHttpClient extends DefaultHttpClient {
 			ConnectManager paramConnectManager) {
 		ConnectManager localConnectManager = paramConnectManager;
 		if (localConnectManager == null)
-			localConnectManager = new ConnectManager(paramContext);
+			localConnectManager = NetworkMonitor.getInstance(paramContext)
+					.getConnectManager();
 		this.mUseWap = localConnectManager.isWapNetwork();
 		this.mProxy = localConnectManager.getProxy();
 		this.mPort = localConnectManager.getProxyPort();
@@ -48,8 +48,9 @@ public class ProxyHttpClient extends DefaultHttpClient {
 					this.mPort).intValue());
 			getParams().setParameter("http.route.default-proxy", localHttpHost);
 		}
-		HttpConnectionParams.setConnectionTimeout(getParams(), HTTP_TIMEOUT_MS);
-		HttpConnectionParams.setSoTimeout(getParams(), HTTP_TIMEOUT_MS);
+		// 超时根据当前网络自适应
+		NetworkMonitor.getInstance(paramContext).getProfile()
+				.applyTo(getParams());
 		HttpConnectionParams.setSocketBufferSize(getParams(), 8192);
 		if (!TextUtils.isEmpty(paramString))
 			HttpProtocolParams.setUserAgent(getParams(), paramString);
@@ -0,0 +1,302 @@
+package com.ifeng.util.net;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+import android.content.Context;
+import android.text.TextUtils;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
+import com.ifeng.util.net.NetworkMonitor.OnNetworkChangedListener;
+
+/**
+ * 进程内共享的HttpClient，基于线程安全的连接池，使各请求之间可以复用已建立的连接(keep-alive)。
+ * 连接池对每个路由的连接数进行限制，并定期回收空闲连接；当wap代理发生变化时重新创建连接池。
+ * 注意：从共享client获取的响应，需要读取完毕或关闭其content，失败时需要abort请求，以将连接归还连接池。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class SharedHttpClient {
+
+	/** log tag. */
+	private static final String TAG = SharedHttpClient.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = BaseApplicaion.DEBUG;
+
+	/** 连接及读取超时 */
+	private static final int HTTP_TIMEOUT_MS = 15000;
+	/** socket缓冲区大小 */
+	private static final int SOCKET_BUFFER_SIZE = 8192;
+	/** 连接池最大连接数 */
+	private static final int MAX_TOTAL_CONNECTIONS = 20;
+	/** 每个路由(host)的最大连接数 */
+	private static final int MAX_CONNECTIONS_PER_ROUTE = 6;
+	/** 从连接池获取连接的等待超时 */
+	private static final long CONNECTION_POOL_TIMEOUT_MS = 10 * 1000L;
+	/** 空闲连接的最长保留时间 */
+	private static final long IDLE_CONNECTION_TIMEOUT_MS = 30 * 1000L;
+	/** 空闲连接回收的检查间隔 */
+	private static final long EVICT_INTERVAL_MS = 15 * 1000L;
+	/** 代理变化后，旧连接池等待进行中请求完成的时间 */
+	private static final long RETIRE_DELAY_MS = HTTP_TIMEOUT_MS * 2;
+
+	/**
+	 * HttpContext中记录连接就绪、开始发送请求时间的属性名，请求拦截器在连接建立之后执行，
+	 * 可据此区分获取连接与等待响应的耗时
+	 */
+	public static final String ATTR_REQUEST_SENT_TIME = "com.ifeng.util.net.request_sent_time";
+
+	/** 空闲连接回收线程 */
+	private static final ScheduledExecutorService EVICTOR = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, TAG);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+	/** 当前共享的client */
+	private static DefaultHttpClient sHttpClient;
+	/** 当前client使用的代理地址 */
+	private static String sProxy;
+	/** 当前client使用的代理端口 */
+	private static String sPort;
+	/** 进程内的网络状态，wap判断以其当前状态为准，不受单个请求的影响 */
+	private static volatile NetworkMonitor sNetworkMonitor;
+	/** 是否已经开始回收空闲连接 */
+	private static boolean sIsEvictorStarted;
+	/** 是否已经监听网络变化 */
+	private static boolean sIsNetworkObserved;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private SharedHttpClient() {
+	}
+
+	/**
+	 * 获取共享的HttpClient，若当前的代理设置与连接池创建时不同，则重新创建
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static HttpClient getHttpClient(Context context) {
+		NetworkMonitor networkMonitor = NetworkMonitor.getInstance(context);
+		observeNetwork(networkMonitor);
+		return getHttpClient(networkMonitor.getConnectManager());
+	}
+
+	/**
+	 * 监听网络变化，切换网络后原有的空闲连接已经失效，立即关闭；代理变化时重新创建连接池
+	 * 
+	 * @param networkMonitor
+	 */
+	private static synchronized void observeNetwork(
+			NetworkMonitor networkMonitor) {
+		if (sIsNetworkObserved) {
+			return;
+		}
+		sIsNetworkObserved = true;
+		sNetworkMonitor = networkMonitor;
+
+		networkMonitor
+				.addOnNetworkChangedListener(new OnNetworkChangedListener() {
+
+					@Override
+					public void onNetworkChanged(NetworkState oldState,
+							NetworkState newState) {
+						ClientConnectionManager connectionManager = null;
+						synchronized (SharedHttpClient.class) {
+							if (sHttpClient != null) {
+								connectionManager = sHttpClient
+										.getConnectionManager();
+							}
+						}
+						if (connectionManager != null) {
+							connectionManager.closeIdleConnections(0,
+									TimeUnit.MILLISECONDS);
+						}
+						if (newState.isConnected()) {
+							getHttpClient(newState.getConnectManager());
+						}
+					}
+				});
+	}
+
+	/**
+	 * 获取共享的HttpClient，若当前的代理设置与连接池创建时不同，则重新创建
+	 * 
+	 * @param connectManager
+	 *            当前网络状态
+	 * @return
+	 */
+	public static synchronized HttpClient getHttpClient(
+			ConnectManager connectManager) {
+		String proxy = connectManager.getProxy();
+		String port = connectManager.getProxyPort();
+
+		if (sHttpClient != null && TextUtils.equals(proxy, sProxy)
+				&& TextUtils.equals(port, sPort)) {
+			return sHttpClient;
+		}
+
+		if (sHttpClient != null) {
+			if (DEBUG) {
+				Log.d(TAG, "proxy changed , rebuild connection pool");
+			}
+			retire(sHttpClient.getConnectionManager());
+		}
+
+		sProxy = proxy;
+		sPort = port;
+		sHttpClient = createHttpClient(proxy, port);
+		startEvictorIfNeed();
+		return sHttpClient;
+	}
+
+	/**
+	 * 当前是否为wap网络，由{@link NetworkMonitor}维护的当前网络状态得到
+	 * 
+	 * @return 尚未获取过client时返回false
+	 */
+	public static boolean isWap() {
+		NetworkMonitor networkMonitor = sNetworkMonitor;
+		return networkMonitor != null
+				&& networkMonitor.getConnectManager().isWapNetwork();
+	}
+
+	/**
+	 * 关闭连接池，下次获取时将重新创建
+	 */
+	public static synchronized void shutdown() {
+		if (sHttpClient != null) {
+			sHttpClient.getConnectionManager().shutdown();
+			sHttpClient = null;
+		}
+	}
+
+	/**
+	 * 创建基于线程安全连接池的client
+	 * 
+	 * @param proxy
+	 * @param port
+	 * @return
+	 */
+	private static DefaultHttpClient createHttpClient(String proxy, String port) {
+		HttpParams params = new BasicHttpParams();
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+		HttpProtocolParams.setContentCharset(params, HTTP.UTF_8);
+		HttpProtocolParams.setUseExpectContinue(params, false);
+		HttpConnectionParams.setConnectionTimeout(params, HTTP_TIMEOUT_MS);
+		HttpConnectionParams.setSoTimeout(params, HTTP_TIMEOUT_MS);
+		HttpConnectionParams.setSocketBufferSize(params, SOCKET_BUFFER_SIZE);
+		HttpConnectionParams.setStaleCheckingEnabled(params, true);
+		ConnManagerParams.setMaxTotalConnections(params, MAX_TOTAL_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params,
+				new ConnPerRouteBean(MAX_CONNECTIONS_PER_ROUTE));
+		ConnManagerParams.setTimeout(params, CONNECTION_POOL_TIMEOUT_MS);
+
+		if (!TextUtils.isEmpty(proxy)) {
+			params.setParameter(ConnRoutePNames.DEFAULT_PROXY, new HttpHost(
+					proxy, Integer.valueOf(port).intValue()));
+		}
+
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory
+				.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", SSLSocketFactory
+				.getSocketFactory(), 443));
+
+		ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(
+				params, schemeRegistry);
+		DefaultHttpClient client = new DefaultHttpClient(connectionManager,
+				params);
+		client.addRequestInterceptor(new HttpRequestInterceptor() {
+
+			@Override
+			public void process(HttpRequest request, HttpContext context)
+					throws HttpException, IOException {
+				context.setAttribute(ATTR_REQUEST_SENT_TIME,
+						Long.valueOf(System.currentTimeMillis()));
+			}
+		});
+		return client;
+	}
+
+	/**
+	 * 开始定期回收过期及空闲的连接
+	 */
+	private static void startEvictorIfNeed() {
+		if (sIsEvictorStarted) {
+			return;
+		}
+		sIsEvictorStarted = true;
+
+		EVICTOR.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				ClientConnectionManager connectionManager = null;
+				synchronized (SharedHttpClient.class) {
+					if (sHttpClient != null) {
+						connectionManager = sHttpClient.getConnectionManager();
+					}
+				}
+				if (connectionManager != null) {
+					connectionManager.closeExpiredConnections();
+					connectionManager.closeIdleConnections(
+							IDLE_CONNECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+				}
+			}
+		}, EVICT_INTERVAL_MS, EVICT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 废弃旧的连接池，立即关闭空闲连接，并在进行中的请求完成后彻底关闭
+	 * 
+	 * @param connectionManager
+	 */
+	private static void retire(final ClientConnectionManager connectionManager) {
+		connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+		EVICTOR.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				connectionManager.shutdown();
+			}
+		}, RETIRE_DELAY_MS, TimeUnit.MILLISECONDS);
+	}
+}
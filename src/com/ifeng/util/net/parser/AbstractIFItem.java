@@ -1,10 +1,14 @@
 package com.ifeng.util.net.parser;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 
 import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
 
 /**
  * 自动解析抽象类，接口数据item如需自动解析，需要继承自对应解析格式的子类:{@link AbstractIFJSONItem}提供 JSON解析、
@@ -27,6 +31,9 @@ public abstract class AbstractIFItem implements Serializable {
 	/** if enabled, logcat will output the log. */
 	protected final boolean DEBUG = true & BaseApplicaion.DEBUG;
 
+	/** 默认数据编码 */
+	protected static final String DEFAULT_CHARSET = "UTF-8";
+
 	/**
 	 * 根据class获取实例,Class要求继承自{@link AbstractIFItem}
 	 * 
@@ -65,4 +72,45 @@ public abstract class AbstractIFItem implements Serializable {
 	 * @return
 	 */
 	public abstract boolean parseData(String data);
+
+	/**
+	 * 从数据流解析数据，子类可重写以实现流式解析，默认将数据流读取为字符串后交由{@link #parseData(String)}处理
+	 * 
+	 * @param in
+	 *            数据流，由调用方负责关闭
+	 * @param charset
+	 *            数据编码，为null时使用UTF-8
+	 * @return
+	 */
+	public boolean parseData(InputStream in, String charset) {
+		try {
+			return parseData(readString(in, charset));
+		} catch (IOException e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 将数据流读取为字符串
+	 * 
+	 * @param in
+	 * @param charset
+	 * @return
+	 * @throws IOException
+	 */
+	protected static String readString(InputStream in, String charset)
+			throws IOException {
+		InputStreamReader reader = new InputStreamReader(in,
+				charset == null ? DEFAULT_CHARSET : charset);
+		StringBuilder sb = new StringBuilder();
+		char[] buffer = new char[2048];
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			sb.append(buffer, 0, length);
+		}
+		return sb.toString();
+	}
 }
@@ -1,20 +1,27 @@
 package com.ifeng.util.net.parser;
 
-import java.io.Serializable;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.json.JSONTokener;
 
+import android.annotation.TargetApi;
 import android.text.TextUtils;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
+import com.ifeng.util.SdkVersionUtils;
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.parser.ParserMetadata.FieldRule;
+import com.ifeng.util.net.parser.ParserMetadata.MappingRules;
+import com.ifeng.util.net.parser.ParserMetadata.RouteNode;
 
 /**
  * 自动解析json类，接口数据item类如需自动解析需要继承自该类。通过
@@ -23,6 +30,9 @@ import com.ifeng.util.logging.Log;
  * 方法，可进行对普通成员变量以及集合型成员变量进行解析，其中成员变量可以为{@link #AbstractIfengJSONItem}而进一步采取嵌套解析。
  * 在其中addMapping的过程，需要采取例如：node1/node2/targetKey的方式构成解析路径。 注意：
  * {@link #AbstractIfengJSONItem}可作为外部类和静态内部类，不能为非静态的内部类。
+ * <p>
+ * 映射规则需要在构造方法中添加，且同一解析类的所有实例添加的映射规则相同：解析类首次解析时由映射规则生成解析元数据并由该类的所有实例共享，
+ * 之后添加的映射规则(包括其它实例在构造方法中添加的规则)均被忽略，不能按实例或在解析过程中修改映射规则。
  * 
  * @author Calvin 2013-5-30
  * 
@@ -34,17 +44,16 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 	 */
 	private static final long serialVersionUID = 3450668199391533573L;
 
-	/** 值类型成员变量映射表 */
-	private HashMap<String, String> mJsonFieldMap;
-	/** 数组类型成员变量映射表 */
-	private HashMap<String, ArrayParserItem> mJsonArrayMap;
+	/** 构造时添加的映射规则，仅在当前类的解析元数据尚未生成时记录，之后的实例共享已经生成的元数据 */
+	private transient MappingRules mMappingRules;
 
 	/**
 	 * 构造
 	 */
 	public AbstractIFJSONItem() {
-		mJsonFieldMap = new HashMap<String, String>();
-		mJsonArrayMap = new HashMap<String, AbstractIFJSONItem.ArrayParserItem>();
+		if (ParserMetadata.get(getClass()) == null) {
+			mMappingRules = new MappingRules();
+		}
 	}
 
 	/**
@@ -86,6 +95,38 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 		}
 	}
 
+	/**
+	 * 从数据流解析json，api level 11及以上以{@link JsonReader}逐个读取节点并直接为成员变量赋值，
+	 * 不生成完整的数据字符串及json对象；未映射的节点直接跳过，仅多个成员变量共用的节点会构造为json对象
+	 * 
+	 * @param in
+	 * @param charset
+	 * @return
+	 */
+	@Override
+	public boolean parseData(InputStream in, String charset) {
+		if (!SdkVersionUtils.hasHoneycomb()) {
+			return super.parseData(in, charset);
+		}
+
+		try {
+			return parseStream(in, charset == null ? DEFAULT_CHARSET
+					: charset);
+		} catch (JSONException e) {
+			if (DEBUG) {
+				Log.d(TAG, "the data to parse is in a wrong format");
+				Log.e(TAG, e);
+			}
+			return false;
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.d(TAG, "caught unknow exception");
+				Log.e(TAG, e);
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * 解析JSONObject
 	 * 
@@ -99,17 +140,11 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 		}
 
 		try {
-			/*
-			 * 获取当前类所有public变量，其中包含从父类中继承下来的public变量
-			 */
-			Field[] fields = getClass().getFields();
-			for (Field field : fields) {
-				Class<?> classType = field.getType();
-				if (classType == List.class || classType == ArrayList.class
-						|| classType == LinkedList.class) {
-					setListField(field, rootDict);
+			for (FieldRule rule : getMetadata().mFieldRules) {
+				if (rule.isList()) {
+					setListField(rule, rootDict, 0);
 				} else {
-					setField(field, rootDict);
+					setField(rule, rootDict, 0);
 				}
 			}
 
@@ -130,76 +165,21 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 	 * @return
 	 * @throws Exception
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@SuppressWarnings("rawtypes")
 	private boolean parseData(JSONArray rootArray) throws Exception {
 		if (rootArray == null) {
 			return false;
 		}
 
 		try {
-			/*
-			 * 获取当前类所有public变量，其中包含从父类中继承下来的public变量
-			 */
-			Field[] fields = getClass().getFields();
-			for (Field field : fields) {
-				Class<?> classType = field.getType();
-
-				if (classType == List.class || classType == ArrayList.class
-						|| classType == LinkedList.class) {
-					ArrayParserItem parserItem = mJsonArrayMap.get(field
-							.getName());
-					if (parserItem == null) {
-						continue;
-					}
-
-					Class<?> classs = parserItem.mClass;
-					/*
-					 * 猜测Collection类型，具体实例化
-					 */
-					List list = null;
-					if (field.getType() == List.class) {
-						list = new LinkedList();
-					} else if (field.getType() == ArrayList.class) {
-						list = new ArrayList();
-					} else if (field.getType() == LinkedList.class) {
-						list = new LinkedList();
-					} else {
-						if (DEBUG) {
-							Log.d(TAG,
-									"unknow type of collection , can not handle it");
-						}
-						continue;
-					}
-					field.set(this, list);
-
-					for (int i = 0; i < rootArray.length(); i++) {
-						Object subObject = rootArray.opt(i);
-
-						if (subObject == null) {
-							continue;
-						}
-
-						// 若为基本类型或者String类型
-						if (subObject instanceof Integer
-								|| subObject instanceof Long
-								|| subObject instanceof Float
-								|| subObject instanceof Double
-								|| subObject instanceof Boolean
-								|| subObject instanceof String) {
-							list.add(subObject);
-						} else {
-							JSONObject subJsonObject = (JSONObject) subObject;
-							/*
-							 * 其余类型默认为JSONObject对象
-							 */
-							AbstractIFJSONItem subItem = (AbstractIFJSONItem) classs
-									.getConstructor().newInstance();
-							if (subItem.parseData(subJsonObject)) {
-								list.add(subItem);
-							}
-						}
-					}
+			for (FieldRule rule : getMetadata().mFieldRules) {
+				if (!rule.isList()) {
+					continue;
 				}
+
+				List list = rule.newList();
+				rule.mField.set(this, list);
+				fillList(list, rule, rootArray);
 			}
 
 		} catch (Exception e) {
@@ -213,55 +193,46 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 	}
 
 	/**
-	 * 对于非集合变量及{@link AbstractIFJSONItem}的赋值
+	 * 获取当前类的解析元数据，首次解析时生成
 	 * 
-	 * @param field
-	 * @param root
+	 * @return
+	 * @throws Exception
 	 */
-	private void setField(Field field, JSONObject root) {
-		String path = mJsonFieldMap.get(field.getName());
-		if (TextUtils.isEmpty(path)) {
-			return;
+	private ParserMetadata getMetadata() throws Exception {
+		ParserMetadata metadata = ParserMetadata.get(getClass());
+		if (metadata != null) {
+			return metadata;
 		}
+		// 反序列化得到的实例未记录映射规则，由新的实例记录
+		AbstractIFJSONItem template = mMappingRules != null ? this
+				: (AbstractIFJSONItem) getClass().getConstructor()
+						.newInstance();
+		metadata = ParserMetadata.create(getClass(), AbstractIFJSONItem.class,
+				template.mMappingRules);
+		mMappingRules = null;
+		return metadata;
+	}
 
-		String[] route = path.split("/");
+	/**
+	 * 对于非集合变量及{@link AbstractIFJSONItem}的赋值
+	 * 
+	 * @param rule
+	 * @param root
+	 *            解析路径第depth层所在的json对象
+	 * @param depth
+	 */
+	private void setField(FieldRule rule, JSONObject root, int depth) {
+		String[] route = rule.mRoute;
 
-		String key = route[0];
+		String key = route[depth];
 		JSONObject node = root;
-		for (int i = 1; i < route.length; i++) {
+		for (int i = depth + 1; i < route.length; i++) {
 			node = node.optJSONObject(key);
 			key = route[i];
 		}
 
 		try {
-
-			if (field.getType() == int.class) {
-				field.setInt(this, node.optInt(key));
-			} else if (field.getType() == long.class) {
-				field.setLong(this, node.optLong(key));
-			} else if (field.getType() == float.class) {
-				field.setFloat(this, (float) node.optDouble(key));
-			} else if (field.getType() == double.class) {
-				field.setDouble(this, (float) node.optDouble(key));
-			} else if (field.getType() == boolean.class) {
-				field.setBoolean(this, node.optBoolean(key));
-			} else if (field.getType() == String.class) {
-				String parseString = node.optString(key);
-				if (TextUtils.isEmpty(parseString)
-						|| "null".equalsIgnoreCase(parseString)) {
-					parseString = null;
-				}
-				field.set(this, parseString);
-			} else {
-				Object object = field.getType().getConstructor().newInstance();
-				if (object instanceof AbstractIFJSONItem) {
-					AbstractIFJSONItem subItem = (AbstractIFJSONItem) object;
-					if (subItem.parseData(node.optJSONObject(key))) {
-						field.set(this, subItem);
-					}
-				}
-			}
-
+			setValue(rule, node.opt(key));
 		} catch (IllegalArgumentException e) {
 			if (DEBUG) {
 				Log.d(TAG, e);
@@ -278,80 +249,78 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 	}
 
 	/**
-	 * 对于集合变量的赋值
+	 * 以json值为非集合变量赋值，转换规则与JSONObject.optXxx()相同
 	 * 
-	 * @param field
-	 * @param root
+	 * @param rule
+	 * @param value
+	 *            json值，不存在时为null
+	 * @throws Exception
 	 */
-	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private void setListField(Field field, JSONObject root) {
-		ArrayParserItem parserItem = mJsonArrayMap.get(field.getName());
-		if (parserItem == null) {
-			return;
-		}
-
-		String path = parserItem.mPath;
-		Class<?> classs = parserItem.mClass;
-
-		/*
-		 * 猜测Collection类型，具体实例化
-		 */
-		List list = null;
-		if (field.getType() == List.class) {
-			list = new LinkedList();
-		} else if (field.getType() == ArrayList.class) {
-			list = new ArrayList();
-		} else if (field.getType() == LinkedList.class) {
-			list = new LinkedList();
-		} else {
-			if (DEBUG) {
-				Log.d(TAG, "unknow type of collection , can not handle it");
+	private void setValue(FieldRule rule, Object value) throws Exception {
+		Field field = rule.mField;
+		switch (rule.mType) {
+		case ParserMetadata.TYPE_INT:
+			field.setInt(this, toInt(value));
+			break;
+		case ParserMetadata.TYPE_LONG:
+			field.setLong(this, toLong(value));
+			break;
+		case ParserMetadata.TYPE_FLOAT:
+			field.setFloat(this, (float) toDouble(value));
+			break;
+		case ParserMetadata.TYPE_DOUBLE:
+			field.setDouble(this, (float) toDouble(value));
+			break;
+		case ParserMetadata.TYPE_BOOLEAN:
+			field.setBoolean(this, toBoolean(value));
+			break;
+		case ParserMetadata.TYPE_STRING:
+			String parseString = value == null ? "" : value.toString();
+			if (TextUtils.isEmpty(parseString)
+					|| "null".equalsIgnoreCase(parseString)) {
+				parseString = null;
 			}
-			return;
+			field.set(this, parseString);
+			break;
+		case ParserMetadata.TYPE_ITEM:
+			AbstractIFJSONItem subItem = (AbstractIFJSONItem) rule
+					.newInstance();
+			if (subItem.parseData(value instanceof JSONObject ? (JSONObject) value
+					: null)) {
+				field.set(this, subItem);
+			}
+			break;
+		default:
+			break;
 		}
+	}
 
-		try {
-			field.set(this, list);
+	/**
+	 * 对于集合变量的赋值
+	 * 
+	 * @param rule
+	 * @param root
+	 *            解析路径第depth层所在的json对象
+	 * @param depth
+	 */
+	@SuppressWarnings("rawtypes")
+	private void setListField(FieldRule rule, JSONObject root, int depth) {
+		List list = rule.newList();
 
-			String[] route = path.split("/");
+		try {
+			rule.mField.set(this, list);
 
-			String key = route[0];
+			String[] route = rule.mRoute;
+			String key = route[depth];
 			JSONObject node = root;
-			for (int i = 1; i < route.length; i++) {
+			for (int i = depth + 1; i < route.length; i++) {
 				node = node.optJSONObject(key);
 				key = route[i];
 			}
 
 			JSONArray array = node.optJSONArray(key);
 			if (array != null) {
-				for (int i = 0; i < array.length(); i++) {
-					Object subObject = array.opt(i);
-
-					if (subObject == null) {
-						continue;
-					}
-
-					// 若为基本类型或者String类型
-					if (subObject instanceof Integer
-							|| subObject instanceof Long
-							|| subObject instanceof Float
-							|| subObject instanceof Double
-							|| subObject instanceof Boolean
-							|| subObject instanceof String) {
-						list.add(subObject);
-					} else {
-						JSONObject subJsonObject = (JSONObject) subObject;
-						/*
-						 * 其余类型默认为JSONObject对象
-						 */
-						AbstractIFJSONItem subItem = (AbstractIFJSONItem) classs
-								.getConstructor().newInstance();
-						if (subItem.parseData(subJsonObject)) {
-							list.add(subItem);
-						}
-					}
-
-				}
+				fillList(list, rule, array);
 			}
 		} catch (IllegalArgumentException e) {
 			if (DEBUG) {
@@ -368,6 +337,352 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 		}
 	}
 
+	/**
+	 * 将JSONArray中的元素加入集合，基本类型及String直接加入，JSONObject解析为集合元素类
+	 * 
+	 * @param list
+	 * @param rule
+	 * @param array
+	 * @throws Exception
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static void fillList(List list, FieldRule rule, JSONArray array)
+			throws Exception {
+		for (int i = 0; i < array.length(); i++) {
+			Object subObject = array.opt(i);
+
+			if (subObject == null) {
+				continue;
+			}
+
+			// 若为基本类型或者String类型
+			if (subObject instanceof Integer || subObject instanceof Long
+					|| subObject instanceof Float
+					|| subObject instanceof Double
+					|| subObject instanceof Boolean
+					|| subObject instanceof String) {
+				list.add(subObject);
+			} else {
+				JSONObject subJsonObject = (JSONObject) subObject;
+				/*
+				 * 其余类型默认为JSONObject对象
+				 */
+				AbstractIFJSONItem subItem = (AbstractIFJSONItem) rule
+						.newInstance();
+				if (subItem.parseData(subJsonObject)) {
+					list.add(subItem);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 与JSONObject.optInt()相同的转换
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static int toInt(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		if (value instanceof String) {
+			try {
+				return (int) Double.parseDouble((String) value);
+			} catch (NumberFormatException e) {
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 与JSONObject.optLong()相同的转换
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static long toLong(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		if (value instanceof String) {
+			try {
+				return (long) Double.parseDouble((String) value);
+			} catch (NumberFormatException e) {
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * 与JSONObject.optDouble()相同的转换
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static double toDouble(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof String) {
+			try {
+				return Double.valueOf((String) value);
+			} catch (NumberFormatException e) {
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * 与JSONObject.optBoolean()相同的转换
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		return "true".equalsIgnoreCase(String.valueOf(value));
+	}
+
+	/**
+	 * 以流的方式解析json数据
+	 * 
+	 * @param in
+	 * @param charset
+	 * @return
+	 * @throws Exception
+	 */
+	@TargetApi(11)
+	private boolean parseStream(InputStream in, String charset)
+			throws Exception {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, charset));
+		reader.setLenient(true);
+		JsonToken token = reader.peek();
+		if (token == JsonToken.BEGIN_OBJECT) {
+			return parseStream(reader);
+		} else if (token == JsonToken.BEGIN_ARRAY) {
+			return parseStreamArray(reader);
+		}
+
+		if (DEBUG) {
+			Log.d(TAG, "the data to parse is empty");
+		}
+		return false;
+	}
+
+	/**
+	 * 从数据流读取一个json对象并为成员变量赋值，与{@link #parseData(JSONObject)}的结果相同
+	 * 
+	 * @param reader
+	 *            下一个节点为json对象
+	 * @return
+	 * @throws Exception
+	 *             数据格式错误
+	 */
+	@TargetApi(11)
+	private boolean parseStream(JsonReader reader) throws Exception {
+		ParserMetadata metadata = getMetadata();
+		// 与parseData(JSONObject)相同，数据中不存在的集合变量赋值为空集合
+		for (FieldRule rule : metadata.mFieldRules) {
+			if (rule.isList()) {
+				rule.mField.set(this, rule.newList());
+			}
+		}
+		readObject(reader, metadata.mRouteTree, 0);
+		return true;
+	}
+
+	/**
+	 * 读取解析路径中一个节点对应的json对象
+	 * 
+	 * @param reader
+	 *            下一个节点为json对象
+	 * @param node
+	 * @param depth
+	 *            节点在解析路径中的层级
+	 * @throws Exception
+	 */
+	@TargetApi(11)
+	private void readObject(JsonReader reader, RouteNode node, int depth)
+			throws Exception {
+		HashSet<String> readKeys = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			RouteNode child = node.mChildren.get(key);
+			if (child == null) {
+				reader.skipValue();
+				continue;
+			}
+			if (readKeys == null) {
+				readKeys = new HashSet<String>();
+			}
+			readKeys.add(key);
+
+			if (child.isLeaf()) {
+				readField(reader, child.mRules.get(0));
+			} else if (child.mRules.isEmpty()) {
+				if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+					readObject(reader, child, depth + 1);
+				} else {
+					reader.skipValue();
+				}
+			} else {
+				// 多个成员变量共用该节点，构造为json对象后按路径赋值
+				JSONObject holder = new JSONObject();
+				holder.put(key, JSONStreamReader.readValue(reader));
+				for (FieldRule rule : child.mSubtreeRules) {
+					if (rule.isList()) {
+						setListField(rule, holder, depth);
+					} else {
+						setField(rule, holder, depth);
+					}
+				}
+			}
+		}
+		reader.endObject();
+
+		// 与JSONObject.optXxx()相同，数据中不存在的值类型成员变量赋值为默认值
+		for (Map.Entry<String, RouteNode> entry : node.mChildren.entrySet()) {
+			if (readKeys != null && readKeys.contains(entry.getKey())) {
+				continue;
+			}
+			for (FieldRule rule : entry.getValue().mRules) {
+				if (rule.isList() || rule.mType == ParserMetadata.TYPE_ITEM) {
+					continue;
+				}
+				try {
+					setValue(rule, null);
+				} catch (Exception e) {
+					if (DEBUG) {
+						Log.d(TAG, e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 从数据流读取一个成员变量的值
+	 * 
+	 * @param reader
+	 * @param rule
+	 * @throws Exception
+	 *             数据格式错误
+	 */
+	@SuppressWarnings("rawtypes")
+	@TargetApi(11)
+	private void readField(JsonReader reader, FieldRule rule) throws Exception {
+		if (rule.isList()) {
+			List list = rule.newList();
+			rule.mField.set(this, list);
+			if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+				readList(reader, list, rule);
+			} else {
+				reader.skipValue();
+			}
+		} else if (rule.mType == ParserMetadata.TYPE_ITEM) {
+			if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+				return;
+			}
+			AbstractIFJSONItem subItem;
+			try {
+				subItem = (AbstractIFJSONItem) rule.newInstance();
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.d(TAG, e);
+				}
+				reader.skipValue();
+				return;
+			}
+			if (subItem.parseStream(reader)) {
+				rule.mField.set(this, subItem);
+			}
+		} else {
+			Object value = JSONStreamReader.readValue(reader);
+			try {
+				setValue(rule, value);
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.d(TAG, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 从数据流读取json数组的元素加入集合，与{@link #fillList(List, FieldRule, JSONArray)}相同
+	 * 
+	 * @param reader
+	 *            下一个节点为json数组
+	 * @param list
+	 * @param rule
+	 * @throws Exception
+	 *             数据格式错误
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@TargetApi(11)
+	private static void readList(JsonReader reader, List list, FieldRule rule)
+			throws Exception {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			JsonToken token = reader.peek();
+			if (token == JsonToken.BEGIN_OBJECT) {
+				AbstractIFJSONItem subItem;
+				try {
+					subItem = (AbstractIFJSONItem) rule.newInstance();
+				} catch (Exception e) {
+					reader.skipValue();
+					continue;
+				}
+				if (subItem.parseStream(reader)) {
+					list.add(subItem);
+				}
+			} else if (token == JsonToken.BEGIN_ARRAY
+					|| token == JsonToken.NULL) {
+				reader.skipValue();
+			} else {
+				// 基本类型或者String类型
+				list.add(JSONStreamReader.readValue(reader));
+			}
+		}
+		reader.endArray();
+	}
+
+	/**
+	 * 从数据流读取作为根节点的json数组，与{@link #parseData(JSONArray)}的结果相同
+	 * 
+	 * @param reader
+	 *            下一个节点为json数组
+	 * @return
+	 * @throws Exception
+	 */
+	@SuppressWarnings("rawtypes")
+	@TargetApi(11)
+	private boolean parseStreamArray(JsonReader reader) throws Exception {
+		FieldRule listRule = null;
+		int listCount = 0;
+		for (FieldRule rule : getMetadata().mFieldRules) {
+			if (rule.isList()) {
+				listRule = rule;
+				listCount++;
+			}
+		}
+		// 多个集合变量需要同一数组的数据时构造为json数组
+		if (listCount != 1) {
+			Object array = JSONStreamReader.readValue(reader);
+			return parseData((JSONArray) array);
+		}
+
+		List list = listRule.newList();
+		listRule.mField.set(this, list);
+		readList(reader, list, listRule);
+		return true;
+	}
+
 	/**
 	 * 添加成员变量映射，示例格式:{a:b}，取到b的值则为 path = a ；{a:{b:c}} ,取到c的值则为 path = a/b
 	 * 
@@ -375,7 +690,14 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 	 * @param path
 	 */
 	protected void addMappingRuleField(String field, String path) {
-		mJsonFieldMap.put(field, path);
+		if (mMappingRules != null) {
+			mMappingRules.addField(field, path);
+		} else if (DEBUG) {
+			ParserMetadata metadata = ParserMetadata.get(getClass());
+			if (metadata != null && !metadata.hasField(field, path)) {
+				logIgnoredRule(field);
+			}
+		}
 	}
 
 	/**
@@ -388,28 +710,25 @@ public abstract class AbstractIFJSONItem extends AbstractIFItem {
 	 */
 	protected void addMappingRuleArrayField(String field, String path,
 			Class<?> classs) {
-		mJsonArrayMap.put(field, new ArrayParserItem(path, classs));
+		if (mMappingRules != null) {
+			mMappingRules.addArrayField(field, path, classs);
+		} else if (DEBUG) {
+			ParserMetadata metadata = ParserMetadata.get(getClass());
+			if (metadata != null
+					&& !metadata.hasArrayField(field, path, classs)) {
+				logIgnoredRule(field);
+			}
+		}
 	}
 
 	/**
-	 * 用于集合解析映射的容器
-	 * 
-	 * @author Calvin
+	 * 解析元数据已经生成，与之不同的映射规则被忽略
 	 * 
+	 * @param field
 	 */
-	private class ArrayParserItem implements Serializable {
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 6519699831842963540L;
-		/** json路径 */
-		public String mPath;
-		/** Class */
-		public Class<?> mClass;
-
-		public ArrayParserItem(String path, Class<?> classs) {
-			mPath = path;
-			mClass = classs;
-		}
+	private void logIgnoredRule(String field) {
+		Log.w(TAG, "mapping rule of " + field + " ignored , rules of "
+				+ getClass().getName()
+				+ " must be added in constructor and be same for all instances");
 	}
 }
@@ -2,11 +2,8 @@ package com.ifeng.util.net.parser;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.InputStream;
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -21,6 +18,8 @@ import org.xml.sax.SAXException;
 import android.text.TextUtils;
 
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.parser.ParserMetadata.FieldRule;
+import com.ifeng.util.net.parser.ParserMetadata.MappingRules;
 
 /**
  * 自动解析xml类，接口数据item类如需自动解析需要继承自该类。通过
@@ -30,6 +29,9 @@ import com.ifeng.util.logging.Log;
  * 在其中addMapping的过程，对于值节点需要采取例如：node1/node2/targetKey/# 或
  * node1/node2/targetKey/：count 的方式构成解析路径。 注意： {@link #AbstractIfengXMLItem}
  * 可作为外部类和静态内部类，不能为非静态的内部类。
+ * <p>
+ * 映射规则需要在构造方法中添加，且同一解析类的所有实例添加的映射规则相同：解析类首次解析时由映射规则生成解析元数据并由该类的所有实例共享，
+ * 之后添加的映射规则(包括其它实例在构造方法中添加的规则)均被忽略，不能按实例或在解析过程中修改映射规则。
  * 
  * @author Calvin 2013-5-30
  * 
@@ -41,17 +43,16 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 	 */
 	private static final long serialVersionUID = -8583103880807742760L;
 
-	/** 值类型成员变量映射表 */
-	private HashMap<String, String> mXmlFieldMap;
-	/** 数组类型成员变量映射表 */
-	private HashMap<String, ArrayParserItem> mXmlArrayMap;
+	/** 构造时添加的映射规则，仅在当前类的解析元数据尚未生成时记录，之后的实例共享已经生成的元数据 */
+	private transient MappingRules mMappingRules;
 
 	/**
 	 * 构造
 	 */
 	public AbstractIFXMLItem() {
-		mXmlFieldMap = new HashMap<String, String>();
-		mXmlArrayMap = new HashMap<String, AbstractIFXMLItem.ArrayParserItem>();
+		if (ParserMetadata.get(getClass()) == null) {
+			mMappingRules = new MappingRules();
+		}
 	}
 
 	/**
@@ -100,6 +101,47 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 		}
 	}
 
+	/**
+	 * 从数据流解析xml，由xml解析器直接读取数据流，编码以xml声明为准。映射规则按标签名在全文档中查找，
+	 * 因此仍需构造完整的DOM文档树，仅省去完整的数据字符串
+	 * 
+	 * @param in
+	 * @param charset
+	 * @return
+	 */
+	@Override
+	public boolean parseData(InputStream in, String charset) {
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory
+					.newInstance();
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			Document document = builder.parse(in);
+			Element rootElement = document.getDocumentElement();
+			return parseData(rootElement);
+
+		} catch (ParserConfigurationException e) {
+			if (DEBUG) {
+				Log.d(TAG, e);
+			}
+			return false;
+		} catch (SAXException e) {
+			if (DEBUG) {
+				Log.d(TAG, e);
+			}
+			return false;
+		} catch (IOException e) {
+			if (DEBUG) {
+				Log.d(TAG, e);
+			}
+			return false;
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.d(TAG, "caught unknow exception");
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * 解析Element
 	 * 
@@ -113,25 +155,11 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 		}
 
 		try {
-			/*
-			 * 获取当前类所有public变量，其中包含从父类中继承下来的public变量
-			 */
-			Field[] fields = getClass().getFields();
-			for (Field field : fields) {
-				boolean isArrayField = false;
-
-				if (field.getType() == List.class) {
-					isArrayField = true;
-				} else if (field.getType() == ArrayList.class) {
-					isArrayField = true;
-				} else if (field.getType() == LinkedList.class) {
-					isArrayField = true;
-				}
-
-				if (isArrayField) {
-					setListField(field, element);
+			for (FieldRule rule : getMetadata().mFieldRules) {
+				if (rule.isList()) {
+					setListField(rule, element);
 				} else {
-					setField(field, element);
+					setField(rule, element);
 				}
 			}
 
@@ -146,18 +174,35 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 	}
 
 	/**
-	 * 对于非集合变量及{@link AbstractIFJSONItem}的赋值
+	 * 获取当前类的解析元数据，首次解析时生成
 	 * 
-	 * @param field
-	 * @param root
+	 * @return
+	 * @throws Exception
 	 */
-	private void setField(Field field, Element root) {
-		String path = mXmlFieldMap.get(field.getName());
-		if (TextUtils.isEmpty(path)) {
-			return;
+	private ParserMetadata getMetadata() throws Exception {
+		ParserMetadata metadata = ParserMetadata.get(getClass());
+		if (metadata != null) {
+			return metadata;
 		}
+		// 反序列化得到的实例未记录映射规则，由新的实例记录
+		AbstractIFXMLItem template = mMappingRules != null ? this
+				: (AbstractIFXMLItem) getClass().getConstructor()
+						.newInstance();
+		metadata = ParserMetadata.create(getClass(), AbstractIFXMLItem.class,
+				template.mMappingRules);
+		mMappingRules = null;
+		return metadata;
+	}
 
-		String[] route = path.split("/");
+	/**
+	 * 对于非集合变量及{@link AbstractIFJSONItem}的赋值
+	 * 
+	 * @param rule
+	 * @param root
+	 */
+	private void setField(FieldRule rule, Element root) {
+		Field field = rule.mField;
+		String[] route = rule.mRoute;
 
 		String key = route[0];
 		Element node = root;
@@ -168,48 +213,57 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 				key = route[i];
 			}
 
-			if (field.getType() == int.class) {
-				String value = getNodeValue(key, node);
+			String value;
+			switch (rule.mType) {
+			case ParserMetadata.TYPE_INT:
+				value = getNodeValue(key, node);
 				if (value == null) {
 					return;
 				}
 				field.setInt(this, Integer.parseInt(value));
-			} else if (field.getType() == long.class) {
-				String value = getNodeValue(key, node);
+				break;
+			case ParserMetadata.TYPE_LONG:
+				value = getNodeValue(key, node);
 				if (value == null) {
 					return;
 				}
 				field.setLong(this, Long.parseLong(value));
-			} else if (field.getType() == float.class) {
-				String value = getNodeValue(key, node);
+				break;
+			case ParserMetadata.TYPE_FLOAT:
+				value = getNodeValue(key, node);
 				if (value == null) {
 					return;
 				}
 				field.setFloat(this, Float.parseFloat(value));
-			} else if (field.getType() == double.class) {
-				String value = getNodeValue(key, node);
+				break;
+			case ParserMetadata.TYPE_DOUBLE:
+				value = getNodeValue(key, node);
 				if (value == null) {
 					return;
 				}
 				field.setDouble(this, Double.parseDouble(value));
-			} else if (field.getType() == boolean.class) {
+				break;
+			case ParserMetadata.TYPE_BOOLEAN:
 				field.setBoolean(this,
 						Boolean.parseBoolean(getNodeValue(key, node)));
-			} else if (field.getType() == String.class) {
+				break;
+			case ParserMetadata.TYPE_STRING:
 				String parseString = getNodeValue(key, node);
 				if (TextUtils.isEmpty(parseString)
 						|| "null".equalsIgnoreCase(parseString)) {
 					parseString = null;
 				}
 				field.set(this, parseString);
-			} else {
-				Object object = field.getType().getConstructor().newInstance();
-				if (object instanceof AbstractIFXMLItem) {
-					AbstractIFXMLItem subItem = (AbstractIFXMLItem) object;
-					if (subItem.parseData(node)) {
-						field.set(this, subItem);
-					}
+				break;
+			case ParserMetadata.TYPE_ITEM:
+				AbstractIFXMLItem subItem = (AbstractIFXMLItem) rule
+						.newInstance();
+				if (subItem.parseData(node)) {
+					field.set(this, subItem);
 				}
+				break;
+			default:
+				break;
 			}
 
 		} catch (IllegalArgumentException e) {
@@ -230,40 +284,17 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 	/**
 	 * 对于集合变量的赋值
 	 * 
-	 * @param field
+	 * @param rule
 	 * @param root
 	 */
 	@SuppressWarnings({ "unchecked", "rawtypes" })
-	private void setListField(Field field, Element root) {
-		ArrayParserItem parserItem = mXmlArrayMap.get(field.getName());
-		if (parserItem == null) {
-			return;
-		}
-
-		String path = parserItem.mPath;
-		Class<? extends AbstractIFXMLItem> classs = parserItem.mClass;
-
-		/*
-		 * 猜测Collection类型，具体实例化
-		 */
-		List list = null;
-		if (field.getType() == List.class) {
-			list = new LinkedList();
-		} else if (field.getType() == ArrayList.class) {
-			list = new ArrayList();
-		} else if (field.getType() == LinkedList.class) {
-			list = new LinkedList();
-		} else {
-			if (DEBUG) {
-				Log.d(TAG, "unknow type of collection , can not handle it");
-			}
-			return;
-		}
+	private void setListField(FieldRule rule, Element root) {
+		List list = rule.newList();
 
 		try {
-			field.set(this, list);
+			rule.mField.set(this, list);
 
-			String[] route = path.split("/");
+			String[] route = rule.mRoute;
 
 			String key = route[0];
 			Element node = root;
@@ -286,7 +317,7 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 						continue;
 					}
 					Element element = (Element) nodes.item(i);
-					AbstractIFXMLItem subItem = classs.getConstructor()
+					AbstractIFXMLItem subItem = (AbstractIFXMLItem) rule
 							.newInstance();
 					if (subItem.parseData(element)) {
 						list.add(subItem);
@@ -318,10 +349,14 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 	 * @param path
 	 */
 	protected void addMappingRuleField(String field, String path) {
-		if (mXmlFieldMap == null) {
-			mXmlFieldMap = new HashMap<String, String>();
+		if (mMappingRules != null) {
+			mMappingRules.addField(field, path);
+		} else if (DEBUG) {
+			ParserMetadata metadata = ParserMetadata.get(getClass());
+			if (metadata != null && !metadata.hasField(field, path)) {
+				logIgnoredRule(field);
+			}
 		}
-		mXmlFieldMap.put(field, path);
 	}
 
 	/**
@@ -335,10 +370,26 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 	 */
 	protected void addMappingRuleArrayField(String field, String path,
 			Class<? extends AbstractIFXMLItem> classs) {
-		if (mXmlArrayMap == null) {
-			mXmlArrayMap = new HashMap<String, ArrayParserItem>();
+		if (mMappingRules != null) {
+			mMappingRules.addArrayField(field, path, classs);
+		} else if (DEBUG) {
+			ParserMetadata metadata = ParserMetadata.get(getClass());
+			if (metadata != null
+					&& !metadata.hasArrayField(field, path, classs)) {
+				logIgnoredRule(field);
+			}
 		}
-		mXmlArrayMap.put(field, new ArrayParserItem(path, classs));
+	}
+
+	/**
+	 * 解析元数据已经生成，与之不同的映射规则被忽略
+	 * 
+	 * @param field
+	 */
+	private void logIgnoredRule(String field) {
+		Log.w(TAG, "mapping rule of " + field + " ignored , rules of "
+				+ getClass().getName()
+				+ " must be added in constructor and be same for all instances");
 	}
 
 	private String getNodeValue(String key, Element node) {
@@ -358,27 +409,4 @@ public class AbstractIFXMLItem extends AbstractIFItem {
 
 		return valueString;
 	}
-
-	/**
-	 * 用于集合解析映射的容器
-	 * 
-	 * @author Calvin
-	 * 
-	 */
-	private class ArrayParserItem implements Serializable {
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = -5265021341700916882L;
-		/** 节点路径 */
-		public String mPath;
-		/** Class */
-		public Class<? extends AbstractIFXMLItem> mClass;
-
-		public ArrayParserItem(String path,
-				Class<? extends AbstractIFXMLItem> classs) {
-			mPath = path;
-			mClass = classs;
-		}
-	}
 }
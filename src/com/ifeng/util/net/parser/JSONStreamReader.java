@@ -0,0 +1,123 @@
+package com.ifeng.util.net.parser;
+
+import java.io.IOException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.annotation.TargetApi;
+import android.util.JsonReader;
+
+/**
+ * 基于{@link JsonReader}的json读取工具，从数据流的当前位置读取一个json值，用于流式解析时需要构造为
+ * {@link JSONObject}/{@link JSONArray}的节点。要求api level 11及以上。
+ * 
+ * @author Calvin
+ * 
+ */
+@TargetApi(11)
+final class JSONStreamReader {
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private JSONStreamReader() {
+	}
+
+	/**
+	 * 读取一个json值
+	 * 
+	 * @param reader
+	 * @return {@link JSONObject}、{@link JSONArray}、基本类型的包装类、String或
+	 *         {@link JSONObject#NULL}
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	static Object readValue(JsonReader reader) throws IOException,
+			JSONException {
+		switch (reader.peek()) {
+		case BEGIN_OBJECT:
+			return readObject(reader);
+		case BEGIN_ARRAY:
+			return readArray(reader);
+		case STRING:
+			return reader.nextString();
+		case NUMBER:
+			return readNumber(reader.nextString());
+		case BOOLEAN:
+			return reader.nextBoolean();
+		case NULL:
+			reader.nextNull();
+			return JSONObject.NULL;
+		default:
+			throw new JSONException("unexpected token " + reader.peek());
+		}
+	}
+
+	/**
+	 * 读取json对象
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static JSONObject readObject(JsonReader reader)
+			throws IOException, JSONException {
+		JSONObject object = new JSONObject();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			object.put(name, readValue(reader));
+		}
+		reader.endObject();
+		return object;
+	}
+
+	/**
+	 * 读取json数组
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private static JSONArray readArray(JsonReader reader) throws IOException,
+			JSONException {
+		JSONArray array = new JSONArray();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			array.put(readValue(reader));
+		}
+		reader.endArray();
+		return array;
+	}
+
+	/**
+	 * 与{@link org.json.JSONTokener}保持一致的数字类型转换：整数优先使用Integer/Long，其余使用Double
+	 * 
+	 * @param number
+	 * @return
+	 */
+	private static Object readNumber(String number) {
+		if (number.indexOf('.') < 0 && number.indexOf('e') < 0
+				&& number.indexOf('E') < 0) {
+			try {
+				long longValue = Long.parseLong(number);
+				if (longValue <= Integer.MAX_VALUE
+						&& longValue >= Integer.MIN_VALUE) {
+					return Integer.valueOf((int) longValue);
+				}
+				return Long.valueOf(longValue);
+			} catch (NumberFormatException e) {
+				// 超出long范围，按Double处理
+			}
+		}
+		try {
+			return Double.valueOf(number);
+		} catch (NumberFormatException e) {
+			return number;
+		}
+	}
+}
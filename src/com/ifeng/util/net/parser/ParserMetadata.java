@@ -0,0 +1,379 @@
+package com.ifeng.util.net.parser;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import android.text.TextUtils;
+
+/**
+ * 解析类的元数据，由解析类构造时添加的映射规则及其public成员变量生成：包括成员变量的Field、拆分后的解析路径、
+ * 嵌套解析类及集合元素类的构造方法。每个解析类仅生成一次，由该类的所有实例共享，避免每次解析及每个实例构造时
+ * 重复进行反射查找与映射规则的创建。
+ * <p>
+ * 映射规则需要在解析类的构造方法中添加，且同一解析类的所有实例的映射规则相同。
+ * 
+ * @author Calvin
+ * 
+ */
+final class ParserMetadata {
+
+	/** 成员变量类型_int */
+	static final int TYPE_INT = 1;
+	/** 成员变量类型_long */
+	static final int TYPE_LONG = 2;
+	/** 成员变量类型_float */
+	static final int TYPE_FLOAT = 3;
+	/** 成员变量类型_double */
+	static final int TYPE_DOUBLE = 4;
+	/** 成员变量类型_boolean */
+	static final int TYPE_BOOLEAN = 5;
+	/** 成员变量类型_String */
+	static final int TYPE_STRING = 6;
+	/** 成员变量类型_嵌套解析类 */
+	static final int TYPE_ITEM = 7;
+	/** 成员变量类型_List，实例化为LinkedList */
+	static final int TYPE_LIST = 8;
+	/** 成员变量类型_ArrayList */
+	static final int TYPE_ARRAY_LIST = 9;
+	/** 成员变量类型_LinkedList */
+	static final int TYPE_LINKED_LIST = 10;
+
+	/** 各解析类的元数据 */
+	private static final HashMap<Class<?>, ParserMetadata> METADATAS = new HashMap<Class<?>, ParserMetadata>();
+
+	/** 需要解析的成员变量，按getFields()的顺序排列 */
+	final FieldRule[] mFieldRules;
+	/** 生成元数据时的映射规则 */
+	private final MappingRules mRules;
+	/** 按解析路径组织的成员变量，用于流式解析 */
+	final RouteNode mRouteTree = new RouteNode();
+
+	/**
+	 * 构造
+	 * 
+	 * @param fieldRules
+	 * @param rules
+	 */
+	private ParserMetadata(FieldRule[] fieldRules, MappingRules rules) {
+		mFieldRules = fieldRules;
+		mRules = rules;
+		for (FieldRule rule : fieldRules) {
+			if (rule.mRoute == null) {
+				continue;
+			}
+			RouteNode node = mRouteTree;
+			for (String key : rule.mRoute) {
+				node.mSubtreeRules.add(rule);
+				RouteNode child = node.mChildren.get(key);
+				if (child == null) {
+					child = new RouteNode();
+					node.mChildren.put(key, child);
+				}
+				node = child;
+			}
+			node.mSubtreeRules.add(rule);
+			node.mRules.add(rule);
+		}
+	}
+
+	/**
+	 * 是否与生成元数据时的值类型成员变量映射相同
+	 * 
+	 * @param field
+	 * @param path
+	 * @return
+	 */
+	boolean hasField(String field, String path) {
+		return mRules.mFieldPaths.containsKey(field)
+				&& TextUtils.equals(mRules.mFieldPaths.get(field), path);
+	}
+
+	/**
+	 * 是否与生成元数据时的集合类型成员变量映射相同
+	 * 
+	 * @param field
+	 * @param path
+	 * @param classs
+	 * @return
+	 */
+	boolean hasArrayField(String field, String path, Class<?> classs) {
+		return mRules.mArrayPaths.containsKey(field)
+				&& TextUtils.equals(mRules.mArrayPaths.get(field), path)
+				&& mRules.mArrayClasses.get(field) == classs;
+	}
+
+	/**
+	 * 获取已经生成的元数据
+	 * 
+	 * @param itemClass
+	 *            解析类
+	 * @return 尚未生成时返回null
+	 */
+	static ParserMetadata get(Class<?> itemClass) {
+		synchronized (METADATAS) {
+			return METADATAS.get(itemClass);
+		}
+	}
+
+	/**
+	 * 生成并保存解析类的元数据，已经存在时直接返回已有的元数据
+	 * 
+	 * @param itemClass
+	 *            解析类
+	 * @param nestedClass
+	 *            可嵌套解析的基类，如{@link AbstractIFJSONItem}
+	 * @param rules
+	 *            解析类实例构造时添加的映射规则
+	 * @return
+	 */
+	static ParserMetadata create(Class<?> itemClass, Class<?> nestedClass,
+			MappingRules rules) {
+		synchronized (METADATAS) {
+			ParserMetadata metadata = METADATAS.get(itemClass);
+			if (metadata != null) {
+				return metadata;
+			}
+		}
+
+		List<FieldRule> fieldRules = new ArrayList<FieldRule>();
+		/*
+		 * 获取当前类所有public变量，其中包含从父类中继承下来的public变量
+		 */
+		for (Field field : itemClass.getFields()) {
+			FieldRule rule = createFieldRule(field, nestedClass, rules);
+			if (rule != null) {
+				fieldRules.add(rule);
+			}
+		}
+
+		ParserMetadata metadata = new ParserMetadata(
+				fieldRules.toArray(new FieldRule[fieldRules.size()]), rules);
+		synchronized (METADATAS) {
+			ParserMetadata exist = METADATAS.get(itemClass);
+			if (exist != null) {
+				return exist;
+			}
+			METADATAS.put(itemClass, metadata);
+			return metadata;
+		}
+	}
+
+	/**
+	 * 生成成员变量的解析规则
+	 * 
+	 * @param field
+	 * @param nestedClass
+	 * @param rules
+	 * @return 无需解析时返回null
+	 */
+	private static FieldRule createFieldRule(Field field, Class<?> nestedClass,
+			MappingRules rules) {
+		Class<?> classType = field.getType();
+		int type;
+		String path;
+		Constructor<?> constructor = null;
+		if (classType == List.class || classType == ArrayList.class
+				|| classType == LinkedList.class) {
+			if (!rules.mArrayPaths.containsKey(field.getName())) {
+				return null;
+			}
+			path = rules.mArrayPaths.get(field.getName());
+			type = classType == ArrayList.class ? TYPE_ARRAY_LIST
+					: classType == LinkedList.class ? TYPE_LINKED_LIST
+							: TYPE_LIST;
+			constructor = getConstructor(rules.mArrayClasses.get(field
+					.getName()));
+		} else {
+			path = rules.mFieldPaths.get(field.getName());
+			if (TextUtils.isEmpty(path)) {
+				return null;
+			}
+			if (classType == int.class) {
+				type = TYPE_INT;
+			} else if (classType == long.class) {
+				type = TYPE_LONG;
+			} else if (classType == float.class) {
+				type = TYPE_FLOAT;
+			} else if (classType == double.class) {
+				type = TYPE_DOUBLE;
+			} else if (classType == boolean.class) {
+				type = TYPE_BOOLEAN;
+			} else if (classType == String.class) {
+				type = TYPE_STRING;
+			} else if (nestedClass.isAssignableFrom(classType)) {
+				type = TYPE_ITEM;
+				constructor = getConstructor(classType);
+				if (constructor == null) {
+					return null;
+				}
+			} else {
+				// 其余类型无法解析
+				return null;
+			}
+		}
+
+		try {
+			// 跳过每次赋值时的访问检查
+			field.setAccessible(true);
+		} catch (SecurityException e) {
+		}
+
+		String[] route = path == null ? null : path.split("/");
+		return new FieldRule(field, type, route, constructor);
+	}
+
+	/**
+	 * 获取无参构造方法
+	 * 
+	 * @param classs
+	 * @return 不存在时返回null
+	 */
+	private static Constructor<?> getConstructor(Class<?> classs) {
+		if (classs == null) {
+			return null;
+		}
+		try {
+			return classs.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 成员变量的解析规则
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	static final class FieldRule {
+		/** 成员变量 */
+		final Field mField;
+		/** 成员变量类型 */
+		final int mType;
+		/** 拆分后的解析路径，未设置路径时为null */
+		final String[] mRoute;
+		/** 嵌套解析类或集合元素类的构造方法，可为null */
+		private final Constructor<?> mConstructor;
+
+		/**
+		 * 构造
+		 * 
+		 * @param field
+		 * @param type
+		 * @param route
+		 * @param constructor
+		 */
+		private FieldRule(Field field, int type, String[] route,
+				Constructor<?> constructor) {
+			mField = field;
+			mType = type;
+			mRoute = route;
+			mConstructor = constructor;
+		}
+
+		/**
+		 * @return 是否为集合类型
+		 */
+		boolean isList() {
+			return mType == TYPE_LIST || mType == TYPE_ARRAY_LIST
+					|| mType == TYPE_LINKED_LIST;
+		}
+
+		/**
+		 * 按成员变量类型实例化集合
+		 * 
+		 * @return
+		 */
+		@SuppressWarnings("rawtypes")
+		List newList() {
+			return mType == TYPE_ARRAY_LIST ? new ArrayList()
+					: new LinkedList();
+		}
+
+		/**
+		 * 实例化嵌套解析类或集合元素类
+		 * 
+		 * @return
+		 * @throws Exception
+		 *             不存在无参构造方法或实例化失败
+		 */
+		Object newInstance() throws Exception {
+			if (mConstructor == null) {
+				throw new NoSuchMethodException(mField.getName()
+						+ " has no available constructor");
+			}
+			return mConstructor.newInstance();
+		}
+	}
+
+	/**
+	 * 解析路径中的一个节点
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	static final class RouteNode {
+		/** 子节点 */
+		final HashMap<String, RouteNode> mChildren = new HashMap<String, RouteNode>();
+		/** 解析路径终止于该节点的成员变量 */
+		final List<FieldRule> mRules = new ArrayList<FieldRule>();
+		/** 解析路径经过或终止于该节点的成员变量 */
+		final List<FieldRule> mSubtreeRules = new ArrayList<FieldRule>();
+
+		/**
+		 * 私有构造
+		 */
+		private RouteNode() {
+		}
+
+		/**
+		 * @return 是否仅有一个成员变量使用该节点的值，此时可直接从数据流读取
+		 */
+		boolean isLeaf() {
+			return mChildren.isEmpty() && mRules.size() == 1;
+		}
+	}
+
+	/**
+	 * 解析类构造时添加的映射规则，仅在生成元数据时使用
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	static final class MappingRules {
+		/** 值类型成员变量的解析路径 */
+		private final HashMap<String, String> mFieldPaths = new HashMap<String, String>();
+		/** 集合类型成员变量的解析路径 */
+		private final HashMap<String, String> mArrayPaths = new HashMap<String, String>();
+		/** 集合类型成员变量的元素类 */
+		private final HashMap<String, Class<?>> mArrayClasses = new HashMap<String, Class<?>>();
+
+		/**
+		 * 添加值类型成员变量映射
+		 * 
+		 * @param field
+		 * @param path
+		 */
+		void addField(String field, String path) {
+			mFieldPaths.put(field, path);
+		}
+
+		/**
+		 * 添加集合类型成员变量映射
+		 * 
+		 * @param field
+		 * @param path
+		 * @param classs
+		 */
+		void addArrayField(String field, String path, Class<?> classs) {
+			mArrayPaths.put(field, path);
+			mArrayClasses.put(field, classs);
+		}
+	}
+}
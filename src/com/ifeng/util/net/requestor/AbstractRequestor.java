@@ -1,5 +1,11 @@
 package com.ifeng.util.net.requestor;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -8,11 +14,22 @@ import java.util.regex.Pattern;
 import org.apache.http.NameValuePair;
 
 import android.content.Context;
+import android.os.Process;
+import android.text.TextUtils;
 
 import com.ifeng.util.logging.Log;
 import com.ifeng.util.model.AbstractModel;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.model.PriorityScheduler.Lane;
+import com.ifeng.util.net.NetworkMonitor;
 import com.ifeng.util.net.parser.AbstractIFItem;
+import com.ifeng.util.net.requestor.RequestDataCache.Validators;
+import com.ifeng.util.net.requestor.RequestMetrics.EndpointMetrics;
+import com.ifeng.util.net.requestor.RequestMetrics.Phase;
 import com.ifeng.util.net.requestor.RequestTask.OnRequestTaskListener;
+import com.ifeng.util.net.requestor.RequestTask.OnRevalidateRequestTaskListener;
+import com.ifeng.util.net.requestor.RequestTask.OnSnapshotRequestTaskListener;
+import com.ifeng.util.net.requestor.RequestTask.OnStreamRequestTaskListener;
 import com.ifeng.util.net.requestor.WebRequestTask.RequestType;
 
 /**
@@ -29,9 +46,11 @@ public abstract class AbstractRequestor extends AbstractModel {
 	private static final String HTTP_URL_PREFIX = "http://";
 	/** Http地址的前缀长度 */
 	private static final int HTTP_URL_PREFIX_LENGTH = HTTP_URL_PREFIX.length();
+	/** 判断数据是否变化所使用的摘要算法 */
+	private static final String DIGEST_ALGORITHM = "MD5";
 
 	/** 数据请求Task */
-	private RequestTask mRequestTask;
+	private volatile RequestTask mRequestTask;
 
 	/** 参数提交试，默认Post提交 */
 	private RequestType mRequestType = RequestType.POST;
@@ -57,9 +76,71 @@ public abstract class AbstractRequestor extends AbstractModel {
 	/** 是否已经从历史缓存中预加载 */
 	private boolean mIsPreloaded;
 
+	/** 从历史缓存中预加载的解析结果，服务器确认数据未变化时可直接使用 */
+	private AbstractIFItem mPreloadItem;
+
+	/** 本次请求是否为预取 */
+	private boolean mIsPrefetch;
+
+	/** 本次请求是否已经以缓存数据完成预加载，之后的网络请求仅用于更新数据 */
+	private boolean mIsPreloadRefresh;
+
 	/** 自动解析的Class类型 */
 	private Class<? extends AbstractIFItem> mAutoParseClass;
 
+	/** 是否允许与相同的进行中请求合并，未设置时仅GET请求合并 */
+	private Boolean mCoalesceEnabled;
+
+	/** 当前参与合并的请求key，未参与合并时为null */
+	private String mFlightKey;
+
+	/** 是否以流的方式解析网络数据 */
+	private boolean mStreamEnabled;
+
+	/** 网络请求的重试策略 */
+	private RetryPolicy mRetryPolicy = new RetryPolicy();
+
+	/** 对冲请求所使用的响应耗时百分位，为0时不发出对冲请求 */
+	private double mHedgePercentile;
+
+	/** 是否压缩POST提交的数据 */
+	private boolean mRequestCompressionEnabled;
+
+	/** 离线队列中的操作标识，为null时不使用离线队列 */
+	private String mOfflineKey;
+
+	/** 缓存策略，默认为优先使用有效缓存 */
+	private CachePolicy mCachePolicy = CachePolicy.CACHE_FIRST;
+
+	/** Stale-while-revalidate策略下，读取缓存的TaskListener */
+	private OnRequestTaskListener mStaleOnRequestTaskListener;
+
+	/** Stale-while-revalidate策略下，本次请求是否已经提供了缓存数据 */
+	private volatile boolean mIsStaleServed;
+
+	/** 已经提供的缓存数据的摘要，用于判断网络数据是否发生变化 */
+	private byte[] mStaleDigest;
+
+	/** 已经提供的缓存数据的解析结果 */
+	private AbstractIFItem mStaleItem;
+
+	/**
+	 * 缓存策略
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public enum CachePolicy {
+		/** 总是访问网络，网络数据仍会写入缓存 */
+		NETWORK_ONLY,
+		/** 存在有效缓存时仅使用缓存，否则访问网络，可配合预加载使用 */
+		CACHE_FIRST,
+		/** 存在缓存(包括已过期的缓存)时立即使用缓存，缓存过期时再在后台访问网络，仅在数据发生变化时再次回调结果 */
+		STALE_WHILE_REVALIDATE,
+		/** 仅使用缓存(包括已过期的缓存)，不访问网络 */
+		CACHE_ONLY;
+	}
+
 	/**
 	 * 构造
 	 * 
@@ -80,34 +161,59 @@ public abstract class AbstractRequestor extends AbstractModel {
 		}
 
 		// 针对于网络请求任务的回调
-		mWebOnRequestTaskListener = new OnRequestTaskListener() {
+		mWebOnRequestTaskListener = new WebRequestTaskListener();
+
+		// 针对于缓存请求任务的回调
+		mCacheOnRequestTaskListener = new OnSnapshotRequestTaskListener() {
 
 			@Override
 			public void onSuccess(String result) {
 				if (DEBUG) {
-					Log.d(TAG, "webtask request successed");
+					Log.d(TAG, "cachetask request successed");
 				}
 
-				// 若网络请求在preload之前，则取消preload
-				if (!isPreloaded()) {
-					turnOffPreloadFromCache();
+				// 请求已经被Cancel，不再解析数据
+				if (isCanceled()) {
+					return;
 				}
 
 				// 解析数据
-				parseResult(result, false);
+				cacheItemIfNeed(parseResult(result, false));
 
-				cacheDataIfNeed(result);
+				// 回调
+				AbstractRequestor.this.onSuccess();
+			}
+
+			@Override
+			public void onSuccess(AbstractIFItem item) {
+				if (DEBUG) {
+					Log.d(TAG, "cachetask snapshot loaded");
+				}
+
+				// 请求已经被Cancel
+				if (isCanceled()) {
+					return;
+				}
+
+				// 快照即为解析结果，无需解析
+				synchronized (AbstractRequestor.this) {
+					handleResult(item);
+				}
+				cacheItemIfNeed(item);
 
+				// 回调
 				AbstractRequestor.this.onSuccess();
 			}
 
 			@Override
-			public void onFailed(final int errorCode) {
+			public void onFailed(int errorCode) {
 				if (DEBUG) {
-					Log.d(TAG, "webtask request failed");
+					Log.d(TAG, "cachetask request failed , retry with webtask");
 				}
 
-				AbstractRequestor.this.onFailed(errorCode);
+				// 若从缓存中读取数据失败，则清除失效缓存，并重新发起网络请求
+				mRequestDataCache.delete();
+				process();
 			}
 
 			@Override
@@ -115,29 +221,37 @@ public abstract class AbstractRequestor extends AbstractModel {
 			}
 		};
 
-		// 针对于缓存请求任务的回调
-		mCacheOnRequestTaskListener = new OnRequestTaskListener() {
+		// Stale-while-revalidate策略下读取缓存任务的回调
+		mStaleOnRequestTaskListener = new OnRequestTaskListener() {
 
 			@Override
 			public void onSuccess(String result) {
 				if (DEBUG) {
-					Log.d(TAG, "cachetask request successed");
+					Log.d(TAG, "stale cache loaded");
 				}
 
-				// 解析数据
-				parseResult(result, false);
-
-				// 回调
+				// 先以缓存数据回调
+				mStaleDigest = digest(result);
+				mStaleItem = parseResult(result, false);
+				cacheItemIfNeed(mStaleItem);
+				mIsStaleServed = true;
 				AbstractRequestor.this.onSuccess();
+
+				// 缓存仍然有效，或请求已经被Cancel，则无需访问网络
+				if (mRequestDataCache.isEffective() || isCanceled()) {
+					return;
+				}
+
+				// 在后台重新验证数据
+				process();
 			}
 
 			@Override
 			public void onFailed(int errorCode) {
 				if (DEBUG) {
-					Log.d(TAG, "cachetask request failed , retry with webtask");
+					Log.d(TAG, "stale cache load failed , retry with webtask");
 				}
 
-				// 若从缓存中读取数据失败，则清除失效缓存，并重新发起网络请求
 				mRequestDataCache.delete();
 				process();
 			}
@@ -148,7 +262,7 @@ public abstract class AbstractRequestor extends AbstractModel {
 		};
 
 		// 预加载数据请求任务的回调
-		mPreloadOnRequestTaskListener = new OnRequestTaskListener() {
+		mPreloadOnRequestTaskListener = new OnSnapshotRequestTaskListener() {
 
 			@Override
 			public void onSuccess(String result) {
@@ -156,14 +270,34 @@ public abstract class AbstractRequestor extends AbstractModel {
 					Log.d(TAG, "preload from exist cache successed");
 				}
 
-				parseResult(result, true);
+				mPreloadItem = parseResult(result, true);
+				onPreloaded();
+			}
+
+			@Override
+			public void onSuccess(AbstractIFItem item) {
+				if (DEBUG) {
+					Log.d(TAG, "preload from exist snapshot successed");
+				}
 
+				synchronized (AbstractRequestor.this) {
+					handlePreloadResult(item);
+				}
+				mPreloadItem = item;
+				onPreloaded();
+			}
+
+			/**
+			 * 预加载完成，回调并继续发起网络请求
+			 */
+			private void onPreloaded() {
 				// 此请求已经被Cancel
 				if (!processCanMoveOn()) {
 					return;
 				}
 
 				mIsPreloaded = true;
+				mIsPreloadRefresh = true;
 
 				// 回调
 				mHandler.post(new Runnable() {
@@ -200,26 +334,140 @@ public abstract class AbstractRequestor extends AbstractModel {
 	@Override
 	protected void process() {
 		mRequestTask = null;
+		mFlightKey = null;
 
+		String metricsEndpoint = getMetricsEndpoint();
+		EndpointMetrics metrics = RequestMetrics.getEndpoint(metricsEndpoint);
+		long queueWaitTime = takeQueueWaitTime();
+		if (metrics != null && queueWaitTime >= 0) {
+			metrics.getHistogram(Phase.QUEUE_WAIT).record(queueWaitTime);
+		}
+
+		CachePolicy cachePolicy = getCachePolicy();
 		if (canUseCache()) {
 			fillCacheFileTag();
 
-			// 若缓存可用且存在有效缓存，则创建缓存请求任务，加载缓存中的数据
-			if (mRequestDataCache.isEffective()) {
-				mRequestTask = new CacheRequestTask(mRequestDataCache,
-						mCacheOnRequestTaskListener);
-				// 若缓存可提供预加载，则创建预加载请求任务，加载缓存中的数据
-			} else if (mNeedPreload && mRequestDataCache.isExist()) {
-				mRequestTask = new CacheRequestTask(mRequestDataCache,
-						mPreloadOnRequestTaskListener);
+			switch (cachePolicy) {
+			case CACHE_FIRST:
+				// 若内存缓存中存在有效缓存的解析结果，则直接使用
+				if (mRequestDataCache.isEffective() && serveMemoryItem()) {
+					if (metrics != null) {
+						metrics.onCacheHit();
+					}
+					return;
+				}
+				// 若缓存可用且存在有效缓存，则创建缓存请求任务，加载缓存中的数据
+				if (mRequestDataCache.isEffective()) {
+					mRequestTask = new CacheRequestTask(mRequestDataCache,
+							mCacheOnRequestTaskListener);
+					if (metrics != null) {
+						metrics.onCacheHit();
+					}
+					// 若缓存可提供预加载，则创建预加载请求任务，加载缓存中的数据
+				} else if (mNeedPreload && !mIsPreloaded
+						&& mRequestDataCache.isExist()) {
+					mRequestTask = new CacheRequestTask(mRequestDataCache,
+							mPreloadOnRequestTaskListener);
+					if (metrics != null) {
+						metrics.onCacheStaleHit();
+					}
+				} else if (metrics != null && !mIsPreloaded) {
+					metrics.onCacheMiss();
+				}
+				break;
+			case STALE_WHILE_REVALIDATE:
+				// 尚未提供缓存数据时，加载缓存中的数据(包括已过期的缓存)
+				if (!mIsStaleServed) {
+					if (mRequestDataCache.isExist()) {
+						mRequestTask = new CacheRequestTask(mRequestDataCache,
+								mStaleOnRequestTaskListener);
+						if (metrics != null) {
+							if (mRequestDataCache.isEffective()) {
+								metrics.onCacheHit();
+							} else {
+								metrics.onCacheStaleHit();
+							}
+						}
+					} else if (metrics != null) {
+						metrics.onCacheMiss();
+					}
+				}
+				break;
+			case CACHE_ONLY:
+				if (mRequestDataCache.isExist()) {
+					mRequestTask = new CacheRequestTask(mRequestDataCache,
+							mCacheOnRequestTaskListener);
+					if (metrics != null) {
+						if (mRequestDataCache.isEffective()) {
+							metrics.onCacheHit();
+						} else {
+							metrics.onCacheStaleHit();
+						}
+					}
+				} else if (metrics != null) {
+					metrics.onCacheMiss();
+				}
+				break;
+			default:
+				break;
 			}
+			if (mRequestTask != null) {
+				((CacheRequestTask) mRequestTask)
+						.setMetricsEndpoint(metricsEndpoint);
+				((CacheRequestTask) mRequestTask)
+						.setSnapshotClass(mAutoParseClass);
+			}
+		}
+
+		// 仅使用缓存且缓存不存在
+		if (mRequestTask == null && cachePolicy == CachePolicy.CACHE_ONLY) {
+			onFailed(IRequestModelErrorCode.ERROR_CODE_NO_CACHE);
+			return;
+		}
+
+		// 无网络时存入离线队列，网络恢复后重新提交
+		if (mRequestTask == null && getOfflineKey() != null
+				&& !NetworkMonitor.getInstance(mContext).isConnected()) {
+			enqueueOffline();
+			onFailed(IRequestModelErrorCode.ERROR_CODE_QUEUED_OFFLINE);
+			return;
+		}
+
+		// 当前网络较差时不进行预取，避免占用用户操作所需的带宽；预加载缓存后的更新请求仍需进行
+		if (mRequestTask == null && getLane() == Lane.PREFETCH
+				&& !mIsPreloadRefresh
+				&& !NetworkMonitor.getInstance(mContext).getProfile()
+						.isPrefetchEnabled()) {
+			onFailed(IRequestModelErrorCode.ERROR_CODE_PREFETCH_DISABLED);
+			return;
 		}
 
 		if (mRequestTask == null) {
+			// 若已有相同的请求在进行中，则挂起等待其结果，不再重复访问网络
+			if (isCoalesceEnabled()) {
+				String flightKey = RequestFlightRegistry.buildKey(
+						getAdjustRequestUrl(), getCombineParams(),
+						getRequestHeaders(), getRequestType(), getParseTag());
+				mFlightKey = flightKey;
+				if (!RequestFlightRegistry.join(flightKey, this)) {
+					return;
+				}
+			}
 			mRequestTask = getWebRequestTask(mWebOnRequestTaskListener);
 		}
 
+		// 创建任务期间请求已经被Cancel
+		if (isCanceled()) {
+			mRequestTask.cancel();
+		}
+
 		mRequestTask.run();
+
+		// 若请求未能给出任何结果(例如已被取消)，则交由挂起的requestor各自重新发起请求；
+		// 已安排延时重试的请求稍后才会给出结果
+		if (mFlightKey != null && !mRequestTask.isPending()) {
+			RequestFlightRegistry.abandon(mFlightKey, this);
+		}
 	}
 
 	/**
@@ -233,6 +481,23 @@ public abstract class AbstractRequestor extends AbstractModel {
 				getAdjustRequestUrl(), getRequestHeaders(), getCombineParams(),
 				getPriority(), webRequestTaskListener);
 		webRequestTask.setRequestType(getRequestType());
+		webRequestTask.setStreamEnabled(isStreamEnabled());
+		webRequestTask.setRetryPolicy(getRetryPolicy());
+		webRequestTask.setLane(getLane());
+		webRequestTask.setMetricsEndpoint(getMetricsEndpoint());
+		webRequestTask.setHedgePercentile(getHedgePercentile());
+		webRequestTask
+				.setRequestCompressionEnabled(isRequestCompressionEnabled());
+		// 存在历史缓存时，携带其校验信息发起条件请求
+		if (canUseCache()
+				&& mRequestDataCache.getDataCacheParams().cacheEnabled
+				&& mRequestDataCache.isExist()) {
+			Validators validators = mRequestDataCache.loadValidators();
+			if (validators != null) {
+				webRequestTask.setCacheValidators(validators.eTag,
+						validators.lastModified);
+			}
+		}
 		return webRequestTask;
 	}
 
@@ -241,8 +506,16 @@ public abstract class AbstractRequestor extends AbstractModel {
 	 */
 	public void cancel() {
 		super.cancel();
-		if (mRequestTask != null) {
-			mRequestTask.cancel();
+		// 中断正在执行的请求，释放连接及线程
+		RequestTask requestTask = mRequestTask;
+		if (requestTask != null) {
+			requestTask.cancel();
+		}
+		String flightKey = mFlightKey;
+		if (flightKey != null) {
+			RequestFlightRegistry.leave(flightKey, this);
+			// 若自身为发起者，则交由挂起的requestor各自重新发起请求
+			RequestFlightRegistry.abandon(flightKey, this);
 		}
 	}
 
@@ -254,6 +527,31 @@ public abstract class AbstractRequestor extends AbstractModel {
 		if (DEBUG) {
 			Log.d(TAG, "make a request");
 		}
+		mIsPrefetch = false;
+		startRequest();
+	}
+
+	/**
+	 * 预取数据，提前发起请求将数据存入缓存，页面稍后请求时可直接命中缓存。预取请求以{@link Lane#PREFETCH}
+	 * 通道调度，不阻塞用户操作触发的请求；当前网络较差时不发起网络请求，以
+	 * {@link IRequestModelErrorCode#ERROR_CODE_PREFETCH_DISABLED}回调失败。需要设置缓存模块才有意义
+	 */
+	public void prefetch() {
+		if (DEBUG) {
+			Log.d(TAG, "make a prefetch request");
+		}
+		mIsPrefetch = true;
+		startRequest();
+	}
+
+	/**
+	 * 发起本次请求
+	 */
+	private void startRequest() {
+		mIsPreloadRefresh = false;
+		mIsStaleServed = false;
+		mStaleDigest = null;
+		mStaleItem = null;
 		executeAsyncTask();
 	}
 
@@ -275,9 +573,28 @@ public abstract class AbstractRequestor extends AbstractModel {
 	 * 
 	 * @param data
 	 * @param isFromPreload
+	 * @return 解析结果
+	 */
+	private synchronized AbstractIFItem parseResult(String data,
+			boolean isFromPreload) {
+		AbstractIFItem item = parseResult(data);
+		if (isFromPreload) {
+			handlePreloadResult(item);
+		} else {
+			handleResult(item);
+		}
+		return item;
+	}
+
+	/**
+	 * 解析返回的json/xml数据，不进行回调
+	 * 
+	 * @param data
+	 * @return 解析结果
 	 */
-	private synchronized void parseResult(String data, boolean isFromPreload) {
+	private synchronized AbstractIFItem parseResult(String data) {
 		AbstractIFItem item = null;
+		long startTime = System.currentTimeMillis();
 		/*
 		 * 如果可以进行自动解析
 		 */
@@ -287,12 +604,8 @@ public abstract class AbstractRequestor extends AbstractModel {
 			 * 如果成功自动解析
 			 */
 			if (item != null && item.parseData(data)) {
-				if (isFromPreload) {
-					handlePreloadResult(item);
-				} else {
-					handleResult(item);
-				}
-				return;
+				recordParseTime(startTime);
+				return item;
 			}
 		}
 
@@ -300,11 +613,166 @@ public abstract class AbstractRequestor extends AbstractModel {
 		 * 需要子类手动解析
 		 */
 		item = handleUnparseResult(data);
-		if (isFromPreload) {
-			handlePreloadResult(item);
-		} else {
-			handleResult(item);
+		recordParseTime(startTime);
+		return item;
+	}
+
+	/**
+	 * 以流的方式自动解析数据
+	 * 
+	 * @param in
+	 * @param charset
+	 * @return 解析结果，解析失败时返回null
+	 */
+	private AbstractIFItem parseStream(InputStream in, String charset) {
+		long startTime = System.currentTimeMillis();
+		AbstractIFItem item = AbstractIFItem.getInstance(mAutoParseClass);
+		if (item != null && item.parseData(in, charset)) {
+			recordParseTime(startTime);
+			return item;
+		}
+		return null;
+	}
+
+	/**
+	 * 记录解析耗时
+	 * 
+	 * @param startTime
+	 *            开始解析的时间
+	 */
+	private void recordParseTime(long startTime) {
+		RequestMetrics.recordPhase(getMetricsEndpoint(), Phase.PARSE,
+				System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * 统计所使用的接口标识，默认为去除参数的请求地址，可由子类进行重写
+	 * 
+	 * @return 返回null时不进行统计
+	 */
+	protected String getMetricsEndpoint() {
+		if (!RequestMetrics.isEnabled()) {
+			return null;
+		}
+		String url = getRequestUrl();
+		if (url == null) {
+			return null;
+		}
+		int index = url.indexOf('?');
+		return index < 0 ? url : url.substring(0, index);
+	}
+
+	/**
+	 * 合并的请求成功，在本requestor的任务通道中解析发起网络请求的requestor取得的原始数据，
+	 * 解析结果由本requestor独有
+	 * 
+	 * @param result
+	 *            原始数据
+	 */
+	void onFlightSuccess(final String result) {
+		if (DEBUG) {
+			Log.d(TAG, "coalesced request successed");
+		}
+
+		PriorityScheduler.getInstance().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				if (isCanceled()) {
+					return;
+				}
+				Process.setThreadPriority(getPriority());
+
+				if (!isPreloaded()) {
+					turnOffPreloadFromCache();
+				}
+
+				// 解析数据，在交给使用方之前保存缓存及快照
+				AbstractIFItem item = parseResult(result);
+				cacheDataIfNeed(result, item, null, null);
+				synchronized (AbstractRequestor.this) {
+					handleResult(item);
+				}
+				cacheItemIfNeed(item);
+
+				onSuccess();
+			}
+		}, getLane());
+	}
+
+	/**
+	 * 是否可以合并到批量请求中，可直接使用缓存或需要预加载的请求仍单独请求
+	 * 
+	 * @return
+	 */
+	boolean canJoinBatch() {
+		if (!canUseCache()) {
+			return true;
+		}
+		CachePolicy cachePolicy = getCachePolicy();
+		if (cachePolicy == CachePolicy.NETWORK_ONLY) {
+			return true;
+		}
+		if (cachePolicy == CachePolicy.CACHE_ONLY) {
+			return false;
 		}
+		fillCacheFileTag();
+		if (mRequestDataCache.isEffective()) {
+			return false;
+		}
+		return !(mNeedPreload && !mIsPreloaded && mRequestDataCache.isExist());
+	}
+
+	/**
+	 * 批量请求中本请求的数据已经返回，与网络请求成功相同进行解析、缓存及回调
+	 * 
+	 * @param result
+	 *            本请求的数据
+	 */
+	void onBatchSuccess(String result) {
+		if (DEBUG) {
+			Log.d(TAG, "batch request successed");
+		}
+		if (mWebOnRequestTaskListener == null) {
+			return;
+		}
+		mIsStaleServed = false;
+		mStaleDigest = null;
+		mStaleItem = null;
+		mFlightKey = null;
+		if (canUseCache()) {
+			fillCacheFileTag();
+		}
+		WebRequestTaskListener listener = (WebRequestTaskListener) mWebOnRequestTaskListener;
+		// 批量接口不返回各请求的校验信息
+		listener.onValidatorsReceived(null, null);
+		listener.onSuccess(result);
+	}
+
+	/**
+	 * 合并的请求失败
+	 * 
+	 * @param errorCode
+	 *            错误码
+	 */
+	void onFlightFailed(int errorCode) {
+		if (DEBUG) {
+			Log.d(TAG, "coalesced request failed");
+		}
+
+		onFailed(errorCode);
+	}
+
+	/**
+	 * 解析类型标识，用于区分请求合并时解析方式是否相同
+	 * 
+	 * @return
+	 */
+	private String getParseTag() {
+		if (canUseAutoParse()) {
+			return mAutoParseClass.getName();
+		}
+		return getClass().getName();
 	}
 
 	/**
@@ -486,18 +954,143 @@ public abstract class AbstractRequestor extends AbstractModel {
 	 * 
 	 * @param data
 	 *            数据
+	 * @param item
+	 *            数据的解析结果，可为null，需尚未交给使用方
+	 * @param eTag
+	 *            数据对应的ETag，可为null
+	 * @param lastModified
+	 *            数据对应的Last-Modified，可为null
 	 */
-	private void cacheDataIfNeed(String data) {
-		if (canUseCache()
+	private void cacheDataIfNeed(String data, AbstractIFItem item,
+			String eTag, String lastModified) {
+		if (data != null && canUseCache()
 				&& mRequestDataCache.getDataCacheParams().cacheEnabled) {
 			if (DEBUG) {
 				Log.d(TAG, "request cache has saved");
 			}
 
-			mRequestDataCache.save(data);
+			// 由后台线程写入文件，不再阻塞结果的回调
+			mRequestDataCache.saveAsync(data, eTag, lastModified,
+					getSnapshotItem(item));
+		}
+	}
+
+	/**
+	 * 如果需要，刷新缓存的有效期并更新校验信息，用于数据未发生变化时，无需重写数据及快照
+	 * 
+	 * @param eTag
+	 * @param lastModified
+	 * @return 不存在缓存或刷新失败时返回false
+	 */
+	private boolean refreshCacheIfNeed(String eTag, String lastModified) {
+		return canUseCache()
+				&& mRequestDataCache.getDataCacheParams().cacheEnabled
+				&& mRequestDataCache.refresh(eTag, lastModified);
+	}
+
+	/**
+	 * 可保存快照的解析结果，仅保存自动解析的结果，以便从缓存加载时按解析类校验快照
+	 * 
+	 * @param item
+	 * @return 不可保存时返回null
+	 */
+	private AbstractIFItem getSnapshotItem(AbstractIFItem item) {
+		if (item == null || !canUseAutoParse()
+				|| item.getClass() != mAutoParseClass) {
+			return null;
+		}
+		return item;
+	}
+
+	/**
+	 * 如果需要，在内存缓存中保存与缓存数据对应的解析结果
+	 * 
+	 * @param item
+	 *            解析结果
+	 */
+	private void cacheItemIfNeed(AbstractIFItem item) {
+		if (item != null && canUseCache()
+				&& mRequestDataCache.getDataCacheParams().cacheEnabled) {
+			mRequestDataCache.saveItem(item);
 		}
 	}
 
+	/**
+	 * 使用内存缓存中的解析结果完成请求
+	 * 
+	 * @return 内存缓存中不存在解析结果时返回false
+	 */
+	private boolean serveMemoryItem() {
+		AbstractIFItem item = mRequestDataCache.loadItem();
+		if (item == null) {
+			return false;
+		}
+		if (DEBUG) {
+			Log.d(TAG, "memory cache hit");
+		}
+		synchronized (this) {
+			handleResult(item);
+		}
+		onSuccess();
+		return true;
+	}
+
+	/**
+	 * 如果需要缓存，则打开当前请求的缓存写入工具
+	 * 
+	 * @return 不需要缓存时返回null
+	 */
+	private RequestDataCache.Editor openCacheEditorIfNeed() {
+		if (canUseCache()
+				&& mRequestDataCache.getDataCacheParams().cacheEnabled) {
+			return mRequestDataCache.edit();
+		}
+		return null;
+	}
+
+	/**
+	 * 将当前请求的缓存读入内存缓存，开启{@link RequestDataCache.DataCacheParams#memoryCacheItem}时同时完成解析(优先使用快照)，
+	 * 之后请求时可直接命中内存缓存。由{@link CacheWarmUp}在工作线程中调用，不进行任何回调
+	 * 
+	 * @return 是否存在缓存
+	 */
+	boolean warmUpCache() {
+		if (!canUseCache()
+				|| !mRequestDataCache.getDataCacheParams().cacheEnabled) {
+			return false;
+		}
+		fillCacheFileTag();
+		if (!mRequestDataCache.isExist()) {
+			return false;
+		}
+
+		// 不保存解析结果时仅读入原始数据
+		if (!mRequestDataCache.getDataCacheParams().memoryCacheItem
+				|| !canUseAutoParse()) {
+			return mRequestDataCache.load() != null;
+		}
+		if (mRequestDataCache.loadItem() != null) {
+			return true;
+		}
+		// 解析期间网络数据写入时不再保存旧数据的解析结果
+		long cacheTime = mRequestDataCache.getCacheTime();
+		AbstractIFItem item = mRequestDataCache.loadSnapshot(mAutoParseClass);
+		if (item == null) {
+			String data = mRequestDataCache.load();
+			if (data == null) {
+				return false;
+			}
+			long startTime = System.currentTimeMillis();
+			item = AbstractIFItem.getInstance(mAutoParseClass);
+			if (item == null || !item.parseData(data)) {
+				return false;
+			}
+			recordParseTime(startTime);
+		}
+		mRequestDataCache.saveItem(item, cacheTime);
+		return true;
+	}
+
 	/**
 	 * 是否存在可提供预加载的缓存，方便页面进行显示控制，以适配不同的策略
 	 * 
@@ -522,6 +1115,7 @@ public abstract class AbstractRequestor extends AbstractModel {
 			OnPreloadFromCacheListener cacheLoadListener) {
 		mNeedPreload = true;
 		mIsPreloaded = false;
+		mPreloadItem = null;
 		mOnPreloadFromCacheListener = cacheLoadListener;
 	}
 
@@ -560,6 +1154,416 @@ public abstract class AbstractRequestor extends AbstractModel {
 		return mAutoParseClass != null;
 	}
 
+	/**
+	 * 设置是否允许与相同的进行中请求合并。默认仅合并GET请求；以POST方式获取数据的幂等请求可开启此项，
+	 * 非幂等的请求(如提交评论等)不应开启，以保证每次调用均访问网络。
+	 * <p>
+	 * 合并的requestor仅共享原始数据，各自解析并独有其解析结果，使用方可以修改收到的解析结果；
+	 * 首个发起者未取得原始数据时(以流的方式解析、服务器返回304或数据与已提供的缓存相同)，其余requestor各自重新发起请求
+	 * 
+	 * @param coalesceEnabled
+	 */
+	public void setCoalesceEnabled(boolean coalesceEnabled) {
+		this.mCoalesceEnabled = coalesceEnabled;
+	}
+
+	/**
+	 * 是否允许与相同的进行中请求合并，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected boolean isCoalesceEnabled() {
+		if (mCoalesceEnabled != null) {
+			return mCoalesceEnabled;
+		}
+		return getRequestType() == RequestType.GET;
+	}
+
+	/**
+	 * 设置是否以流的方式解析网络数据。开启后，网络数据流直接交由自动解析类型进行解析，并在同一次读取中写入缓存，
+	 * 不再生成完整的数据字符串，以降低大数据量请求的内存占用。仅在设置了{@link #setAutoParseClass(Class)}时生效，
+	 * 且不会回调{@link #handleUnparseResult(String)}，解析失败时{@link #handleResult(AbstractIFItem)}将收到null。
+	 * 注意：json数据在api level 11及以上逐个节点读取，xml数据仍由DOM解析器构造完整的文档树后再解析，仅省去数据字符串。
+	 * 
+	 * @param streamEnabled
+	 */
+	public void setStreamEnabled(boolean streamEnabled) {
+		this.mStreamEnabled = streamEnabled;
+	}
+
+	/**
+	 * 是否以流的方式解析网络数据
+	 * 
+	 * @return
+	 */
+	protected boolean isStreamEnabled() {
+		return mStreamEnabled && canUseAutoParse();
+	}
+
+	/**
+	 * 设置网络请求的重试策略，为null时不进行重试
+	 * 
+	 * @param retryPolicy
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.mRetryPolicy = retryPolicy;
+	}
+
+	/**
+	 * 获取网络请求的重试策略，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected RetryPolicy getRetryPolicy() {
+		return mRetryPolicy;
+	}
+
+	/**
+	 * 开启对冲请求：超过该接口响应耗时的指定百分位仍未收到响应时，发出相同的请求，先收到的响应胜出。仅对
+	 * {@link RequestType#GET}方式的请求有效，对冲请求的总量受{@link HedgeBudget}限制
+	 * 
+	 * @param hedgePercentile
+	 *            0 - 100，例如95，为0时关闭
+	 */
+	public void setHedgePercentile(double hedgePercentile) {
+		this.mHedgePercentile = hedgePercentile;
+	}
+
+	/**
+	 * 获取对冲请求所使用的响应耗时百分位，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected double getHedgePercentile() {
+		return mHedgePercentile;
+	}
+
+	/**
+	 * 设置是否以gzip压缩POST提交的数据，适用于提交数据较大的请求，服务器不支持时自动改为提交未压缩的数据
+	 * 
+	 * @param requestCompressionEnabled
+	 */
+	public void setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+		this.mRequestCompressionEnabled = requestCompressionEnabled;
+	}
+
+	/**
+	 * 是否压缩POST提交的数据，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected boolean isRequestCompressionEnabled() {
+		return mRequestCompressionEnabled;
+	}
+
+	/**
+	 * 预取请求及预加载缓存后的更新请求使用{@link Lane#PREFETCH}通道，已设置为更低优先的通道时不变
+	 */
+	@Override
+	public Lane getLane() {
+		Lane lane = super.getLane();
+		if ((mIsPrefetch || mIsPreloadRefresh) && lane == Lane.INTERACTIVE) {
+			return Lane.PREFETCH;
+		}
+		return lane;
+	}
+
+	/**
+	 * 设置离线队列中的操作标识。设置后，无网络或网络请求失败时请求将存入{@link OfflineRequestQueue}并以
+	 * {@link IRequestModelErrorCode#ERROR_CODE_QUEUED_OFFLINE}回调失败，网络恢复后自动重新提交，提交结果通过
+	 * {@link OfflineRequestQueue#addListener(String, OfflineRequestQueue.OnOfflineRequestListener)}
+	 * 按操作标识获取。适用于评论、收藏等写操作，相同标识的操作在队列中仅保留最新的一次；文件上传请求不使用离线队列
+	 * 
+	 * @param offlineKey
+	 *            操作标识，为null时不使用离线队列
+	 */
+	public void setOfflineKey(String offlineKey) {
+		this.mOfflineKey = offlineKey;
+	}
+
+	/**
+	 * 获取离线队列中的操作标识，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected String getOfflineKey() {
+		return mOfflineKey;
+	}
+
+	/**
+	 * 将当前请求存入离线队列
+	 */
+	private void enqueueOffline() {
+		if (DEBUG) {
+			Log.d(TAG, "request queued offline");
+		}
+		OfflineRequestQueue.getInstance(mContext).enqueue(getOfflineKey(),
+				getAdjustRequestUrl(), getRequestType(), getRequestHeaders(),
+				getCombineParams());
+	}
+
+	/**
+	 * 设置缓存策略，需要同时设置缓存({@link #mRequestDataCache})才能生效
+	 * 
+	 * @param cachePolicy
+	 */
+	public void setCachePolicy(CachePolicy cachePolicy) {
+		this.mCachePolicy = cachePolicy == null ? CachePolicy.CACHE_FIRST
+				: cachePolicy;
+	}
+
+	/**
+	 * 获取缓存策略，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected CachePolicy getCachePolicy() {
+		return mCachePolicy;
+	}
+
+	/**
+	 * 计算数据摘要
+	 * 
+	 * @param data
+	 * @return 失败时返回null
+	 */
+	private static byte[] digest(String data) {
+		if (data == null) {
+			return null;
+		}
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM).digest(
+					data.getBytes("UTF-8"));
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * 网络请求任务的回调
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private class WebRequestTaskListener implements
+			OnStreamRequestTaskListener, OnRevalidateRequestTaskListener {
+
+		/** 本次响应的ETag */
+		private String mETag;
+		/** 本次响应的Last-Modified */
+		private String mLastModified;
+
+		@Override
+		public void onValidatorsReceived(String eTag, String lastModified) {
+			mETag = eTag;
+			mLastModified = lastModified;
+		}
+
+		@Override
+		public void onNotModified() {
+			if (DEBUG) {
+				Log.d(TAG, "webtask not modified , use exist cache");
+			}
+
+			mRequestDataCache.refresh();
+
+			// 已经提供的缓存数据即为最新数据，无需再次回调
+			if (mIsStaleServed) {
+				completeFlight(null);
+				return;
+			}
+
+			// 若网络请求在preload之前，则取消preload
+			if (!isPreloaded()) {
+				turnOffPreloadFromCache();
+			}
+
+			String result = null;
+			AbstractIFItem item = null;
+			if (isPreloaded() && mPreloadItem != null) {
+				// 已经预加载的数据即为最新数据，无需重新解析
+				item = mPreloadItem;
+				synchronized (AbstractRequestor.this) {
+					handleResult(item);
+				}
+			} else {
+				result = mRequestDataCache.load();
+				if (TextUtils.isEmpty(result)) {
+					// 缓存已经失效，清除后重新发起完整请求
+					mRequestDataCache.delete();
+					process();
+					return;
+				}
+				item = parseResult(result, false);
+				cacheItemIfNeed(item);
+			}
+
+			AbstractRequestor.this.onSuccess();
+
+			completeFlight(result);
+		}
+
+		@Override
+		public void onSuccess(String result) {
+			if (DEBUG) {
+				Log.d(TAG, "webtask request successed");
+			}
+
+			// 请求已经被Cancel，不再解析数据
+			if (isCanceled()) {
+				return;
+			}
+
+			// 数据与已经提供的缓存数据相同，仅刷新缓存，无需重新解析及回调；
+			// 已经提供的解析结果可能已被使用方修改，保留原有快照
+			if (mIsStaleServed && mStaleDigest != null
+					&& Arrays.equals(mStaleDigest, digest(result))) {
+				if (DEBUG) {
+					Log.d(TAG, "webtask data unchanged");
+				}
+				if (!refreshCacheIfNeed(mETag, mLastModified)) {
+					cacheDataIfNeed(result, null, mETag, mLastModified);
+				}
+				completeFlight(result);
+				return;
+			}
+
+			// 若网络请求在preload之前，则取消preload
+			if (!isPreloaded()) {
+				turnOffPreloadFromCache();
+			}
+
+			// 解析数据，在交给使用方之前保存缓存及快照
+			AbstractIFItem item = parseResult(result);
+			cacheDataIfNeed(result, item, mETag, mLastModified);
+			synchronized (AbstractRequestor.this) {
+				handleResult(item);
+			}
+			cacheItemIfNeed(item);
+
+			AbstractRequestor.this.onSuccess();
+
+			// 将原始数据分发给合并到本次请求的其它requestor
+			completeFlight(result);
+		}
+
+		@Override
+		public void onSuccess(InputStream in, String charset)
+				throws IOException {
+			if (DEBUG) {
+				Log.d(TAG, "webtask stream request successed");
+			}
+
+			// 请求已经被Cancel，不再解析数据
+			if (isCanceled()) {
+				return;
+			}
+
+			// 解析数据的同时写入缓存，数据读取完整且解析成功后才替换原有缓存
+			RequestDataCache.Editor editor = openCacheEditorIfNeed();
+			// 已经提供了缓存数据时，计算网络数据的摘要以判断数据是否发生变化
+			DigestInputStream digestIn = null;
+			if (mIsStaleServed && mStaleDigest != null) {
+				try {
+					digestIn = new DigestInputStream(in,
+							MessageDigest.getInstance(DIGEST_ALGORITHM));
+					in = digestIn;
+				} catch (NoSuchAlgorithmException e) {
+					e.printStackTrace();
+				}
+			}
+			TeeInputStream source = new TeeInputStream(in,
+					editor == null ? null : editor.getOutputStream());
+			AbstractIFItem item = null;
+			boolean isCached = false;
+			try {
+				item = parseStream(source, charset);
+				source.drain();
+				if (editor != null && item != null
+						&& !source.isBranchFailed()) {
+					editor.setSnapshot(getSnapshotItem(item));
+					isCached = editor.commit();
+					if (isCached) {
+						mRequestDataCache.saveValidators(mETag, mLastModified);
+						cacheItemIfNeed(item);
+					}
+				}
+			} finally {
+				if (editor != null && !isCached) {
+					editor.abort();
+				}
+			}
+
+			// 数据与已经提供的缓存数据相同，无需再次回调
+			if (digestIn != null
+					&& Arrays.equals(mStaleDigest, digestIn.getMessageDigest()
+							.digest())) {
+				if (DEBUG) {
+					Log.d(TAG, "webtask data unchanged");
+				}
+				completeFlight(null);
+				return;
+			}
+
+			// 若网络请求在preload之前，则取消preload
+			if (!isPreloaded()) {
+				turnOffPreloadFromCache();
+			}
+
+			synchronized (AbstractRequestor.this) {
+				handleResult(item);
+			}
+
+			AbstractRequestor.this.onSuccess();
+
+			completeFlight(null);
+		}
+
+		@Override
+		public void onFailed(int errorCode) {
+			if (DEBUG) {
+				Log.d(TAG, "webtask request failed");
+			}
+
+			// 网络异常时存入离线队列，网络恢复后重新提交
+			if (errorCode == IRequestModelErrorCode.ERROR_CODE_NET_FAILED
+					&& getOfflineKey() != null && !isCanceled()) {
+				enqueueOffline();
+				errorCode = IRequestModelErrorCode.ERROR_CODE_QUEUED_OFFLINE;
+			}
+
+			// 已经提供了缓存数据，后台验证失败时不再回调
+			if (!mIsStaleServed) {
+				AbstractRequestor.this.onFailed(errorCode);
+			}
+
+			String flightKey = mFlightKey;
+			if (flightKey != null) {
+				RequestFlightRegistry.fail(flightKey,
+						AbstractRequestor.this, errorCode);
+			}
+		}
+
+		@Override
+		public void onProgress() {
+		}
+
+		/**
+		 * 将原始数据分发给合并到本次请求的其它requestor，由其各自解析
+		 * 
+		 * @param result
+		 *            原始数据，为null时其它requestor各自重新发起请求
+		 */
+		private void completeFlight(String result) {
+			String flightKey = mFlightKey;
+			if (flightKey != null) {
+				RequestFlightRegistry.complete(flightKey,
+						AbstractRequestor.this, result);
+			}
+		}
+	}
+
 	/**
 	 * 获取cache回调
 	 * 
@@ -9,6 +9,7 @@ import android.content.Context;
 
 import com.ifeng.util.net.requestor.RequestTask.OnRequestTaskListener;
 import com.ifeng.util.net.requestor.UploadRequestTask.FileValuePair;
+import com.ifeng.util.net.requestor.UploadRequestTask.OnUploadProgressListener;
 
 /**
  * 文件上传基类
@@ -18,6 +19,13 @@ import com.ifeng.util.net.requestor.UploadRequestTask.FileValuePair;
  */
 public abstract class BaseUploadFileRequestor extends AbstractRequestor {
 
+	/** 是否分片上传 */
+	private boolean mChunkedUploadEnabled;
+	/** 分片大小 */
+	private int mChunkSize = UploadRequestTask.DEFAULT_CHUNK_SIZE;
+	/** 同时上传的分片数量 */
+	private int mMaxParallelChunks = UploadRequestTask.DEFAULT_MAX_PARALLEL_CHUNKS;
+
 	/**
 	 * 构造
 	 * 
@@ -36,15 +44,72 @@ public abstract class BaseUploadFileRequestor extends AbstractRequestor {
 		super.process();
 	}
 
+	/**
+	 * 文件上传为非幂等请求，不与其它请求合并
+	 */
+	@Override
+	protected boolean isCoalesceEnabled() {
+		return false;
+	}
+
+	/**
+	 * 离线队列仅保存字符串参数，无法保存上传的文件，文件上传不存入离线队列
+	 */
+	@Override
+	protected String getOfflineKey() {
+		return null;
+	}
+
 	@Override
 	protected WebRequestTask getWebRequestTask(
 			OnRequestTaskListener webRequestTaskListener) {
 		UploadRequestTask uploadRequestTask = new UploadRequestTask(mContext,
 				getAdjustRequestUrl(), getRequestHeaders(), getCombineParams(),
 				webRequestTaskListener);
+		uploadRequestTask.setRetryPolicy(getRetryPolicy());
+		uploadRequestTask.setLane(getLane());
+		uploadRequestTask.setMetricsEndpoint(getMetricsEndpoint());
+		uploadRequestTask.setChunkedUploadEnabled(mChunkedUploadEnabled);
+		uploadRequestTask.setChunkSize(mChunkSize);
+		uploadRequestTask.setMaxParallelChunks(mMaxParallelChunks);
+		uploadRequestTask
+				.setOnUploadProgressListener(new OnUploadProgressListener() {
+
+					@Override
+					public void onUploadProgress(long uploadedBytes,
+							long totalBytes) {
+						if (totalBytes > 0) {
+							postProgress((int) (uploadedBytes * 100 / totalBytes));
+						}
+					}
+				});
 		return uploadRequestTask;
 	}
 
+	/**
+	 * 开启分片上传，上传失败或进程重启后可从已完成的分片继续上传，需要服务器支持分片上传协议，
+	 * 参见{@link UploadRequestTask}。进度通过{@link OnModelProcessListener#onProgress(com.ifeng.util.model.AbstractModel, int)}回调
+	 * 
+	 * @param chunkSize
+	 *            分片大小，小于等于0时使用默认值
+	 * @param maxParallelChunks
+	 *            同时上传的分片数量
+	 */
+	public void setChunkedUpload(int chunkSize, int maxParallelChunks) {
+		mChunkedUploadEnabled = true;
+		mChunkSize = chunkSize;
+		mMaxParallelChunks = maxParallelChunks;
+	}
+
+	/**
+	 * 设置是否分片上传
+	 * 
+	 * @param chunkedUploadEnabled
+	 */
+	public void setChunkedUploadEnabled(boolean chunkedUploadEnabled) {
+		mChunkedUploadEnabled = chunkedUploadEnabled;
+	}
+
 	@Override
 	protected final List<NameValuePair> getRequestParams() {
 		List<NameValuePair> strings = getRequestStringParams();
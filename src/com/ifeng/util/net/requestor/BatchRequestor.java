@@ -0,0 +1,431 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.AbstractModel;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.requestor.RequestTask.OnRequestTaskListener;
+
+/**
+ * 批量请求，将多个{@link AbstractRequestor}的请求合并为一次对批量接口的请求，减少连接及请求头、公共参数的重复开销。
+ * 批量接口返回后按请求拆分数据，交由各requestor自身进行解析、缓存及回调，效果与各自单独请求相同。
+ * <p>
+ * 批量接口协议：以POST方式提交，公共参数(各requestor相同的{@link AbstractRequestor#getExtraParams()})
+ * 作为批量请求的参数提交，参数{@link #PARAM_REQUESTS}为各请求的JSON数组：
+ * 
+ * <pre>
+ * [{"id":0, "url":"http://...", "method":"GET", "params":[["name","value"], ...], "headers":[...]}, ...]
+ * </pre>
+ * 
+ * 服务器返回对应的JSON数组：
+ * 
+ * <pre>
+ * [{"id":0, "status":200, "body":"..."}, ...]
+ * </pre>
+ * 
+ * 缺少结果或状态码不为2xx的请求改为单独请求；批量接口无法访问或返回无法识别的数据时，全部改为单独请求，
+ * 且一段时间内该批量接口不再使用。
+ * 
+ * @author Calvin
+ * 
+ */
+public class BatchRequestor extends AbstractModel {
+
+	/** 批量请求中各请求的参数名 */
+	public static final String PARAM_REQUESTS = "requests";
+
+	/** 不支持批量请求的记录的有效期，超出后重新尝试 */
+	private static final long UNSUPPORTED_EXPIRE_TIME = 24 * 60 * 60 * 1000L;
+
+	/** 不支持批量请求的接口及其记录时间 */
+	private static final HashMap<String, Long> UNSUPPORTED_URLS = new HashMap<String, Long>();
+
+	/** 批量接口地址 */
+	private final String mBatchUrl;
+	/** 合并的requestor */
+	private final List<AbstractRequestor> mRequestors = new ArrayList<AbstractRequestor>();
+	/** 批量请求任务 */
+	private volatile WebRequestTask mRequestTask;
+
+	/**
+	 * 构造
+	 * 
+	 * @param context
+	 * @param batchUrl
+	 *            批量接口地址
+	 * @param listener
+	 *            批量请求完成的回调，可为null，各requestor的结果仍通过其自身的listener回调
+	 */
+	public BatchRequestor(Context context, String batchUrl,
+			OnModelProcessListener listener) {
+		super(context, listener);
+		mBatchUrl = batchUrl;
+	}
+
+	@Override
+	protected void init() {
+	}
+
+	/**
+	 * 添加需要合并的requestor
+	 * 
+	 * @param requestor
+	 * @return this
+	 */
+	public BatchRequestor add(AbstractRequestor requestor) {
+		synchronized (mRequestors) {
+			if (!mRequestors.contains(requestor)) {
+				mRequestors.add(requestor);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * 开始发起批量请求
+	 */
+	public void request() {
+		if (DEBUG) {
+			Log.d(TAG, "make a batch request");
+		}
+		executeAsyncTask();
+	}
+
+	@Override
+	public void cancel() {
+		super.cancel();
+		WebRequestTask requestTask = mRequestTask;
+		if (requestTask != null) {
+			requestTask.cancel();
+		}
+		for (AbstractRequestor requestor : getRequestors()) {
+			requestor.cancel();
+		}
+	}
+
+	@Override
+	protected void process() {
+		mRequestTask = null;
+
+		// 可直接使用缓存或需要预加载的请求各自单独请求
+		List<AbstractRequestor> batch = new ArrayList<AbstractRequestor>();
+		for (AbstractRequestor requestor : getRequestors()) {
+			if (requestor.isCanceled()) {
+				continue;
+			}
+			if (!requestor.canJoinBatch()) {
+				requestor.request();
+			} else {
+				batch.add(requestor);
+			}
+		}
+
+		// 请求数不足、批量接口不可用或无网络时，各自单独请求
+		if (batch.size() < 2 || !isSupported(mBatchUrl)
+				|| !NetworkMonitor.getInstance(mContext).isConnected()) {
+			requestIndividually(batch);
+			onBatchFinished();
+			return;
+		}
+
+		List<NameValuePair> sharedParams = batch.get(0).getExtraParams();
+		String envelope;
+		try {
+			envelope = buildEnvelope(batch, sharedParams);
+		} catch (JSONException e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+			requestIndividually(batch);
+			onBatchFinished();
+			return;
+		}
+
+		List<NameValuePair> params = new LinkedList<NameValuePair>();
+		if (sharedParams != null) {
+			params.addAll(sharedParams);
+		}
+		params.add(new BasicNameValuePair(PARAM_REQUESTS, envelope));
+
+		mRequestTask = new WebRequestTask(mContext, mBatchUrl,
+				getRequestHeaders(), params, getPriority(),
+				new BatchRequestTaskListener(batch));
+		mRequestTask.setLane(getLane());
+		mRequestTask.setRequestType(WebRequestTask.RequestType.POST);
+
+		// 创建任务期间请求已经被Cancel
+		if (isCanceled()) {
+			mRequestTask.cancel();
+		}
+		mRequestTask.run();
+	}
+
+	/**
+	 * 批量请求的请求头，可由子类进行重写
+	 * 
+	 * @return
+	 */
+	protected List<NameValuePair> getRequestHeaders() {
+		return null;
+	}
+
+	/**
+	 * 生成批量请求的JSON数组，与公共参数相同的额外参数不再重复提交
+	 * 
+	 * @param batch
+	 * @param sharedParams
+	 * @return
+	 * @throws JSONException
+	 */
+	private String buildEnvelope(List<AbstractRequestor> batch,
+			List<NameValuePair> sharedParams) throws JSONException {
+		JSONArray requests = new JSONArray();
+		for (int i = 0; i < batch.size(); i++) {
+			AbstractRequestor requestor = batch.get(i);
+			List<NameValuePair> params = new LinkedList<NameValuePair>();
+			List<NameValuePair> requestParams = requestor.getRequestParams();
+			if (requestParams != null) {
+				params.addAll(requestParams);
+			}
+			List<NameValuePair> extraParams = requestor.getExtraParams();
+			if (extraParams != null && !isSameParams(extraParams, sharedParams)) {
+				params.addAll(extraParams);
+			}
+
+			JSONObject request = new JSONObject();
+			request.put("id", i);
+			request.put("url", requestor.getAdjustRequestUrl());
+			request.put("method", requestor.getRequestType().name());
+			request.put("params", toJSONArray(params));
+			List<NameValuePair> headers = requestor.getRequestHeaders();
+			if (headers != null && !headers.isEmpty()) {
+				request.put("headers", toJSONArray(headers));
+			}
+			requests.put(request);
+		}
+		return requests.toString();
+	}
+
+	/**
+	 * 拆分批量请求的结果，交由各requestor处理
+	 * 
+	 * @param batch
+	 * @param result
+	 */
+	private void dispatchResult(List<AbstractRequestor> batch, String result) {
+		JSONArray responses;
+		try {
+			responses = new JSONArray(result);
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.d(TAG, "batch not supported by " + mBatchUrl);
+			}
+			markUnsupported(mBatchUrl);
+			requestIndividually(batch);
+			return;
+		}
+
+		AbstractRequestor[] pending = batch
+				.toArray(new AbstractRequestor[batch.size()]);
+		for (int i = 0; i < responses.length(); i++) {
+			JSONObject response = responses.optJSONObject(i);
+			if (response == null) {
+				continue;
+			}
+			int id = response.optInt("id", -1);
+			if (id < 0 || id >= pending.length || pending[id] == null) {
+				continue;
+			}
+			int status = response.optInt("status");
+			if (status < 200 || status >= 300 || response.isNull("body")) {
+				continue;
+			}
+			AbstractRequestor requestor = pending[id];
+			pending[id] = null;
+			if (!requestor.isCanceled()) {
+				requestor.onBatchSuccess(response.optString("body"));
+			}
+		}
+
+		// 缺少结果或失败的请求各自单独请求
+		List<AbstractRequestor> remains = new ArrayList<AbstractRequestor>();
+		for (AbstractRequestor requestor : pending) {
+			if (requestor != null) {
+				remains.add(requestor);
+			}
+		}
+		requestIndividually(remains);
+	}
+
+	/**
+	 * 各自单独请求
+	 * 
+	 * @param requestors
+	 */
+	private void requestIndividually(List<AbstractRequestor> requestors) {
+		if (DEBUG && !requestors.isEmpty()) {
+			Log.d(TAG, "request individually : " + requestors.size());
+		}
+		for (AbstractRequestor requestor : requestors) {
+			if (!requestor.isCanceled()) {
+				requestor.request();
+			}
+		}
+	}
+
+	/**
+	 * 批量请求完成，回调批量请求自身的listener
+	 */
+	private void onBatchFinished() {
+		if (mOnModelProcessListener != null) {
+			onSuccess();
+		}
+	}
+
+	/**
+	 * @return 合并的requestor
+	 */
+	private List<AbstractRequestor> getRequestors() {
+		synchronized (mRequestors) {
+			return new ArrayList<AbstractRequestor>(mRequestors);
+		}
+	}
+
+	/**
+	 * 批量接口是否可用
+	 * 
+	 * @param batchUrl
+	 * @return
+	 */
+	public static boolean isSupported(String batchUrl) {
+		if (batchUrl == null) {
+			return false;
+		}
+		synchronized (UNSUPPORTED_URLS) {
+			Long time = UNSUPPORTED_URLS.get(batchUrl);
+			if (time == null) {
+				return true;
+			}
+			if (System.currentTimeMillis() - time > UNSUPPORTED_EXPIRE_TIME) {
+				UNSUPPORTED_URLS.remove(batchUrl);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 记录批量接口不可用
+	 * 
+	 * @param batchUrl
+	 */
+	private static void markUnsupported(String batchUrl) {
+		synchronized (UNSUPPORTED_URLS) {
+			UNSUPPORTED_URLS.put(batchUrl, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * 参数是否相同
+	 * 
+	 * @param params
+	 * @param other
+	 * @return
+	 */
+	private static boolean isSameParams(List<NameValuePair> params,
+			List<NameValuePair> other) {
+		if (other == null || params.size() != other.size()) {
+			return false;
+		}
+		for (int i = 0; i < params.size(); i++) {
+			NameValuePair a = params.get(i);
+			NameValuePair b = other.get(i);
+			if (!a.getName().equals(b.getName())
+					|| (a.getValue() == null ? b.getValue() != null : !a
+							.getValue().equals(b.getValue()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 将参数转换为[["name","value"], ...]形式的JSON数组
+	 * 
+	 * @param pairs
+	 * @return
+	 */
+	private static JSONArray toJSONArray(List<NameValuePair> pairs) {
+		JSONArray array = new JSONArray();
+		for (NameValuePair pair : pairs) {
+			JSONArray item = new JSONArray();
+			item.put(pair.getName());
+			item.put(pair.getValue() == null ? JSONObject.NULL : pair
+					.getValue());
+			array.put(item);
+		}
+		return array;
+	}
+
+	/**
+	 * 批量请求任务的回调
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private class BatchRequestTaskListener implements OnRequestTaskListener {
+
+		/** 本次批量请求包含的requestor */
+		private final List<AbstractRequestor> mBatch;
+
+		/**
+		 * 构造
+		 * 
+		 * @param batch
+		 */
+		BatchRequestTaskListener(List<AbstractRequestor> batch) {
+			mBatch = batch;
+		}
+
+		@Override
+		public void onSuccess(String result) {
+			if (DEBUG) {
+				Log.d(TAG, "batch request successed");
+			}
+			if (isCanceled()) {
+				return;
+			}
+			dispatchResult(mBatch, result);
+			onBatchFinished();
+		}
+
+		@Override
+		public void onFailed(int errorCode) {
+			if (DEBUG) {
+				Log.d(TAG, "batch request failed , request individually");
+			}
+			if (isCanceled()) {
+				return;
+			}
+			// 交由各requestor按自身的重试、缓存及离线策略处理
+			requestIndividually(mBatch);
+			onBatchFinished();
+		}
+
+		@Override
+		public void onProgress() {
+		}
+	}
+}
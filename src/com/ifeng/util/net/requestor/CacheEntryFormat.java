@@ -0,0 +1,559 @@
+package com.ifeng.util.net.requestor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.ifeng.util.ByteArrayPool;
+import com.ifeng.util.PooledByteArrayOutputStream;
+import com.ifeng.util.net.parser.AbstractIFItem;
+
+/**
+ * {@link RequestDataCache}缓存数据的存储格式：固定长度的头部(标识、版本、标志位、原始数据长度、CRC32校验值)，
+ * 之后为deflate压缩(或未压缩)的UTF-8数据。读取时数据解压至缓冲池中的缓冲区，长度或校验值不符时视为缓存损坏。
+ * <p>
+ * 解析结果的快照：头部(标识、版本、解析类名、应用版本号、结构版本)之后为deflate压缩的序列化数据。
+ * 结构版本由解析类及其引用的所有类的成员变量名称与类型计算得到，解析类名、应用版本号或结构版本与读取时不符
+ * (应用已经升级或解析类已经修改)时视为不存在快照，需要重新解析缓存数据。快照文件可能被其它应用修改，
+ * 反序列化时仅允许解析类引用到的类及常用的集合、基本类型包装类。
+ * 
+ * @author Calvin
+ * 
+ */
+final class CacheEntryFormat {
+
+	/** 格式标识 */
+	private static final int MAGIC = 0x49464443; // "IFDC"
+	/** 格式版本 */
+	private static final int VERSION = 1;
+	/** 标志位_数据经过deflate压缩 */
+	private static final int FLAG_DEFLATED = 0x01;
+
+	/** 快照格式标识 */
+	private static final int SNAPSHOT_MAGIC = 0x49465353; // "IFSS"
+	/** 快照格式版本 */
+	private static final int SNAPSHOT_VERSION = 2;
+
+	/** 快照中除解析类引用到的类之外允许出现的类 */
+	private static final HashSet<String> SNAPSHOT_COMMON_CLASSES = new HashSet<String>(
+			Arrays.asList(String.class.getName(), Boolean.class.getName(),
+					Byte.class.getName(), Character.class.getName(),
+					Short.class.getName(), Integer.class.getName(),
+					Long.class.getName(), Float.class.getName(),
+					Double.class.getName(), Number.class.getName(),
+					java.util.ArrayList.class.getName(),
+					java.util.LinkedList.class.getName(),
+					java.util.HashMap.class.getName(),
+					java.util.LinkedHashMap.class.getName(),
+					java.util.HashSet.class.getName(),
+					java.util.LinkedHashSet.class.getName()));
+
+	/** 按名称排列成员变量 */
+	private static final Comparator<Field> FIELD_NAME_COMPARATOR = new Comparator<Field>() {
+
+		@Override
+		public int compare(Field lhs, Field rhs) {
+			return lhs.getName().compareTo(rhs.getName());
+		}
+	};
+
+	/** 各解析类的快照结构 */
+	private static final HashMap<Class<?>, SnapshotSchema> SNAPSHOT_SCHEMAS = new HashMap<Class<?>, SnapshotSchema>();
+
+	/** 读写缓冲区大小 */
+	private static final int BUFFER_SIZE = 4 * 1024;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private CacheEntryFormat() {
+	}
+
+	/**
+	 * 读取缓存数据
+	 * 
+	 * @param in
+	 *            缓存数据流，读取后不进行关闭
+	 * @param charset
+	 *            数据编码
+	 * @return 数据
+	 * @throws IOException
+	 *             格式错误、长度或校验值不符时抛出
+	 */
+	static String read(InputStream in, String charset) throws IOException {
+		DataInputStream header = new DataInputStream(new BufferedInputStream(
+				in, BUFFER_SIZE));
+		if (header.readInt() != MAGIC) {
+			throw new IOException("unexpected cache entry magic");
+		}
+		if (header.readUnsignedByte() != VERSION) {
+			throw new IOException("unexpected cache entry version");
+		}
+		int flags = header.readUnsignedByte();
+		int length = header.readInt();
+		int checksum = header.readInt();
+		if (length < 0) {
+			throw new IOException("unexpected cache entry length " + length);
+		}
+
+		Inflater inflater = null;
+		InputStream body = header;
+		if ((flags & FLAG_DEFLATED) != 0) {
+			inflater = new Inflater();
+			body = new InflaterInputStream(header, inflater, BUFFER_SIZE);
+		}
+		byte[] buffer = ByteArrayPool.acquire(Math.max(length, 1));
+		try {
+			int count = 0;
+			int len;
+			while (count < length
+					&& (len = body.read(buffer, count, length - count)) != -1) {
+				count += len;
+			}
+			if (count != length) {
+				throw new IOException("cache entry truncated : " + count + "/"
+						+ length);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(buffer, 0, length);
+			if ((int) crc.getValue() != checksum) {
+				throw new IOException("cache entry checksum mismatch");
+			}
+			return new String(buffer, 0, length, charset);
+		} finally {
+			ByteArrayPool.release(buffer);
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * 生成解析结果的快照
+	 *
+	 * @param item
+	 *            解析结果，解析类及其引用的对象需要支持序列化
+	 * @param appVersion
+	 *            应用版本号
+	 * @return 快照数据，使用完毕后需要调用close()归还缓冲区
+	 * @throws IOException
+	 *             解析结果无法序列化时抛出
+	 */
+	static PooledByteArrayOutputStream writeSnapshot(AbstractIFItem item,
+			int appVersion) throws IOException {
+		PooledByteArrayOutputStream out = new PooledByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try {
+			DataOutputStream header = new DataOutputStream(out);
+			header.writeInt(SNAPSHOT_MAGIC);
+			header.writeByte(SNAPSHOT_VERSION);
+			header.writeUTF(item.getClass().getName());
+			header.writeInt(appVersion);
+			header.writeLong(getSnapshotSchema(item.getClass()).mVersion);
+
+			DeflaterOutputStream body = new DeflaterOutputStream(out, deflater,
+					BUFFER_SIZE);
+			ObjectOutputStream objectOut = new ObjectOutputStream(body);
+			objectOut.writeObject(item);
+			objectOut.flush();
+			body.finish();
+			return out;
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		} catch (RuntimeException e) {
+			// 序列化期间解析结果被修改
+			out.close();
+			throw new IOException(e.toString());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * 读取解析结果的快照
+	 *
+	 * @param in
+	 *            快照数据流，读取后不进行关闭
+	 * @param itemClass
+	 *            解析类
+	 * @param appVersion
+	 *            应用版本号
+	 * @return 不存在快照、应用已经升级或解析类已经修改时返回null
+	 * @throws IOException
+	 *             快照数据损坏或包含不允许的类时抛出
+	 */
+	static AbstractIFItem readSnapshot(InputStream in,
+			Class<? extends AbstractIFItem> itemClass, int appVersion)
+			throws IOException {
+		DataInputStream header = new DataInputStream(new BufferedInputStream(
+				in, BUFFER_SIZE));
+		int magic;
+		try {
+			magic = header.readInt();
+		} catch (EOFException e) {
+			// 未保存快照
+			return null;
+		}
+		SnapshotSchema schema = getSnapshotSchema(itemClass);
+		if (magic != SNAPSHOT_MAGIC
+				|| header.readUnsignedByte() != SNAPSHOT_VERSION
+				|| !itemClass.getName().equals(header.readUTF())
+				|| header.readInt() != appVersion
+				|| header.readLong() != schema.mVersion) {
+			return null;
+		}
+
+		Inflater inflater = new Inflater();
+		try {
+			ObjectInputStream objectIn = new SnapshotInputStream(
+					new InflaterInputStream(header, inflater, BUFFER_SIZE),
+					schema);
+			Object item = objectIn.readObject();
+			return itemClass.isInstance(item) ? itemClass.cast(item) : null;
+		} catch (ClassNotFoundException e) {
+			return null;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * 获取解析类的快照结构，首次获取时生成
+	 *
+	 * @param itemClass
+	 * @return
+	 */
+	private static SnapshotSchema getSnapshotSchema(Class<?> itemClass) {
+		synchronized (SNAPSHOT_SCHEMAS) {
+			SnapshotSchema schema = SNAPSHOT_SCHEMAS.get(itemClass);
+			if (schema == null) {
+				schema = new SnapshotSchema(itemClass);
+				SNAPSHOT_SCHEMAS.put(itemClass, schema);
+			}
+			return schema;
+		}
+	}
+
+	/**
+	 * 解析类的快照结构：解析类引用到的所有类(成员变量类型、集合元素类型、父类)，及由这些类的成员变量名称与类型计算得到的结构版本。
+	 * 任一成员变量增删或修改类型时结构版本随之变化，不依赖于serialVersionUID
+	 *
+	 * @author Calvin
+	 *
+	 */
+	private static final class SnapshotSchema {
+		/** 结构版本 */
+		final long mVersion;
+		/** 引用到的类名 */
+		final HashSet<String> mClassNames = new HashSet<String>();
+		/** 结构描述，仅在生成时使用 */
+		private final StringBuilder mDescription = new StringBuilder();
+
+		/**
+		 * 构造
+		 *
+		 * @param itemClass
+		 */
+		SnapshotSchema(Class<?> itemClass) {
+			addClass(itemClass);
+			long version = 0;
+			try {
+				byte[] digest = MessageDigest.getInstance("MD5").digest(
+						mDescription.toString().getBytes("UTF-8"));
+				for (int i = 0; i < 8; i++) {
+					version = (version << 8) | (digest[i] & 0xFF);
+				}
+			} catch (Exception e) {
+				version = mDescription.toString().hashCode();
+			}
+			mVersion = version;
+			mDescription.setLength(0);
+		}
+
+		/**
+		 * 添加类及其父类，并记录其序列化的成员变量
+		 *
+		 * @param classs
+		 */
+		private void addClass(Class<?> classs) {
+			if (classs.isArray()) {
+				addClass(classs.getComponentType());
+				return;
+			}
+			if (classs.isPrimitive() || !mClassNames.add(classs.getName())
+					|| classs.getName().startsWith("java.")) {
+				return;
+			}
+			for (Class<?> current = classs; current != null
+					&& Serializable.class.isAssignableFrom(current); current = current
+					.getSuperclass()) {
+				mClassNames.add(current.getName());
+				mDescription.append(current.getName()).append('{');
+				// getDeclaredFields()的顺序不固定
+				Field[] fields = current.getDeclaredFields();
+				Arrays.sort(fields, FIELD_NAME_COMPARATOR);
+				for (Field field : fields) {
+					int modifiers = field.getModifiers();
+					if (Modifier.isStatic(modifiers)
+							|| Modifier.isTransient(modifiers)) {
+						continue;
+					}
+					mDescription.append(field.getName()).append(':')
+							.append(field.getGenericType()).append(';');
+					addType(field.getGenericType());
+				}
+				mDescription.append('}');
+			}
+		}
+
+		/**
+		 * 添加泛型类型中出现的类
+		 *
+		 * @param type
+		 */
+		private void addType(Type type) {
+			if (type instanceof Class) {
+				addClass((Class<?>) type);
+			} else if (type instanceof ParameterizedType) {
+				addType(((ParameterizedType) type).getRawType());
+				for (Type argument : ((ParameterizedType) type)
+						.getActualTypeArguments()) {
+					addType(argument);
+				}
+			} else if (type instanceof GenericArrayType) {
+				addType(((GenericArrayType) type).getGenericComponentType());
+			} else if (type instanceof WildcardType) {
+				for (Type bound : ((WildcardType) type).getUpperBounds()) {
+					addType(bound);
+				}
+			} else if (type instanceof TypeVariable) {
+				for (Type bound : ((TypeVariable<?>) type).getBounds()) {
+					addType(bound);
+				}
+			}
+		}
+
+		/**
+		 * 快照中是否允许出现该类
+		 *
+		 * @param name
+		 *            类名，数组为"[Lxxx;"或"[I"的形式
+		 * @return
+		 */
+		boolean isAllowed(String name) {
+			int dimension = 0;
+			while (dimension < name.length() && name.charAt(dimension) == '[') {
+				dimension++;
+			}
+			if (dimension > 0) {
+				if (name.length() == dimension + 1) {
+					// 基本类型数组
+					return true;
+				}
+				if (name.charAt(dimension) != 'L' || !name.endsWith(";")) {
+					return false;
+				}
+				name = name.substring(dimension + 1, name.length() - 1);
+			}
+			return mClassNames.contains(name)
+					|| SNAPSHOT_COMMON_CLASSES.contains(name);
+		}
+	}
+
+	/**
+	 * 读取快照的对象输入流，拒绝解析类的快照结构之外的类，避免被修改的快照文件实例化任意类
+	 *
+	 * @author Calvin
+	 *
+	 */
+	private static final class SnapshotInputStream extends ObjectInputStream {
+		/** 解析类的快照结构 */
+		private final SnapshotSchema mSchema;
+
+		/**
+		 * 构造
+		 *
+		 * @param in
+		 * @param schema
+		 * @throws IOException
+		 */
+		SnapshotInputStream(InputStream in, SnapshotSchema schema)
+				throws IOException {
+			super(in);
+			mSchema = schema;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			if (!mSchema.isAllowed(desc.getName())) {
+				throw new InvalidClassException(desc.getName(),
+						"not allowed in snapshot");
+			}
+			return super.resolveClass(desc);
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces)
+				throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("proxy not allowed in snapshot");
+		}
+	}
+
+	/**
+	 * 缓存数据的输出流，写入的数据经过压缩后暂存在缓冲池的缓冲区中，通过{@link #writeTo(OutputStream)}
+	 * 连同头部一起写入缓存文件；使用完毕后需要调用{@link #release()}归还缓冲区。
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	static final class EntryOutputStream extends OutputStream {
+		/** 原始数据的校验 */
+		private final CRC32 mCrc = new CRC32();
+		/** 压缩器，不压缩时为null */
+		private final Deflater mDeflater;
+		/** 暂存的数据 */
+		private final PooledByteArrayOutputStream mBody;
+		/** 写入暂存数据的输出流 */
+		private final OutputStream mOut;
+		/** 原始数据长度 */
+		private int mLength;
+		/** 是否已经完成写入 */
+		private boolean mIsFinished;
+		/** 是否已经归还缓冲区 */
+		private boolean mIsReleased;
+
+		/**
+		 * 构造
+		 * 
+		 * @param compress
+		 *            是否压缩
+		 */
+		EntryOutputStream(boolean compress) {
+			mBody = new PooledByteArrayOutputStream();
+			if (compress) {
+				mDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+				mOut = new DeflaterOutputStream(mBody, mDeflater, BUFFER_SIZE);
+			} else {
+				mDeflater = null;
+				mOut = mBody;
+			}
+		}
+
+		@Override
+		public synchronized void write(int oneByte) throws IOException {
+			checkWritable();
+			mOut.write(oneByte);
+			mCrc.update(oneByte);
+			mLength++;
+		}
+
+		@Override
+		public synchronized void write(byte[] buffer, int offset, int length)
+				throws IOException {
+			checkWritable();
+			mOut.write(buffer, offset, length);
+			mCrc.update(buffer, offset, length);
+			mLength += length;
+		}
+
+		/**
+		 * 完成写入，之后不可再写入数据，缓存数据在{@link #writeTo(OutputStream)}时写入
+		 */
+		@Override
+		public synchronized void close() throws IOException {
+			if (mIsFinished || mIsReleased) {
+				return;
+			}
+			mIsFinished = true;
+			if (mOut instanceof DeflaterOutputStream) {
+				((DeflaterOutputStream) mOut).finish();
+			}
+		}
+
+		/**
+		 * @return 已写入的原始数据长度
+		 */
+		synchronized int getLength() {
+			return mLength;
+		}
+
+		/**
+		 * 完成写入，并将头部及数据写入缓存文件
+		 * 
+		 * @param target
+		 * @throws IOException
+		 */
+		synchronized void writeTo(OutputStream target) throws IOException {
+			close();
+			if (mIsReleased) {
+				throw new IOException("cache entry released");
+			}
+			DataOutputStream out = new DataOutputStream(target);
+			out.writeInt(MAGIC);
+			out.writeByte(VERSION);
+			out.writeByte(mDeflater != null ? FLAG_DEFLATED : 0);
+			out.writeInt(mLength);
+			out.writeInt((int) mCrc.getValue());
+			mBody.writeTo(out);
+			out.flush();
+		}
+
+		/**
+		 * 归还缓冲区，之后不可再使用
+		 */
+		synchronized void release() {
+			if (mIsReleased) {
+				return;
+			}
+			mIsReleased = true;
+			mIsFinished = true;
+			if (mDeflater != null) {
+				mDeflater.end();
+			}
+			try {
+				mBody.close();
+			} catch (IOException e) {
+				// 归还缓冲区不会失败
+			}
+		}
+
+		/**
+		 * 检查是否可写入
+		 * 
+		 * @throws IOException
+		 */
+		private void checkWritable() throws IOException {
+			if (mIsFinished || mIsReleased) {
+				throw new IOException("cache entry closed");
+			}
+		}
+	}
+}
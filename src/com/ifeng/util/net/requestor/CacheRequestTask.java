@@ -3,6 +3,8 @@ package com.ifeng.util.net.requestor;
 import android.text.TextUtils;
 
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.parser.AbstractIFItem;
+import com.ifeng.util.net.requestor.RequestMetrics.Phase;
 
 /**
  * 从缓存获取数据的网络请求类
@@ -18,6 +20,12 @@ public class CacheRequestTask extends RequestTask {
 	/** cache 工具 */
 	private RequestDataCache mDataCache;
 
+	/** 统计所使用的接口标识，为null时不进行统计 */
+	private String mMetricsEndpoint;
+
+	/** 解析类，不为null时优先加载解析结果的快照 */
+	private Class<? extends AbstractIFItem> mSnapshotClass;
+
 	/**
 	 * 构造函数
 	 * 
@@ -58,7 +66,27 @@ public class CacheRequestTask extends RequestTask {
 			return;
 		}
 
+		long startTime = System.currentTimeMillis();
+
+		// 内存缓存中存在解析结果(如启动时已经预热)或存在解析结果的快照时直接使用，无需重新解析
+		if (mSnapshotClass != null
+				&& mOnRequestTaskListener instanceof OnSnapshotRequestTaskListener) {
+			AbstractIFItem item = mDataCache.loadItem();
+			if (item == null || item.getClass() != mSnapshotClass) {
+				item = mDataCache.loadSnapshot(mSnapshotClass);
+			}
+			if (item != null) {
+				RequestMetrics.recordPhase(mMetricsEndpoint, Phase.CACHE_READ,
+						System.currentTimeMillis() - startTime);
+				((OnSnapshotRequestTaskListener) mOnRequestTaskListener)
+						.onSuccess(item);
+				return;
+			}
+		}
+
 		String ret = mDataCache.load();
+		RequestMetrics.recordPhase(mMetricsEndpoint, Phase.CACHE_READ,
+				System.currentTimeMillis() - startTime);
 
 		if (TextUtils.isEmpty(ret)) {
 			mOnRequestTaskListener
@@ -68,4 +96,23 @@ public class CacheRequestTask extends RequestTask {
 		}
 
 	}
+
+	/**
+	 * 设置统计所使用的接口标识，为null时不进行统计
+	 * 
+	 * @param metricsEndpoint
+	 */
+	public void setMetricsEndpoint(String metricsEndpoint) {
+		this.mMetricsEndpoint = metricsEndpoint;
+	}
+
+	/**
+	 * 设置解析类，存在该解析类的快照时以{@link OnSnapshotRequestTaskListener#onSuccess(AbstractIFItem)}回调，
+	 * 要求listener为{@link OnSnapshotRequestTaskListener}
+	 * 
+	 * @param snapshotClass
+	 */
+	public void setSnapshotClass(Class<? extends AbstractIFItem> snapshotClass) {
+		this.mSnapshotClass = snapshotClass;
+	}
 }
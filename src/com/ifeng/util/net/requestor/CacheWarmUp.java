@@ -0,0 +1,91 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.model.PriorityScheduler.Lane;
+import com.ifeng.util.net.requestor.RequestDataCache.DataCacheParams;
+
+/**
+ * 启动时的缓存预热。应用启动时并行读取已登记的启动关键requestor(如首页频道)的缓存，页面创建后请求或
+ * {@link AbstractRequestor#hasPreloadCache()}时可直接命中内存，无需等待页面创建后依次读取文件。
+ * 开启{@link DataCacheParams#memoryCacheItem}的requestor同时完成解析，否则仅读入原始数据。
+ * <p>
+ * 通常在{@link BaseApplicaion#getWarmUpRequestors()}中返回需要预热的requestor，由BaseApplicaion在启动时登记并开始预热；
+ * 登记的requestor仅用于读取缓存，不会发起网络请求及回调，预热完成后即释放。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class CacheWarmUp {
+
+	/** log tag. */
+	private static final String TAG = CacheWarmUp.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 已登记尚未预热的requestor */
+	private static final List<AbstractRequestor> REQUESTORS = new ArrayList<AbstractRequestor>();
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private CacheWarmUp() {
+	}
+
+	/**
+	 * 登记需要预热缓存的requestor，需要在{@link #start()}之前登记
+	 * 
+	 * @param requestor
+	 *            与页面请求相同配置(请求地址、参数、缓存模块)的requestor
+	 */
+	public static void register(AbstractRequestor requestor) {
+		if (requestor == null) {
+			return;
+		}
+		synchronized (REQUESTORS) {
+			if (!REQUESTORS.contains(requestor)) {
+				REQUESTORS.add(requestor);
+			}
+		}
+	}
+
+	/**
+	 * 开始并行预热已登记的requestor的缓存，立即返回
+	 */
+	public static void start() {
+		List<AbstractRequestor> requestors;
+		synchronized (REQUESTORS) {
+			requestors = new ArrayList<AbstractRequestor>(REQUESTORS);
+			REQUESTORS.clear();
+		}
+		for (final AbstractRequestor requestor : requestors) {
+			// 页面即将使用这些缓存，与用户操作触发的任务同等优先
+			PriorityScheduler.getInstance().execute(new Runnable() {
+
+				@Override
+				public void run() {
+					long startTime = System.currentTimeMillis();
+					boolean isWarmed = false;
+					try {
+						isWarmed = requestor.warmUpCache();
+					} catch (Exception e) {
+						if (DEBUG) {
+							Log.e(TAG, e);
+						}
+					}
+					if (DEBUG) {
+						Log.d(TAG, requestor.getClass().getSimpleName()
+								+ (isWarmed ? " warmed in " : " has no cache , ")
+								+ (System.currentTimeMillis() - startTime)
+								+ "ms");
+					}
+				}
+			}, Lane.INTERACTIVE);
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.os.Process;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.model.PriorityScheduler.Lane;
+
+/**
+ * 缓存数据的延迟写入队列。请求线程仅将待写入的数据放入队列即可返回结果，由后台低优先级线程依次写入文件；
+ * 同一缓存项多次写入时仅保留最新的一次。写入完成前，{@link RequestDataCache}的读取操作以队列中的数据为准。
+ * 应用退出前需要调用{@link #flush()}将队列中的数据同步写入。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class CacheWriteQueue {
+
+	/** log tag. */
+	private static final String TAG = CacheWriteQueue.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 放入队列后延迟写入的时间，合并短时间内的重复写入 */
+	private static final long FLUSH_DELAY = 1000;
+
+	/** 待写入的数据，按放入顺序排列 */
+	private static final LinkedHashMap<String, PendingWrite> PENDING_WRITES = new LinkedHashMap<String, PendingWrite>();
+
+	/** 写入锁，保证同一时间只有一个线程在写入 */
+	private static final Object FLUSH_LOCK = new Object();
+
+	/** 正在写入的缓存项，由PENDING_WRITES保护 */
+	private static String sWritingKey;
+
+	/** 是否已经安排了写入任务 */
+	private static boolean sIsFlushScheduled;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private CacheWriteQueue() {
+	}
+
+	/**
+	 * 放入待写入的数据，替换同一缓存项尚未写入的数据
+	 * 
+	 * @param key
+	 *            缓存项唯一标识
+	 * @param write
+	 */
+	static void put(String key, PendingWrite write) {
+		synchronized (PENDING_WRITES) {
+			// 重新放入以保持写入顺序
+			PENDING_WRITES.remove(key);
+			PENDING_WRITES.put(key, write);
+			if (sIsFlushScheduled) {
+				return;
+			}
+			sIsFlushScheduled = true;
+		}
+		PriorityScheduler.getInstance().schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (PENDING_WRITES) {
+					sIsFlushScheduled = false;
+				}
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				flush();
+			}
+		}, Lane.BACKGROUND, FLUSH_DELAY);
+	}
+
+	/**
+	 * 获取尚未写入的数据
+	 * 
+	 * @param key
+	 * @return 不存在时返回null
+	 */
+	static PendingWrite get(String key) {
+		synchronized (PENDING_WRITES) {
+			return PENDING_WRITES.get(key);
+		}
+	}
+
+	/**
+	 * 取消尚未写入的数据，若该缓存项正在写入则等待其写入完成，之后可直接操作缓存文件；不等待其它缓存项的写入
+	 * 
+	 * @param key
+	 */
+	static void cancel(String key) {
+		synchronized (PENDING_WRITES) {
+			PENDING_WRITES.remove(key);
+			while (key.equals(sWritingKey)) {
+				try {
+					PENDING_WRITES.wait();
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 将队列中的数据同步写入文件，在应用退出前调用
+	 */
+	public static void flush() {
+		synchronized (FLUSH_LOCK) {
+			int count = 0;
+			while (true) {
+				String key;
+				PendingWrite write;
+				synchronized (PENDING_WRITES) {
+					Iterator<Map.Entry<String, PendingWrite>> iterator = PENDING_WRITES
+							.entrySet().iterator();
+					if (!iterator.hasNext()) {
+						break;
+					}
+					Map.Entry<String, PendingWrite> entry = iterator.next();
+					key = entry.getKey();
+					write = entry.getValue();
+					sWritingKey = key;
+				}
+
+				try {
+					write.write();
+				} catch (Exception e) {
+					if (DEBUG) {
+						Log.e(TAG, e);
+					}
+				}
+				count++;
+
+				synchronized (PENDING_WRITES) {
+					// 写入期间有新的数据放入时保留新的数据
+					if (PENDING_WRITES.get(key) == write) {
+						PENDING_WRITES.remove(key);
+					}
+					sWritingKey = null;
+					PENDING_WRITES.notifyAll();
+				}
+			}
+			if (DEBUG && count > 0) {
+				Log.d(TAG, "flushed " + count + " cache writes");
+			}
+		}
+	}
+
+	/**
+	 * @return 尚未写入的数据数
+	 */
+	public static int getPendingCount() {
+		synchronized (PENDING_WRITES) {
+			return PENDING_WRITES.size();
+		}
+	}
+
+	/**
+	 * 待写入的数据
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	interface PendingWrite {
+		/**
+		 * 写入文件，在写入线程中调用
+		 */
+		void write();
+	}
+}
@@ -0,0 +1,268 @@
+package com.ifeng.util.net.requestor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import android.content.Context;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+
+/**
+ * 分片上传的进度记录，将已完成的分片持久化到文件，上传失败或进程重启后可从已完成的分片之后继续上传
+ * 
+ * @author Calvin
+ * 
+ */
+final class ChunkedUploadState {
+
+	/** log tag. */
+	private static final String TAG = ChunkedUploadState.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 进度记录的存放目录 */
+	private static final String STATE_DIR = "upload_chunks";
+	/** 进度记录的有效期，超出后视为放弃的上传并清除 */
+	private static final long STATE_EXPIRE_TIME = 7 * 24 * 60 * 60 * 1000L;
+
+	/** 属性：文件大小 */
+	private static final String KEY_TOTAL_SIZE = "total_size";
+	/** 属性：分片大小 */
+	private static final String KEY_CHUNK_SIZE = "chunk_size";
+	/** 属性：已完成的分片 */
+	private static final String KEY_DONE_CHUNKS = "done_chunks";
+
+	/** 上传标识 */
+	private final String mUploadId;
+	/** 进度记录文件 */
+	private final File mStateFile;
+	/** 文件大小 */
+	private final long mTotalSize;
+	/** 分片大小 */
+	private final int mChunkSize;
+	/** 各分片是否已完成 */
+	private final boolean[] mDoneChunks;
+
+	/**
+	 * 构造
+	 * 
+	 * @param uploadId
+	 * @param stateFile
+	 * @param totalSize
+	 * @param chunkSize
+	 */
+	private ChunkedUploadState(String uploadId, File stateFile,
+			long totalSize, int chunkSize) {
+		mUploadId = uploadId;
+		mStateFile = stateFile;
+		mTotalSize = totalSize;
+		mChunkSize = chunkSize;
+		mDoneChunks = new boolean[(int) Math.max(1,
+				(totalSize + chunkSize - 1) / chunkSize)];
+	}
+
+	/**
+	 * 打开上传进度记录，记录不存在或分片方式不同时重新开始
+	 * 
+	 * @param context
+	 * @param uploadId
+	 *            上传标识
+	 * @param totalSize
+	 *            文件大小
+	 * @param chunkSize
+	 *            分片大小
+	 * @return
+	 */
+	static ChunkedUploadState open(Context context, String uploadId,
+			long totalSize, int chunkSize) {
+		File dir = new File(context.getFilesDir(), STATE_DIR);
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		clearExpired(dir);
+
+		ChunkedUploadState state = new ChunkedUploadState(uploadId, new File(
+				dir, uploadId), totalSize, chunkSize);
+		if (!state.mStateFile.exists()) {
+			return state;
+		}
+
+		Properties properties = new Properties();
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(state.mStateFile);
+			properties.load(in);
+			if (String.valueOf(totalSize).equals(
+					properties.getProperty(KEY_TOTAL_SIZE))
+					&& String.valueOf(chunkSize).equals(
+							properties.getProperty(KEY_CHUNK_SIZE))) {
+				String doneChunks = properties.getProperty(KEY_DONE_CHUNKS, "");
+				for (String index : doneChunks.split(",")) {
+					if (index.length() == 0) {
+						continue;
+					}
+					int i = Integer.parseInt(index);
+					if (i >= 0 && i < state.mDoneChunks.length) {
+						state.mDoneChunks[i] = true;
+					}
+				}
+				if (DEBUG) {
+					Log.d(TAG, "resume upload " + uploadId + " , uploaded "
+							+ state.getUploadedBytes() + "/" + totalSize);
+				}
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * 清除过期的进度记录
+	 * 
+	 * @param dir
+	 */
+	private static void clearExpired(File dir) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (File file : files) {
+			if (now - file.lastModified() > STATE_EXPIRE_TIME) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * 标记分片已完成，并持久化
+	 * 
+	 * @param index
+	 */
+	synchronized void markDone(int index) {
+		mDoneChunks[index] = true;
+
+		StringBuilder doneChunks = new StringBuilder();
+		for (int i = 0; i < mDoneChunks.length; i++) {
+			if (mDoneChunks[i]) {
+				if (doneChunks.length() > 0) {
+					doneChunks.append(',');
+				}
+				doneChunks.append(i);
+			}
+		}
+		Properties properties = new Properties();
+		properties.setProperty(KEY_TOTAL_SIZE, String.valueOf(mTotalSize));
+		properties.setProperty(KEY_CHUNK_SIZE, String.valueOf(mChunkSize));
+		properties.setProperty(KEY_DONE_CHUNKS, doneChunks.toString());
+
+		// 先写入临时文件再重命名，避免进程中断时记录损坏
+		File tmpFile = new File(mStateFile.getPath() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(tmpFile);
+			properties.store(out, null);
+			out.close();
+			out = null;
+			if (!tmpFile.renameTo(mStateFile)) {
+				tmpFile.delete();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			tmpFile.delete();
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 删除进度记录
+	 */
+	synchronized void delete() {
+		mStateFile.delete();
+	}
+
+	/**
+	 * @return 上传标识
+	 */
+	String getUploadId() {
+		return mUploadId;
+	}
+
+	/**
+	 * @return 分片数量
+	 */
+	int getChunkCount() {
+		return mDoneChunks.length;
+	}
+
+	/**
+	 * @return 文件大小
+	 */
+	long getTotalSize() {
+		return mTotalSize;
+	}
+
+	/**
+	 * 分片是否已完成
+	 * 
+	 * @param index
+	 * @return
+	 */
+	synchronized boolean isDone(int index) {
+		return mDoneChunks[index];
+	}
+
+	/**
+	 * 分片在文件中的偏移
+	 * 
+	 * @param index
+	 * @return
+	 */
+	long getChunkOffset(int index) {
+		return (long) index * mChunkSize;
+	}
+
+	/**
+	 * 分片长度
+	 * 
+	 * @param index
+	 * @return
+	 */
+	int getChunkLength(int index) {
+		return (int) Math.min(mChunkSize, mTotalSize - getChunkOffset(index));
+	}
+
+	/**
+	 * @return 已完成上传的字节数
+	 */
+	synchronized long getUploadedBytes() {
+		long uploaded = 0;
+		for (int i = 0; i < mDoneChunks.length; i++) {
+			if (mDoneChunks[i]) {
+				uploaded += getChunkLength(i);
+			}
+		}
+		return uploaded;
+	}
+}
@@ -0,0 +1,65 @@
+package com.ifeng.util.net.requestor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 统计已读取字节数的数据流
+ * 
+ * @author Calvin
+ * 
+ */
+class CountingInputStream extends FilterInputStream {
+
+	/** 已读取的字节数 */
+	private long mCount;
+
+	/**
+	 * 构造
+	 * 
+	 * @param in
+	 */
+	CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			mCount++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException {
+		int length = super.read(buffer, offset, count);
+		if (length > 0) {
+			mCount += length;
+		}
+		return length;
+	}
+
+	@Override
+	public long skip(long byteCount) throws IOException {
+		long skipped = super.skip(byteCount);
+		if (skipped > 0) {
+			mCount += skipped;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * @return 已读取的字节数
+	 */
+	long getCount() {
+		return mCount;
+	}
+}
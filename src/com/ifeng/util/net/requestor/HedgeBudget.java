@@ -0,0 +1,71 @@
+package com.ifeng.util.net.requestor;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+
+/**
+ * 进程内共享的对冲请求预算(令牌桶)。每个允许对冲的请求存入与{@link #setMaxHedgeRatio(float)}
+ * 相应比例的令牌，每次发出对冲请求消耗一个令牌，使对冲请求量始终不超过请求量的设定比例。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class HedgeBudget {
+
+	/** log tag. */
+	private static final String TAG = HedgeBudget.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 默认的对冲请求量与请求量的比例上限 */
+	public static final float DEFAULT_MAX_HEDGE_RATIO = 0.05f;
+
+	/** 令牌上限，即允许的突发对冲请求数 */
+	private static final float MAX_TOKENS = 5f;
+
+	/** 对冲请求量与请求量的比例上限 */
+	private static float sRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+	/** 当前令牌数，初始为空，避免启动阶段集中发出对冲请求 */
+	private static float sTokens;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private HedgeBudget() {
+	}
+
+	/**
+	 * 设置对冲请求量与请求量的比例上限
+	 * 
+	 * @param ratio
+	 *            0 - 1，为0时不再发出对冲请求
+	 */
+	public static synchronized void setMaxHedgeRatio(float ratio) {
+		sRatio = Math.min(1f, Math.max(0f, ratio));
+	}
+
+	/**
+	 * 发起允许对冲的请求时调用，存入令牌
+	 */
+	static synchronized void onRequest() {
+		sTokens = Math.min(MAX_TOKENS, sTokens + sRatio);
+	}
+
+	/**
+	 * 尝试获取一次对冲请求的许可
+	 * 
+	 * @return 预算耗尽时返回false
+	 */
+	static synchronized boolean tryAcquire() {
+		if (sTokens < 1f) {
+			if (DEBUG) {
+				Log.d(TAG, "hedge budget exhausted");
+			}
+			return false;
+		}
+		sTokens -= 1f;
+		return true;
+	}
+}
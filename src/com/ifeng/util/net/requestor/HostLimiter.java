@@ -0,0 +1,485 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+import android.content.Context;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.model.PriorityScheduler.Lane;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.NetworkProfile;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
+import com.ifeng.util.net.NetworkMonitor.OnNetworkChangedListener;
+
+/**
+ * 按域名(host)限制网络请求的并发数，并为每个域名提供熔断器：连续失败(包括超时)达到阈值后熔断，
+ * 熔断期间的请求直接失败；熔断时间结束后进入半开状态，仅放行少量探测请求，探测成功则恢复，失败则再次熔断。
+ * 避免某个响应缓慢或不可用的域名占满所有工作线程。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class HostLimiter {
+
+	/** log tag. */
+	private static final String TAG = HostLimiter.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 默认熔断的连续失败次数 */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+	/** 默认熔断时间 */
+	public static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+	/** 默认半开状态下同时放行的探测请求数 */
+	public static final int DEFAULT_HALF_OPEN_PROBES = 1;
+
+	/** 各域名的状态 */
+	private static final HashMap<String, HostState> HOSTS = new HashMap<String, HostState>();
+
+	/** 是否已经监听网络变化 */
+	private static boolean sIsNetworkObserved;
+
+	/** 每个域名的最大并发数，为0时根据网络自适应 */
+	private static volatile int sMaxConcurrentPerHost;
+	/** 熔断的连续失败次数 */
+	private static volatile int sFailureThreshold = DEFAULT_FAILURE_THRESHOLD;
+	/** 熔断时间 */
+	private static volatile long sOpenDuration = DEFAULT_OPEN_DURATION;
+	/** 半开状态下同时放行的探测请求数 */
+	private static volatile int sHalfOpenProbes = DEFAULT_HALF_OPEN_PROBES;
+
+	/**
+	 * 熔断器状态
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public enum BreakerState {
+		/** 正常 */
+		CLOSED,
+		/** 熔断中，请求直接失败 */
+		OPEN,
+		/** 半开，仅放行探测请求 */
+		HALF_OPEN;
+	}
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private HostLimiter() {
+	}
+
+	/**
+	 * 设置每个域名的最大并发数，默认根据网络自适应({@link NetworkProfile#getMaxConcurrentPerHost()})
+	 * 
+	 * @param maxConcurrent
+	 *            为0时根据网络自适应
+	 */
+	public static void setMaxConcurrentPerHost(int maxConcurrent) {
+		sMaxConcurrentPerHost = Math.max(0, maxConcurrent);
+	}
+
+	/**
+	 * @return 当前每个域名的最大并发数
+	 */
+	public static int getMaxConcurrentPerHost() {
+		int maxConcurrent = sMaxConcurrentPerHost;
+		if (maxConcurrent > 0) {
+			return maxConcurrent;
+		}
+		return NetworkProfile.getCurrent().getMaxConcurrentPerHost();
+	}
+
+	/**
+	 * 设置熔断器参数
+	 * 
+	 * @param failureThreshold
+	 *            熔断的连续失败次数
+	 * @param openDuration
+	 *            熔断时间
+	 * @param halfOpenProbes
+	 *            半开状态下同时放行的探测请求数
+	 */
+	public static void setCircuitBreaker(int failureThreshold,
+			long openDuration, int halfOpenProbes) {
+		sFailureThreshold = Math.max(1, failureThreshold);
+		sOpenDuration = Math.max(0, openDuration);
+		sHalfOpenProbes = Math.max(1, halfOpenProbes);
+	}
+
+	/**
+	 * 监听网络变化，网络恢复或切换后恢复所有熔断器，之前的失败可能仅由网络中断导致
+	 * 
+	 * @param context
+	 */
+	static synchronized void observeNetwork(Context context) {
+		if (sIsNetworkObserved) {
+			return;
+		}
+		sIsNetworkObserved = true;
+
+		NetworkMonitor.getInstance(context).addOnNetworkChangedListener(
+				new OnNetworkChangedListener() {
+
+					@Override
+					public void onNetworkChanged(NetworkState oldState,
+							NetworkState newState) {
+						if (newState.isConnected()) {
+							resetAll();
+						}
+					}
+				});
+	}
+
+	/**
+	 * 恢复所有域名的熔断器
+	 */
+	public static void resetAll() {
+		for (String host : getHosts()) {
+			getHost(host).reset();
+		}
+	}
+
+	/**
+	 * 获取域名的状态，不存在时创建
+	 * 
+	 * @param host
+	 *            为null时按空字符串处理
+	 * @return
+	 */
+	public static HostState getHost(String host) {
+		if (host == null) {
+			host = "";
+		}
+		host = host.toLowerCase(Locale.US);
+		synchronized (HOSTS) {
+			HostState state = HOSTS.get(host);
+			if (state == null) {
+				state = new HostState(host);
+				HOSTS.put(host, state);
+			}
+			return state;
+		}
+	}
+
+	/**
+	 * 获取所有已记录的域名
+	 * 
+	 * @return
+	 */
+	public static List<String> getHosts() {
+		List<String> hosts;
+		synchronized (HOSTS) {
+			hosts = new ArrayList<String>(HOSTS.keySet());
+		}
+		Collections.sort(hosts);
+		return hosts;
+	}
+
+	/**
+	 * 输出文本报告
+	 * 
+	 * @return
+	 */
+	public static String dump() {
+		StringBuilder sb = new StringBuilder();
+		for (String host : getHosts()) {
+			getHost(host).dump(sb);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 单个域名的并发控制及熔断状态
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public static class HostState {
+		/** 域名 */
+		private final String mHost;
+		/** 等待并发许可的请求 */
+		private final LinkedList<Waiter> mWaiters = new LinkedList<Waiter>();
+
+		/** 正在执行的请求数 */
+		private int mActiveCount;
+		/** 熔断器状态 */
+		private BreakerState mState = BreakerState.CLOSED;
+		/** 连续失败次数 */
+		private int mConsecutiveFailures;
+		/** 熔断开始时间 */
+		private long mOpenTime;
+		/** 半开状态下正在执行的探测请求数 */
+		private int mProbeCount;
+		/** 因熔断被拒绝的请求数 */
+		private long mRejectedCount;
+		/** 因并发限制而等待的请求数 */
+		private long mQueuedCount;
+		/** 熔断次数 */
+		private long mTripCount;
+
+		/**
+		 * 构造
+		 * 
+		 * @param host
+		 */
+		private HostState(String host) {
+			mHost = host;
+		}
+
+		/**
+		 * 获取并发许可，无可用许可时将请求加入等待队列，许可释放后在指定通道中执行
+		 * 
+		 * @param runnable
+		 *            获得许可后执行
+		 * @param lane
+		 *            执行的任务调度通道
+		 * @return 立即获得许可时返回true，此时runnable不会被执行，由调用者继续处理
+		 */
+		public synchronized boolean acquire(Runnable runnable, Lane lane) {
+			if (mActiveCount < getMaxConcurrentPerHost()) {
+				mActiveCount++;
+				return true;
+			}
+			mQueuedCount++;
+			mWaiters.add(new Waiter(runnable, lane));
+			if (DEBUG) {
+				Log.d(TAG, mHost + " reach max concurrent, waiting:"
+						+ mWaiters.size());
+			}
+			return false;
+		}
+
+		/**
+		 * 尝试获取并发许可，无可用许可时不等待，用于可放弃的请求(如对冲请求)
+		 * 
+		 * @return 获得许可时返回true，需要在请求结束后调用{@link #release()}
+		 */
+		public synchronized boolean tryAcquire() {
+			if (mActiveCount < getMaxConcurrentPerHost()) {
+				mActiveCount++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * 释放并发许可，有等待中的请求时直接将许可转交给它
+		 */
+		public void release() {
+			Waiter waiter;
+			synchronized (this) {
+				waiter = mWaiters.poll();
+				if (waiter == null) {
+					mActiveCount = Math.max(0, mActiveCount - 1);
+					return;
+				}
+			}
+			PriorityScheduler.getInstance().execute(waiter.mRunnable,
+					waiter.mLane);
+		}
+
+		/**
+		 * 是否处于熔断中，用于请求开始前快速判断，不占用探测请求名额
+		 * 
+		 * @return
+		 */
+		public synchronized boolean isOpen() {
+			return mState == BreakerState.OPEN
+					&& System.currentTimeMillis() - mOpenTime < sOpenDuration;
+		}
+
+		/**
+		 * 判断是否允许发起请求，熔断时间结束后进入半开状态并占用一个探测请求名额；被拒绝时计入拒绝数。
+		 * 返回true时，需要在请求结束后调用{@link #onSuccess()}、{@link #onFailure()}或
+		 * {@link #onIgnored()}之一
+		 * 
+		 * @return
+		 */
+		public synchronized boolean allowRequest() {
+			if (mState == BreakerState.OPEN) {
+				if (System.currentTimeMillis() - mOpenTime < sOpenDuration) {
+					mRejectedCount++;
+					return false;
+				}
+				if (DEBUG) {
+					Log.d(TAG, mHost + " circuit half open");
+				}
+				mState = BreakerState.HALF_OPEN;
+				mProbeCount = 0;
+			}
+			if (mState == BreakerState.HALF_OPEN) {
+				if (mProbeCount >= sHalfOpenProbes) {
+					mRejectedCount++;
+					return false;
+				}
+				mProbeCount++;
+			}
+			return true;
+		}
+
+		/**
+		 * 拒绝一次请求，计入拒绝数
+		 */
+		public synchronized void onRejected() {
+			mRejectedCount++;
+		}
+
+		/**
+		 * 请求成功，半开状态下恢复正常
+		 */
+		public synchronized void onSuccess() {
+			mConsecutiveFailures = 0;
+			if (mState != BreakerState.CLOSED) {
+				if (DEBUG) {
+					Log.d(TAG, mHost + " circuit closed");
+				}
+				mState = BreakerState.CLOSED;
+				mProbeCount = 0;
+			}
+		}
+
+		/**
+		 * 请求失败(包括超时)，达到阈值或半开状态下探测失败时熔断
+		 */
+		public synchronized void onFailure() {
+			mConsecutiveFailures++;
+			if (mState == BreakerState.HALF_OPEN
+					|| (mState == BreakerState.CLOSED && mConsecutiveFailures >= sFailureThreshold)) {
+				if (DEBUG) {
+					Log.d(TAG, mHost + " circuit open after "
+							+ mConsecutiveFailures + " failures");
+				}
+				mState = BreakerState.OPEN;
+				mOpenTime = System.currentTimeMillis();
+				mProbeCount = 0;
+				mTripCount++;
+			}
+		}
+
+		/**
+		 * 请求结果不计入熔断统计(例如请求被撤销)，归还探测请求名额
+		 */
+		public synchronized void onIgnored() {
+			if (mState == BreakerState.HALF_OPEN && mProbeCount > 0) {
+				mProbeCount--;
+			}
+		}
+
+		/**
+		 * 手动恢复正常状态
+		 */
+		public synchronized void reset() {
+			mState = BreakerState.CLOSED;
+			mConsecutiveFailures = 0;
+			mProbeCount = 0;
+		}
+
+		/**
+		 * @return 域名
+		 */
+		public String getHost() {
+			return mHost;
+		}
+
+		/**
+		 * @return 熔断器状态，熔断时间已结束时返回{@link BreakerState#HALF_OPEN}
+		 */
+		public synchronized BreakerState getState() {
+			if (mState == BreakerState.OPEN && !isOpen()) {
+				return BreakerState.HALF_OPEN;
+			}
+			return mState;
+		}
+
+		/**
+		 * @return 正在执行的请求数
+		 */
+		public synchronized int getActiveCount() {
+			return mActiveCount;
+		}
+
+		/**
+		 * @return 等待并发许可的请求数
+		 */
+		public synchronized int getWaitingCount() {
+			return mWaiters.size();
+		}
+
+		/**
+		 * @return 连续失败次数
+		 */
+		public synchronized int getConsecutiveFailures() {
+			return mConsecutiveFailures;
+		}
+
+		/**
+		 * @return 因熔断被拒绝的请求数
+		 */
+		public synchronized long getRejectedCount() {
+			return mRejectedCount;
+		}
+
+		/**
+		 * @return 因并发限制而等待的请求数
+		 */
+		public synchronized long getQueuedCount() {
+			return mQueuedCount;
+		}
+
+		/**
+		 * @return 熔断次数
+		 */
+		public synchronized long getTripCount() {
+			return mTripCount;
+		}
+
+		/**
+		 * 输出文本报告
+		 * 
+		 * @param sb
+		 */
+		private synchronized void dump(StringBuilder sb) {
+			sb.append(mHost).append('\n');
+			sb.append(String.format(Locale.US,
+					"  state=%s failures=%d trips=%d rejected=%d\n",
+					getState().name().toLowerCase(Locale.US),
+					mConsecutiveFailures, mTripCount, mRejectedCount));
+			sb.append(String.format(Locale.US,
+					"  active=%d waiting=%d queued=%d\n", mActiveCount,
+					mWaiters.size(), mQueuedCount));
+		}
+	}
+
+	/**
+	 * 等待并发许可的请求
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Waiter {
+		/** 获得许可后执行 */
+		private final Runnable mRunnable;
+		/** 执行的任务调度通道 */
+		private final Lane mLane;
+
+		/**
+		 * 构造
+		 * 
+		 * @param runnable
+		 * @param lane
+		 */
+		private Waiter(Runnable runnable, Lane lane) {
+			mRunnable = runnable;
+			mLane = lane;
+		}
+	}
+}
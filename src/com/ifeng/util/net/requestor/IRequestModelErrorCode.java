@@ -18,4 +18,16 @@ public interface IRequestModelErrorCode extends IModelErrorCode {
 
 	/** 服务器返回错误 2003 */
 	public static final int ERROR_CODE_SERVICE_ERROR = 2003;
+
+	/** 仅使用缓存，但缓存不存在 2004 */
+	public static final int ERROR_CODE_NO_CACHE = 2004;
+
+	/** 服务器连续访问失败，已熔断，请求被拒绝 2005 */
+	public static final int ERROR_CODE_CIRCUIT_OPEN = 2005;
+
+	/** 当前网络较差，预取请求被跳过 2006 */
+	public static final int ERROR_CODE_PREFETCH_DISABLED = 2006;
+
+	/** 无网络，请求已存入离线队列，网络恢复后重新提交 2007 */
+	public static final int ERROR_CODE_QUEUED_OFFLINE = 2007;
 }
@@ -0,0 +1,157 @@
+package com.ifeng.util.net.requestor;
+
+/**
+ * 固定内存、对数分桶的耗时直方图(与HdrHistogram的分桶方式相同)：小于{@link #SUB_BUCKET_COUNT}
+ * 的值精确记录，更大的值按2的幂分段，每段再均分为{@link #SUB_BUCKET_COUNT}/2个子桶，相对误差不超过
+ * 2/{@link #SUB_BUCKET_COUNT}。可在不保存原始数据的情况下计算任意百分位。
+ * 
+ * @author Calvin
+ * 
+ */
+public class LatencyHistogram {
+
+	/** 每段子桶数量，决定精度 */
+	private static final int SUB_BUCKET_COUNT = 32;
+	/** 子桶数量的位数 */
+	private static final int SUB_BUCKET_BITS = 5;
+	/** 每段实际使用的子桶数量 */
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+	/** 可记录的最大值，超出时按最大值记录 */
+	private static final long MAX_VALUE = (1L << 24) - 1;
+	/** 分段数量 */
+	private static final int BUCKET_COUNT = 24 - SUB_BUCKET_BITS + 1;
+
+	/** 各桶的计数 */
+	private final long[] mCounts = new long[SUB_BUCKET_COUNT
+			+ (BUCKET_COUNT - 1) * SUB_BUCKET_HALF_COUNT];
+	/** 记录总数 */
+	private long mTotalCount;
+	/** 记录值总和 */
+	private long mTotalValue;
+	/** 最小值 */
+	private long mMin = Long.MAX_VALUE;
+	/** 最大值 */
+	private long mMax;
+
+	/**
+	 * 记录一个值，负数按0记录
+	 * 
+	 * @param value
+	 */
+	public synchronized void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		mCounts[getIndex(value)]++;
+		mTotalCount++;
+		mTotalValue += value;
+		if (value < mMin) {
+			mMin = value;
+		}
+		if (value > mMax) {
+			mMax = value;
+		}
+	}
+
+	/**
+	 * 获取百分位对应的值
+	 * 
+	 * @param percentile
+	 *            0 - 100
+	 * @return 无记录时返回0
+	 */
+	public synchronized long getValueAtPercentile(double percentile) {
+		if (mTotalCount == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(Math.min(100, Math.max(0, percentile))
+				/ 100 * mTotalCount);
+		if (target < 1) {
+			target = 1;
+		}
+		long count = 0;
+		for (int i = 0; i < mCounts.length; i++) {
+			count += mCounts[i];
+			if (count >= target) {
+				return Math.min(getHighestValue(i), mMax);
+			}
+		}
+		return mMax;
+	}
+
+	/**
+	 * @return 记录总数
+	 */
+	public synchronized long getCount() {
+		return mTotalCount;
+	}
+
+	/**
+	 * @return 平均值
+	 */
+	public synchronized long getMean() {
+		return mTotalCount == 0 ? 0 : mTotalValue / mTotalCount;
+	}
+
+	/**
+	 * @return 最小值
+	 */
+	public synchronized long getMin() {
+		return mTotalCount == 0 ? 0 : mMin;
+	}
+
+	/**
+	 * @return 最大值
+	 */
+	public synchronized long getMax() {
+		return mMax;
+	}
+
+	/**
+	 * 清空记录
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < mCounts.length; i++) {
+			mCounts[i] = 0;
+		}
+		mTotalCount = 0;
+		mTotalValue = 0;
+		mMin = Long.MAX_VALUE;
+		mMax = 0;
+	}
+
+	/**
+	 * 计算值所在的桶
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		// value >> shift 落在[SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT)区间
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+		int subIndex = (int) (value >> shift) - SUB_BUCKET_HALF_COUNT;
+		return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT
+				+ subIndex;
+	}
+
+	/**
+	 * 计算桶所能容纳的最大值
+	 * 
+	 * @param index
+	 * @return
+	 */
+	private static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+		long subValue = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT
+				+ SUB_BUCKET_HALF_COUNT;
+		return ((subValue + 1) << shift) - 1;
+	}
+}
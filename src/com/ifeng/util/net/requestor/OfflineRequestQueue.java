@@ -0,0 +1,875 @@
+package com.ifeng.util.net.requestor;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.model.PriorityScheduler.Lane;
+import com.ifeng.util.net.NetworkMonitor;
+import com.ifeng.util.net.NetworkMonitor.NetworkState;
+import com.ifeng.util.net.NetworkMonitor.OnNetworkChangedListener;
+import com.ifeng.util.net.requestor.RequestTask.OnRequestTaskListener;
+import com.ifeng.util.net.requestor.WebRequestTask.RequestType;
+
+/**
+ * 持久化的离线请求队列。无网络时提交的写操作(评论、收藏等)存入数据库，相同标识(key)的操作仅保留最新的一次；
+ * 网络恢复后按提交顺序分批重新提交，失败时按指数退避稍后再试，结果按标识回调给已注册的
+ * {@link OnOfflineRequestListener}。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class OfflineRequestQueue {
+
+	/** log tag. */
+	private static final String TAG = OfflineRequestQueue.class
+			.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 数据库名 */
+	private static final String DB_NAME = "offline_requests.db";
+	/** 数据库版本 */
+	private static final int DB_VERSION = 1;
+	/** 表名 */
+	private static final String TABLE_NAME = "requests";
+
+	/** 列：id，即提交顺序 */
+	private static final String COLUMN_ID = "_id";
+	/** 列：操作标识 */
+	private static final String COLUMN_KEY = "key";
+	/** 列：请求地址 */
+	private static final String COLUMN_URL = "url";
+	/** 列：提交方式 */
+	private static final String COLUMN_REQUEST_TYPE = "request_type";
+	/** 列：请求头 */
+	private static final String COLUMN_HEADERS = "headers";
+	/** 列：请求参数 */
+	private static final String COLUMN_PARAMS = "params";
+	/** 列：入队时间 */
+	private static final String COLUMN_CREATED = "created";
+	/** 列：已提交次数 */
+	private static final String COLUMN_ATTEMPTS = "attempts";
+	/** 列：下次可提交的时间 */
+	private static final String COLUMN_NEXT_ATTEMPT = "next_attempt";
+
+	/** 每批提交的请求数 */
+	private static final int BATCH_SIZE = 10;
+	/** 最多提交次数，超出后放弃并回调失败 */
+	private static final int MAX_ATTEMPTS = 8;
+	/** 请求的有效期，超出后放弃并回调失败 */
+	private static final long EXPIRE_TIME = 7 * 24 * 60 * 60 * 1000L;
+	/** 单次提交等待结果的最长时间 */
+	private static final long REPLAY_TIMEOUT = 2 * 60 * 1000L;
+	/** 提交失败后的退避策略 */
+	private static final RetryPolicy BACKOFF_POLICY = new RetryPolicy();
+
+	static {
+		BACKOFF_POLICY.baseDelay = 5 * 1000L;
+		BACKOFF_POLICY.maxDelay = 30 * 60 * 1000L;
+	}
+
+	/** 单例 */
+	private static OfflineRequestQueue sInstance;
+
+	/** context */
+	private final Context mContext;
+	/** 数据库 */
+	private final SQLiteOpenHelper mOpenHelper;
+	/** 主线程Handler */
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+	/** 按操作标识注册的结果回调 */
+	private final HashMap<String, List<OnOfflineRequestListener>> mListeners = new HashMap<String, List<OnOfflineRequestListener>>();
+	/** 尚未写入数据库的请求，按入队顺序排列 */
+	private final LinkedHashMap<String, ContentValues> mPendingInserts = new LinkedHashMap<String, ContentValues>();
+	/** 写入锁，保证待写入请求按入队顺序写入，且写入期间不被移除或查询 */
+	private final Object mWriteLock = new Object();
+
+	/** 是否已经安排了写入任务 */
+	private boolean mIsWriteScheduled;
+
+	/** 已安排的提交任务 */
+	private Future<?> mDrainFuture;
+	/** 是否正在提交 */
+	private boolean mIsDraining;
+	/** 提交期间是否再次请求了提交 */
+	private boolean mIsDrainRequested;
+
+	/**
+	 * 构造，监听网络恢复，并提交上次进程遗留的请求
+	 * 
+	 * @param context
+	 */
+	private OfflineRequestQueue(Context context) {
+		mContext = context.getApplicationContext();
+		mOpenHelper = new DatabaseHelper(mContext);
+		NetworkMonitor.getInstance(mContext).addOnNetworkChangedListener(
+				new OnNetworkChangedListener() {
+
+					@Override
+					public void onNetworkChanged(NetworkState oldState,
+							NetworkState newState) {
+						if (newState.isConnected()) {
+							drain();
+						}
+					}
+				});
+		drain();
+	}
+
+	/**
+	 * 获取单例
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static synchronized OfflineRequestQueue getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new OfflineRequestQueue(context);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * 将请求存入队列，已存在相同标识的请求时以本次请求替换，并排在队尾。数据库写入在后台线程进行，可在主线程调用
+	 * 
+	 * @param key
+	 *            操作标识，例如"favorite:" + 文章id
+	 * @param url
+	 *            请求地址
+	 * @param requestType
+	 *            提交方式
+	 * @param headers
+	 *            请求头
+	 * @param params
+	 *            请求参数
+	 */
+	public void enqueue(String key, String url, RequestType requestType,
+			List<NameValuePair> headers, List<NameValuePair> params) {
+		if (key == null || url == null) {
+			throw new IllegalArgumentException("key and url must not be null");
+		}
+
+		ContentValues values = new ContentValues();
+		values.put(COLUMN_KEY, key);
+		values.put(COLUMN_URL, url);
+		values.put(COLUMN_REQUEST_TYPE,
+				(requestType == null ? RequestType.POST : requestType).name());
+		values.put(COLUMN_HEADERS, encodePairs(headers));
+		values.put(COLUMN_PARAMS, encodePairs(params));
+		values.put(COLUMN_CREATED, System.currentTimeMillis());
+		values.put(COLUMN_ATTEMPTS, 0);
+		values.put(COLUMN_NEXT_ATTEMPT, 0);
+
+		if (DEBUG) {
+			Log.d(TAG, "request queued : " + key);
+		}
+		synchronized (mPendingInserts) {
+			// 重新放入以保持入队顺序
+			mPendingInserts.remove(key);
+			mPendingInserts.put(key, values);
+			if (mIsWriteScheduled) {
+				return;
+			}
+			mIsWriteScheduled = true;
+		}
+		PriorityScheduler.getInstance().execute(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (mPendingInserts) {
+					mIsWriteScheduled = false;
+				}
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				writePending();
+				drain();
+			}
+		}, Lane.BACKGROUND);
+	}
+
+	/**
+	 * 按入队顺序将尚未写入的请求写入数据库
+	 */
+	private void writePending() {
+		synchronized (mWriteLock) {
+			while (true) {
+				ContentValues values;
+				synchronized (mPendingInserts) {
+					Iterator<ContentValues> iterator = mPendingInserts
+							.values().iterator();
+					if (!iterator.hasNext()) {
+						return;
+					}
+					values = iterator.next();
+					iterator.remove();
+				}
+				try {
+					mOpenHelper.getWritableDatabase().replace(TABLE_NAME,
+							null, values);
+				} catch (Exception e) {
+					if (DEBUG) {
+						Log.e(TAG, e);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 移除队列中尚未提交的请求
+	 * 
+	 * @param key
+	 *            操作标识
+	 * @return 是否存在并已移除
+	 */
+	public boolean remove(String key) {
+		synchronized (mWriteLock) {
+			boolean isPending;
+			synchronized (mPendingInserts) {
+				isPending = mPendingInserts.remove(key) != null;
+			}
+			try {
+				return mOpenHelper.getWritableDatabase().delete(TABLE_NAME,
+						COLUMN_KEY + "=?", new String[] { key }) > 0
+						|| isPending;
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return isPending;
+			}
+		}
+	}
+
+	/**
+	 * 队列中是否存在尚未提交的请求
+	 * 
+	 * @param key
+	 *            操作标识
+	 * @return
+	 */
+	public boolean contains(String key) {
+		synchronized (mPendingInserts) {
+			if (mPendingInserts.containsKey(key)) {
+				return true;
+			}
+		}
+		synchronized (mWriteLock) {
+			Cursor cursor = null;
+			try {
+				cursor = mOpenHelper.getReadableDatabase().query(TABLE_NAME,
+						new String[] { COLUMN_ID }, COLUMN_KEY + "=?",
+						new String[] { key }, null, null, null);
+				return cursor.moveToFirst();
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return false;
+			} finally {
+				if (cursor != null) {
+					cursor.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 获取队列中尚未提交的请求数，会先写入尚未写入数据库的请求
+	 * 
+	 * @return
+	 */
+	public int size() {
+		writePending();
+		Cursor cursor = null;
+		try {
+			cursor = mOpenHelper.getReadableDatabase().rawQuery(
+					"SELECT COUNT(*) FROM " + TABLE_NAME, null);
+			return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+			return 0;
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * 注册操作标识的结果回调，回调在主线程中进行。进程重启后需要重新注册，未注册回调的结果将被丢弃
+	 * 
+	 * @param key
+	 *            操作标识
+	 * @param listener
+	 */
+	public void addListener(String key, OnOfflineRequestListener listener) {
+		synchronized (mListeners) {
+			List<OnOfflineRequestListener> listeners = mListeners.get(key);
+			if (listeners == null) {
+				listeners = new ArrayList<OnOfflineRequestListener>();
+				mListeners.put(key, listeners);
+			}
+			if (!listeners.contains(listener)) {
+				listeners.add(listener);
+			}
+		}
+	}
+
+	/**
+	 * 移除操作标识的结果回调
+	 * 
+	 * @param key
+	 *            操作标识
+	 * @param listener
+	 */
+	public void removeListener(String key, OnOfflineRequestListener listener) {
+		synchronized (mListeners) {
+			List<OnOfflineRequestListener> listeners = mListeners.get(key);
+			if (listeners != null) {
+				listeners.remove(listener);
+				if (listeners.isEmpty()) {
+					mListeners.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 有网络时立即开始提交队列中的请求
+	 */
+	public void drain() {
+		scheduleDrain(0);
+	}
+
+	/**
+	 * 安排提交任务，提交期间再次请求时在本次提交结束后重新检查队列
+	 * 
+	 * @param delay
+	 *            延时
+	 */
+	private synchronized void scheduleDrain(long delay) {
+		if (mIsDraining) {
+			mIsDrainRequested = true;
+			return;
+		}
+		if (mDrainFuture != null && !mDrainFuture.isDone()) {
+			mDrainFuture.cancel(false);
+		}
+		mDrainFuture = PriorityScheduler.getInstance().schedule(
+				new Runnable() {
+
+					@Override
+					public void run() {
+						synchronized (OfflineRequestQueue.this) {
+							if (mIsDraining) {
+								mIsDrainRequested = true;
+								return;
+							}
+							mIsDraining = true;
+							mIsDrainRequested = false;
+						}
+						long nextDelay = -1;
+						try {
+							Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+							nextDelay = drainInternal();
+						} catch (Exception e) {
+							if (DEBUG) {
+								Log.e(TAG, e);
+							}
+						} finally {
+							synchronized (OfflineRequestQueue.this) {
+								mIsDraining = false;
+								if (mIsDrainRequested) {
+									nextDelay = 0;
+								}
+							}
+							if (nextDelay >= 0) {
+								scheduleDrain(nextDelay);
+							}
+						}
+					}
+				}, Lane.BACKGROUND, delay);
+	}
+
+	/**
+	 * 分批提交已到提交时间的请求，直到队列为空、网络断开或出现网络错误
+	 * 
+	 * @return 下次提交前的等待时间，无需再次提交时返回-1
+	 */
+	private long drainInternal() {
+		writePending();
+		NetworkMonitor monitor = NetworkMonitor.getInstance(mContext);
+		while (monitor.isConnected()) {
+			long now = System.currentTimeMillis();
+			removeExpired(now);
+
+			List<Entry> batch = loadReady(now);
+			if (batch.isEmpty()) {
+				long nextAttempt = getNextAttemptTime();
+				return nextAttempt < 0 ? -1 : Math.max(0, nextAttempt - now);
+			}
+
+			if (DEBUG) {
+				Log.d(TAG, "replay " + batch.size() + " queued requests");
+			}
+			for (Entry entry : batch) {
+				if (!replay(entry) && !monitor.isConnected()) {
+					// 网络已断开，等待网络恢复后再提交
+					return -1;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 重新提交一个请求，并处理结果
+	 * 
+	 * @param entry
+	 * @return 是否提交成功
+	 */
+	private boolean replay(final Entry entry) {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final String[] result = new String[1];
+		final int[] errorCode = new int[] { IRequestModelErrorCode.ERROR_CODE_NET_FAILED };
+		WebRequestTask task = new WebRequestTask(mContext, entry.mUrl,
+				entry.mHeaders, entry.mParams,
+				Process.THREAD_PRIORITY_BACKGROUND,
+				new OnRequestTaskListener() {
+
+					@Override
+					public void onSuccess(String data) {
+						result[0] = data;
+						errorCode[0] = 0;
+						latch.countDown();
+					}
+
+					@Override
+					public void onFailed(int code) {
+						errorCode[0] = code;
+						latch.countDown();
+					}
+
+					@Override
+					public void onProgress() {
+					}
+				});
+		task.setRequestType(entry.mRequestType);
+		// 重试由队列的退避策略负责
+		task.setRetryPolicy(RetryPolicy.newNoRetryPolicy());
+		task.setLane(Lane.BACKGROUND);
+		task.run();
+
+		try {
+			if (!latch.await(REPLAY_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				task.cancel();
+			}
+		} catch (InterruptedException e) {
+			task.cancel();
+		}
+
+		if (latch.getCount() == 0 && errorCode[0] == 0) {
+			if (DEBUG) {
+				Log.d(TAG, "queued request successed : " + entry.mKey);
+			}
+			delete(entry.mId);
+			dispatchSuccess(entry.mKey, result[0]);
+			return true;
+		}
+
+		int attempts = entry.mAttempts + 1;
+		if (errorCode[0] == IRequestModelErrorCode.ERROR_CODE_NO_URL
+				|| attempts >= MAX_ATTEMPTS) {
+			if (DEBUG) {
+				Log.d(TAG, "queued request dropped : " + entry.mKey);
+			}
+			delete(entry.mId);
+			dispatchFailed(entry.mKey, errorCode[0]);
+		} else {
+			long nextAttempt = System.currentTimeMillis()
+					+ BACKOFF_POLICY.getBackoffDelay(attempts - 1);
+			if (DEBUG) {
+				Log.d(TAG, "queued request failed : " + entry.mKey
+						+ " , attempts " + attempts);
+			}
+			ContentValues values = new ContentValues();
+			values.put(COLUMN_ATTEMPTS, attempts);
+			values.put(COLUMN_NEXT_ATTEMPT, nextAttempt);
+			try {
+				mOpenHelper.getWritableDatabase().update(TABLE_NAME, values,
+						COLUMN_ID + "=?",
+						new String[] { String.valueOf(entry.mId) });
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 读取一批已到提交时间的请求，按提交顺序排列
+	 * 
+	 * @param now
+	 * @return
+	 */
+	private List<Entry> loadReady(long now) {
+		List<Entry> entries = new LinkedList<Entry>();
+		Cursor cursor = null;
+		try {
+			cursor = mOpenHelper.getReadableDatabase().query(TABLE_NAME, null,
+					COLUMN_NEXT_ATTEMPT + "<=?",
+					new String[] { String.valueOf(now) }, null, null,
+					COLUMN_ID + " ASC", String.valueOf(BATCH_SIZE));
+			while (cursor.moveToNext()) {
+				Entry entry = new Entry();
+				entry.mId = cursor.getLong(cursor
+						.getColumnIndexOrThrow(COLUMN_ID));
+				entry.mKey = cursor.getString(cursor
+						.getColumnIndexOrThrow(COLUMN_KEY));
+				entry.mUrl = cursor.getString(cursor
+						.getColumnIndexOrThrow(COLUMN_URL));
+				try {
+					entry.mRequestType = RequestType.valueOf(cursor
+							.getString(cursor
+									.getColumnIndexOrThrow(COLUMN_REQUEST_TYPE)));
+				} catch (IllegalArgumentException e) {
+					entry.mRequestType = RequestType.POST;
+				}
+				entry.mHeaders = decodePairs(cursor.getString(cursor
+						.getColumnIndexOrThrow(COLUMN_HEADERS)));
+				entry.mParams = decodePairs(cursor.getString(cursor
+						.getColumnIndexOrThrow(COLUMN_PARAMS)));
+				entry.mAttempts = cursor.getInt(cursor
+						.getColumnIndexOrThrow(COLUMN_ATTEMPTS));
+				entries.add(entry);
+			}
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * @return 最近一个请求的下次提交时间，队列为空时返回-1
+	 */
+	private long getNextAttemptTime() {
+		Cursor cursor = null;
+		try {
+			cursor = mOpenHelper.getReadableDatabase().rawQuery(
+					"SELECT MIN(" + COLUMN_NEXT_ATTEMPT + ") FROM "
+							+ TABLE_NAME, null);
+			if (cursor.moveToFirst() && !cursor.isNull(0)) {
+				return cursor.getLong(0);
+			}
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 放弃超出有效期的请求，并回调失败
+	 * 
+	 * @param now
+	 */
+	private void removeExpired(long now) {
+		String[] selectionArgs = new String[] { String.valueOf(now
+				- EXPIRE_TIME) };
+		List<String> keys = new LinkedList<String>();
+		Cursor cursor = null;
+		try {
+			SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+			cursor = db.query(TABLE_NAME, new String[] { COLUMN_KEY },
+					COLUMN_CREATED + "<?", selectionArgs, null, null, null);
+			while (cursor.moveToNext()) {
+				keys.add(cursor.getString(0));
+			}
+			if (!keys.isEmpty()) {
+				db.delete(TABLE_NAME, COLUMN_CREATED + "<?", selectionArgs);
+			}
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+		for (String key : keys) {
+			dispatchFailed(key, IRequestModelErrorCode.ERROR_CODE_NET_FAILED);
+		}
+	}
+
+	/**
+	 * 删除请求，按id删除，避免误删提交期间以相同标识重新入队的请求
+	 * 
+	 * @param id
+	 */
+	private void delete(long id) {
+		try {
+			mOpenHelper.getWritableDatabase().delete(TABLE_NAME,
+					COLUMN_ID + "=?", new String[] { String.valueOf(id) });
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+		}
+	}
+
+	/**
+	 * 回调提交成功
+	 * 
+	 * @param key
+	 * @param result
+	 */
+	private void dispatchSuccess(final String key, final String result) {
+		final OnOfflineRequestListener[] listeners = getListeners(key);
+		if (listeners == null) {
+			return;
+		}
+		mHandler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				for (OnOfflineRequestListener listener : listeners) {
+					listener.onSuccess(key, result);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 回调放弃提交
+	 * 
+	 * @param key
+	 * @param errorCode
+	 */
+	private void dispatchFailed(final String key, final int errorCode) {
+		final OnOfflineRequestListener[] listeners = getListeners(key);
+		if (listeners == null) {
+			return;
+		}
+		mHandler.post(new Runnable() {
+
+			@Override
+			public void run() {
+				for (OnOfflineRequestListener listener : listeners) {
+					listener.onFailed(key, errorCode);
+				}
+			}
+		});
+	}
+
+	/**
+	 * 获取操作标识的结果回调
+	 * 
+	 * @param key
+	 * @return 未注册时返回null
+	 */
+	private OnOfflineRequestListener[] getListeners(String key) {
+		synchronized (mListeners) {
+			List<OnOfflineRequestListener> listeners = mListeners.get(key);
+			if (listeners == null || listeners.isEmpty()) {
+				if (DEBUG) {
+					Log.d(TAG, "no listener for queued request : " + key);
+				}
+				return null;
+			}
+			return listeners.toArray(new OnOfflineRequestListener[listeners
+					.size()]);
+		}
+	}
+
+	/**
+	 * 将参数编码为字符串
+	 * 
+	 * @param pairs
+	 * @return pairs为null时返回null
+	 */
+	private static String encodePairs(List<NameValuePair> pairs) {
+		if (pairs == null) {
+			return null;
+		}
+		StringBuilder sb = new StringBuilder();
+		try {
+			for (NameValuePair pair : pairs) {
+				if (sb.length() > 0) {
+					sb.append('&');
+				}
+				sb.append(URLEncoder.encode(pair.getName(), "UTF-8"));
+				if (pair.getValue() != null) {
+					sb.append('=').append(
+							URLEncoder.encode(pair.getValue(), "UTF-8"));
+				}
+			}
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 将字符串解码为参数
+	 * 
+	 * @param encoded
+	 * @return encoded为null时返回null
+	 */
+	private static List<NameValuePair> decodePairs(String encoded) {
+		if (encoded == null) {
+			return null;
+		}
+		List<NameValuePair> pairs = new LinkedList<NameValuePair>();
+		if (encoded.length() == 0) {
+			return pairs;
+		}
+		try {
+			for (String pair : encoded.split("&")) {
+				int index = pair.indexOf('=');
+				if (index < 0) {
+					pairs.add(new BasicNameValuePair(URLDecoder.decode(pair,
+							"UTF-8"), null));
+				} else {
+					pairs.add(new BasicNameValuePair(URLDecoder.decode(
+							pair.substring(0, index), "UTF-8"), URLDecoder
+							.decode(pair.substring(index + 1), "UTF-8")));
+				}
+			}
+		} catch (Exception e) {
+			if (DEBUG) {
+				Log.e(TAG, e);
+			}
+		}
+		return pairs;
+	}
+
+	/**
+	 * 队列中的请求
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Entry {
+		/** id */
+		private long mId;
+		/** 操作标识 */
+		private String mKey;
+		/** 请求地址 */
+		private String mUrl;
+		/** 提交方式 */
+		private RequestType mRequestType;
+		/** 请求头 */
+		private List<NameValuePair> mHeaders;
+		/** 请求参数 */
+		private List<NameValuePair> mParams;
+		/** 已提交次数 */
+		private int mAttempts;
+	}
+
+	/**
+	 * 离线队列数据库
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static final class DatabaseHelper extends SQLiteOpenHelper {
+
+		/**
+		 * 构造
+		 * 
+		 * @param context
+		 */
+		public DatabaseHelper(Context context) {
+			super(context, DB_NAME, null, DB_VERSION);
+		}
+
+		@Override
+		public void onCreate(SQLiteDatabase db) {
+			db.execSQL("CREATE TABLE " + TABLE_NAME + " (" + COLUMN_ID
+					+ " INTEGER PRIMARY KEY AUTOINCREMENT, " + COLUMN_KEY
+					+ " TEXT NOT NULL UNIQUE, " + COLUMN_URL
+					+ " TEXT NOT NULL, " + COLUMN_REQUEST_TYPE + " TEXT, "
+					+ COLUMN_HEADERS + " TEXT, " + COLUMN_PARAMS + " TEXT, "
+					+ COLUMN_CREATED + " INTEGER, " + COLUMN_ATTEMPTS
+					+ " INTEGER, " + COLUMN_NEXT_ATTEMPT + " INTEGER);");
+		}
+
+		@Override
+		public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+			db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+			onCreate(db);
+		}
+	}
+
+	/**
+	 * 离线请求的结果回调
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public interface OnOfflineRequestListener {
+
+		/**
+		 * 请求已提交成功
+		 * 
+		 * @param key
+		 *            操作标识
+		 * @param result
+		 *            服务器返回的数据
+		 */
+		void onSuccess(String key, String result);
+
+		/**
+		 * 请求多次提交失败或已过期，已从队列中放弃
+		 * 
+		 * @param key
+		 *            操作标识
+		 * @param errorCode
+		 *            {@link IRequestModelErrorCode}错误码
+		 */
+		void onFailed(String key, int errorCode);
+	}
+}
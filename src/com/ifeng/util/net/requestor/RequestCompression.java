@@ -0,0 +1,161 @@
+package com.ifeng.util.net.requestor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.entity.ByteArrayEntity;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.ByteArrayPool;
+import com.ifeng.util.PooledByteArrayOutputStream;
+import com.ifeng.util.logging.Log;
+
+/**
+ * 请求数据的gzip压缩，以Content-Encoding: gzip提交超过一定大小的请求数据。按域名记录服务器是否支持，
+ * 服务器返回415时标记为不支持并改为提交未压缩的数据，一段时间后重新尝试。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class RequestCompression {
+
+	/** log tag. */
+	private static final String TAG = RequestCompression.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 默认进行压缩的最小数据大小 */
+	public static final int DEFAULT_MIN_SIZE = 1024;
+
+	/** 不支持压缩的记录的有效期，超出后重新尝试压缩 */
+	private static final long UNSUPPORTED_EXPIRE_TIME = 24 * 60 * 60 * 1000L;
+
+	/** 压缩编码 */
+	private static final String ENCODING_GZIP = "gzip";
+
+	/** 不支持压缩的域名及其记录时间 */
+	private static final HashMap<String, Long> UNSUPPORTED_HOSTS = new HashMap<String, Long>();
+
+	/** 进行压缩的最小数据大小 */
+	private static volatile int sMinSize = DEFAULT_MIN_SIZE;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private RequestCompression() {
+	}
+
+	/**
+	 * 设置进行压缩的最小数据大小，较小的数据压缩后收益有限
+	 * 
+	 * @param minSize
+	 */
+	public static void setMinSize(int minSize) {
+		sMinSize = Math.max(0, minSize);
+	}
+
+	/**
+	 * 域名是否支持压缩的请求数据
+	 * 
+	 * @param host
+	 * @return
+	 */
+	public static boolean isSupported(String host) {
+		if (host == null) {
+			return false;
+		}
+		host = host.toLowerCase(Locale.US);
+		synchronized (UNSUPPORTED_HOSTS) {
+			Long time = UNSUPPORTED_HOSTS.get(host);
+			if (time == null) {
+				return true;
+			}
+			if (System.currentTimeMillis() - time > UNSUPPORTED_EXPIRE_TIME) {
+				UNSUPPORTED_HOSTS.remove(host);
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 标记域名不支持压缩的请求数据
+	 * 
+	 * @param host
+	 */
+	static void markUnsupported(String host) {
+		if (host == null) {
+			return;
+		}
+		if (DEBUG) {
+			Log.d(TAG, host + " does not support gzip request body");
+		}
+		synchronized (UNSUPPORTED_HOSTS) {
+			UNSUPPORTED_HOSTS.put(host.toLowerCase(Locale.US),
+					System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * 压缩请求数据
+	 * 
+	 * @param entity
+	 * @return 数据过小或压缩后未变小时返回null
+	 * @throws IOException
+	 */
+	static HttpEntity compress(HttpEntity entity) throws IOException {
+		long length = entity.getContentLength();
+		if (length < sMinSize || !entity.isRepeatable()) {
+			return null;
+		}
+
+		PooledByteArrayOutputStream out = new PooledByteArrayOutputStream(
+				(int) Math.min(length, ByteArrayPool.MAX_BUFFER_SIZE));
+		try {
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			entity.writeTo(gzip);
+			// 不能调用close，否则将一并归还缓冲区
+			gzip.finish();
+			if (out.size() >= length) {
+				return null;
+			}
+
+			ByteArrayEntity gzipEntity = new ByteArrayEntity(out.toByteArray());
+			gzipEntity.setContentType(entity.getContentType());
+			gzipEntity.setContentEncoding(ENCODING_GZIP);
+			if (DEBUG) {
+				Log.d(TAG, "compress request body " + length + " -> "
+						+ out.size());
+			}
+			return gzipEntity;
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * 请求数据是否经过压缩
+	 * 
+	 * @param request
+	 * @return
+	 */
+	static boolean isCompressed(HttpRequest request) {
+		if (!(request instanceof HttpEntityEnclosingRequest)) {
+			return false;
+		}
+		HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+		if (entity == null) {
+			return false;
+		}
+		Header encoding = entity.getContentEncoding();
+		return encoding != null
+				&& ENCODING_GZIP.equalsIgnoreCase(encoding.getValue());
+	}
+}
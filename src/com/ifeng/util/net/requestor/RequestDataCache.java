@@ -1,14 +1,14 @@
 package com.ifeng.util.net.requestor;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Properties;
 
 import android.annotation.SuppressLint;
@@ -16,11 +16,18 @@ import android.content.Context;
 import android.os.Environment;
 
 import com.ifeng.BaseApplicaion;
+import com.ifeng.util.ByteArrayPool;
+import com.ifeng.util.PooledByteArrayOutputStream;
 import com.ifeng.util.SdkVersionUtils;
+import com.ifeng.util.Utility;
+import com.ifeng.util.imagecache.DiskLruCache;
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.parser.AbstractIFItem;
 
 /**
- * cache 管理工具类
+ * cache 管理工具类。同一缓存模块的数据保存在以{@link DiskLruCache}日志索引的目录中，进程内共享同一索引，
+ * 数据以{@link CacheEntryFormat}格式压缩保存，构造时不进行文件操作；空间占用在内存中统计，
+ * 超出{@link DataCacheParams#cacheSize}时在后台淘汰最久未使用的缓存，超过作废期的缓存在访问时删除。
  * 
  * @author xuwei
  */
@@ -40,18 +47,42 @@ public class RequestDataCache {
 	private static final int DEFAULT_CACHE_VALIDITY_TIME = 5 * 60 * 1000; // 5mins
 	/** 默认缓存作废期 */
 	private static final int DEFAULT_CACHE_EXIST_TIME = 24 * 60 * 60 * 1000; // 24h
+	/** 默认压缩保存缓存数据 */
+	private static final boolean DEFAULT_CACHE_COMPRESS_ENABLED = true;
+	/** 默认开启内存缓存 */
+	private static final boolean DEFAULT_MEMORY_CACHE_ENABLED = true;
+	/** 默认保存解析结果的快照 */
+	private static final boolean DEFAULT_SNAPSHOT_ENABLED = true;
 	/** 默认缓存文件标识 */
 	private static final String DEFAULT_CACHE_TAG = "Cache";
 
-	/** 配置参数文件名 */
-	private static final String FILENAME_PROPERTY = ".property";
+	/** 缓存索引的版本，数据格式变化时递增以清除旧缓存 */
+	private static final int STORE_VERSION = 3;
+	/** 缓存项的数据数：数据、属性、解析结果的快照 */
+	private static final int STORE_VALUE_COUNT = 3;
+	/** 缓存项数据的位置 */
+	private static final int VALUE_DATA = 0;
+	/** 缓存项属性的位置 */
+	private static final int VALUE_META = 1;
+	/** 缓存项解析结果快照的位置，未保存快照时为空 */
+	private static final int VALUE_SNAPSHOT = 2;
 
-	/** 配置参数_缓存大小 */
-	private static final String KEY_CACHE_SIZE = "size";
-	/** 配置参数_缓存有效期 */
-	private static final String KEY_CACHE_VALIDITY_TIME = "validityTime";
-	/** 配置参数_缓存废弃期 */
-	private static final String KEY_CACHE_EXIST_TIME = "existTime";
+	/** 数据编码 */
+	private static final String CHARSET = "UTF-8";
+	/** 复制缓存数据的缓冲区大小 */
+	private static final int BUFFER_SIZE = 4 * 1024;
+
+	/** 属性_写入时间 */
+	private static final String KEY_META_TIME = "time";
+	/** 属性_数据长度 */
+	private static final String KEY_META_LENGTH = "length";
+	/** 校验信息_ETag */
+	private static final String KEY_VALIDATOR_ETAG = "etag";
+	/** 校验信息_Last-Modified */
+	private static final String KEY_VALIDATOR_LAST_MODIFIED = "lastModified";
+
+	/** 各缓存目录的索引 */
+	private static final HashMap<String, DataStore> STORES = new HashMap<String, DataStore>();
 
 	/** context */
 	private Context mContext;
@@ -93,7 +124,7 @@ public class RequestDataCache {
 	}
 
 	/**
-	 * 初始化缓存目录及配置文件
+	 * 确定缓存目录，缓存索引在首次访问时打开
 	 */
 	private void init() {
 		// 根据当前Sd卡状态，创建适宜的缓存空间目录
@@ -102,130 +133,132 @@ public class RequestDataCache {
 				.getPath() : mContext.getCacheDir().getPath();
 		mCacheFileDir = new File(cachePath + File.separator
 				+ hashKeyForDisk(mId));
-		if (DEBUG) {
-			Log.d(TAG, "makeCacheDir =" + mCacheFileDir.getAbsolutePath());
-		}
-		mCacheFileDir.mkdirs();
+	}
 
-		// 检测property文件状态
-		File propertyFile = new File(mCacheFileDir.getAbsolutePath()
-				+ File.separator + FILENAME_PROPERTY);
-		Properties properties = new Properties();
-		if (!propertyFile.exists()) {
-			try {
-				propertyFile.createNewFile();
-			} catch (IOException e) {
-				if (DEBUG) {
-					Log.e(TAG, e);
-				}
-				return;
+	/**
+	 * 获取当前缓存目录的索引
+	 * 
+	 * @return
+	 */
+	private DataStore getStore() {
+		String path = mCacheFileDir.getAbsolutePath();
+		synchronized (STORES) {
+			DataStore store = STORES.get(path);
+			if (store == null) {
+				store = new DataStore(mCacheFileDir,
+						mDataCacheParams.cacheSize,
+						Utility.getAppVersionCode(mContext));
+				STORES.put(path, store);
 			}
+			return store;
 		}
+	}
 
-		// 更新property配置文件
+	/**
+	 * 保存
+	 * 
+	 * @param data
+	 *            data
+	 * @return 成功
+	 */
+	public boolean save(String data) {
+		String memoryKey = getCurrentTagMemoryKey();
+		RequestMemoryCache.remove(memoryKey);
+		Editor editor = edit();
+		if (editor == null) {
+			return false;
+		}
 		try {
-			// 不建议使用put方法，properties继承自hashtable，若使用put方法加入非String类型参数则会出现castexception
-			properties.setProperty(KEY_CACHE_SIZE, mDataCacheParams.cacheSize
-					+ "");
-			properties.setProperty(KEY_CACHE_VALIDITY_TIME,
-					mDataCacheParams.cacheValidityTime + "");
-			properties.setProperty(KEY_CACHE_EXIST_TIME,
-					mDataCacheParams.cacheExistTime + "");
-			properties.store(new FileOutputStream(propertyFile, false), null);
-		} catch (FileNotFoundException e) {
-			if (DEBUG) {
-				Log.e(TAG, e);
-			}
-		} catch (IOException e) {
+			editor.getOutputStream().write(data.getBytes(CHARSET));
+		} catch (IOException ex) {
 			if (DEBUG) {
-				Log.e(TAG, e);
+				Log.e(TAG, ex);
 			}
+			editor.abort();
+			return false;
 		}
-
-		cleanWasteCache();
-		cleanOverrangeCache();
+		if (!editor.commit()) {
+			return false;
+		}
+		if (mDataCacheParams.memoryCacheEnabled) {
+			RequestMemoryCache.putData(memoryKey, data);
+		}
+		return true;
 	}
 
 	/**
-	 * 清理已经作废的缓存文件
+	 * 延迟保存，数据放入{@link CacheWriteQueue}后立即返回，由后台线程写入文件。写入完成前读取当前tag的缓存时
+	 * 以队列中的数据为准，同一tag多次保存时仅写入最新的数据
+	 * 
+	 * @param data
+	 *            data
+	 * @param eTag
+	 *            校验信息，可为null
+	 * @param lastModified
+	 *            校验信息，可为null
 	 */
-	private void cleanWasteCache() {
-		if (mCacheFileDir != null && mCacheFileDir.exists()) {
-			// 加载缓存文件列表
-			File[] cacheFiles = mCacheFileDir.listFiles();
-			if (cacheFiles != null) {
-				for (File file : cacheFiles) {
-					// 删除已经到达作废期的缓存文件
-					if (System.currentTimeMillis() - file.lastModified() > mDataCacheParams.cacheExistTime) {
-						file.delete();
-					}
-				}
-			}
-		}
+	public void saveAsync(String data, String eTag, String lastModified) {
+		saveAsync(data, eTag, lastModified, null);
 	}
 
 	/**
-	 * 若超出了缓存空间限制，则清理掉超过有效期的文件
+	 * 延迟保存，同时保存由数据解析得到的结果的快照，之后可通过{@link #loadSnapshot(Class)}直接获取解析结果，
+	 * 无需重新解析。快照在调用时即序列化，需在解析结果交给使用方之前调用
+	 * 
+	 * @param data
+	 *            data
+	 * @param eTag
+	 *            校验信息，可为null
+	 * @param lastModified
+	 *            校验信息，可为null
+	 * @param snapshot
+	 *            由data解析得到的结果，可为null
 	 */
-	private void cleanOverrangeCache() {
-		if (mCacheFileDir != null) {
-			long currentSize = 0;
-			File[] cacheFiles = mCacheFileDir.listFiles();
-			if (cacheFiles != null) {
-				for (File file : cacheFiles) {
-					currentSize += file.length();
-				}
-			}
-			if (currentSize < mDataCacheParams.cacheSize) {
-				// 若未超出限制则不继续执行
-				return;
-			}
+	public void saveAsync(String data, String eTag, String lastModified,
+			AbstractIFItem snapshot) {
+		if (data == null) {
+			return;
 		}
-		if (mCacheFileDir != null && mCacheFileDir.exists()) {
-			// 加载缓存文件列表
-			File[] cacheFiles = mCacheFileDir.listFiles();
-			if (cacheFiles != null) {
-				for (File file : cacheFiles) {
-					// 删除已经失效的缓存文件
-					if (System.currentTimeMillis() - file.lastModified() > mDataCacheParams.cacheValidityTime) {
-						file.delete();
-					}
-				}
+		String memoryKey = getCurrentTagMemoryKey();
+		RequestMemoryCache.remove(memoryKey);
+		DataStore store = getStore();
+		byte[] snapshotData = null;
+		if (mDataCacheParams.snapshotEnabled) {
+			snapshotData = store.serializeSnapshot(snapshot);
+			// 相同数据再次保存且未提供解析结果时(如合并请求的其它requestor)，保留尚未写入的快照
+			PendingData pending = getPendingData();
+			if (snapshotData == null && pending != null
+					&& data.equals(pending.mData)) {
+				snapshotData = pending.mSnapshot;
 			}
 		}
+		CacheWriteQueue.put(memoryKey, new PendingData(store,
+				getCurrentTagKey(), data, new Meta(System.currentTimeMillis(),
+						getEncodedLength(data), eTag, lastModified),
+				snapshotData, mDataCacheParams.cacheCompressEnabled));
+		if (mDataCacheParams.memoryCacheEnabled) {
+			RequestMemoryCache.putData(memoryKey, data);
+		}
 	}
 
 	/**
-	 * 保存
+	 * 以流的方式写入当前tag的缓存。数据先写入临时文件，{@link Editor#commit()}后才会替换原有缓存，
+	 * 写入失败时需要调用{@link Editor#abort()}
 	 * 
-	 * @param data
-	 *            data
-	 * @return 成功
+	 * @return Editor，无法创建缓存文件时返回null
 	 */
-	public boolean save(String data) {
-		FileWriter fileWriter = null;
-		try {
-			fileWriter = new FileWriter(getCurrentTagCache());
-			fileWriter.write(data);
-			fileWriter.close();
-		} catch (IOException ex) {
-			if (DEBUG) {
-				Log.e(TAG, ex);
-			}
-			return false;
-		} finally {
-			try {
-				if (fileWriter != null) {
-					fileWriter.close();
-				}
-			} catch (IOException ex) {
-				if (DEBUG) {
-					Log.e(TAG, ex);
-				}
-				return false;
-			}
+	public Editor edit() {
+		// 尚未写入的数据已经过期
+		CacheWriteQueue.cancel(getCurrentTagMemoryKey());
+		DataStore store = getStore();
+		String key = getCurrentTagKey();
+		DiskLruCache.Editor editor = store.edit(key);
+		if (editor == null) {
+			return null;
 		}
-		return true;
+		return new Editor(store, key, editor, getCurrentTagMemoryKey(),
+				mDataCacheParams.cacheCompressEnabled,
+				mDataCacheParams.snapshotEnabled);
 	}
 
 	/**
@@ -234,14 +267,10 @@ public class RequestDataCache {
 	 * @return 是否存在有效缓存
 	 */
 	public boolean isEffective() {
-		File cacheFile = getCurrentTagCache();
-		if (cacheFile != null
-				&& cacheFile.exists()
-				&& System.currentTimeMillis() - cacheFile.lastModified() < mDataCacheParams.cacheValidityTime) {
-			// 若存在缓存文件，且尚未超过有效期
-			return true;
-		}
-		return false;
+		Meta meta = getCurrentTagMeta();
+		// 若存在缓存，且尚未超过有效期
+		return meta != null
+				&& System.currentTimeMillis() - meta.mTime < mDataCacheParams.cacheValidityTime;
 	}
 
 	/**
@@ -250,14 +279,16 @@ public class RequestDataCache {
 	 * @return 是否存在缓存可供预加载
 	 */
 	public boolean isExist() {
-		File cacheFile = getCurrentTagCache();
-		if (cacheFile != null
-				&& cacheFile.exists()
-				&& System.currentTimeMillis() - cacheFile.lastModified() < mDataCacheParams.cacheExistTime) {
-			// 若存在缓存文件，且尚未超过作废期
-			return true;
+		Meta meta = getCurrentTagMeta();
+		if (meta == null) {
+			return false;
+		}
+		// 已经超过作废期的缓存直接删除
+		if (System.currentTimeMillis() - meta.mTime >= mDataCacheParams.cacheExistTime) {
+			delete();
+			return false;
 		}
-		return false;
+		return true;
 	}
 
 	/**
@@ -266,54 +297,254 @@ public class RequestDataCache {
 	 * @return 数据
 	 */
 	public String load() {
-		BufferedReader br = null;
-		String ret = null;
-		try {
-			br = new BufferedReader(new FileReader(getCurrentTagCache()));
-			String line = null;
-			StringBuffer sb = new StringBuffer((int) getCurrentTagCache()
-					.length());
-			while ((line = br.readLine()) != null) {
-				sb.append(line);
-			}
-			ret = sb.toString();
-		} catch (IOException e) {
-			if (DEBUG) {
-				Log.e(TAG, e);
-			}
-		} finally {
-			if (br != null) {
-				try {
-					br.close();
-				} catch (Exception e) {
-					if (DEBUG) {
-						Log.e(TAG, e);
-					}
-				}
+		String memoryKey = getCurrentTagMemoryKey();
+		if (mDataCacheParams.memoryCacheEnabled) {
+			String data = RequestMemoryCache.getData(memoryKey);
+			if (data != null) {
+				return data;
 			}
 		}
 
+		// 尚未写入文件的数据
+		PendingData pending = getPendingData();
+		if (pending != null) {
+			return pending.mData;
+		}
+
+		String ret = getStore().getData(getCurrentTagKey());
+
+		// 保存解析结果时由解析方通过saveItem写入内存缓存
+		if (ret != null && mDataCacheParams.memoryCacheEnabled
+				&& !mDataCacheParams.memoryCacheItem) {
+			RequestMemoryCache.putData(memoryKey, ret);
+		}
 		return ret;
 	}
 
+	/**
+	 * 加载当前tag缓存保存的解析结果快照，每次返回新的实例
+	 * 
+	 * @param itemClass
+	 *            解析类，与快照的解析类不同或解析类已经修改时视为不存在快照
+	 * @return 不存在快照时返回null，此时需要通过{@link #load()}重新解析
+	 */
+	public AbstractIFItem loadSnapshot(Class<? extends AbstractIFItem> itemClass) {
+		if (itemClass == null || !mDataCacheParams.snapshotEnabled) {
+			return null;
+		}
+		// 尚未写入文件的数据没有快照
+		if (getPendingData() != null) {
+			return null;
+		}
+		return getStore().getSnapshot(getCurrentTagKey(), itemClass);
+	}
+
+	/**
+	 * 从内存缓存中获取当前tag缓存的解析结果，需要开启{@link DataCacheParams#memoryCacheItem}
+	 * 
+	 * @return 不存在时返回null
+	 */
+	public AbstractIFItem loadItem() {
+		if (!mDataCacheParams.memoryCacheEnabled
+				|| !mDataCacheParams.memoryCacheItem) {
+			return null;
+		}
+		return RequestMemoryCache.getItem(getCurrentTagMemoryKey());
+	}
+
+	/**
+	 * 在内存缓存中以解析结果替换当前tag缓存的原始数据，需要开启{@link DataCacheParams#memoryCacheItem}
+	 * 
+	 * @param item
+	 *            由当前tag缓存的数据解析得到的结果
+	 */
+	public void saveItem(AbstractIFItem item) {
+		if (item == null || !mDataCacheParams.memoryCacheEnabled
+				|| !mDataCacheParams.memoryCacheItem) {
+			return;
+		}
+		// 以缓存数据大小估算解析结果占用的内存
+		Meta meta = getCurrentTagMeta();
+		if (meta != null) {
+			RequestMemoryCache.putItem(getCurrentTagMemoryKey(), item,
+					meta.mLength * 2);
+		}
+	}
+
+	/**
+	 * 在内存缓存中保存解析结果，仅当解析期间当前tag的缓存未被替换时保存，避免以旧数据的解析结果覆盖新的数据
+	 * 
+	 * @param item
+	 *            由当前tag缓存的数据解析得到的结果
+	 * @param cacheTime
+	 *            读取数据时的{@link #getCacheTime()}
+	 * @return 是否保存
+	 */
+	public boolean saveItem(AbstractIFItem item, long cacheTime) {
+		if (getCacheTime() != cacheTime) {
+			return false;
+		}
+		saveItem(item);
+		// 保存期间写入了新的数据
+		if (getCacheTime() != cacheTime) {
+			RequestMemoryCache.remove(getCurrentTagMemoryKey());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 当前tag缓存的写入或最近刷新的时间，可用于判断读取之后缓存是否被替换
+	 * 
+	 * @return 不存在缓存时返回0
+	 */
+	public long getCacheTime() {
+		Meta meta = getCurrentTagMeta();
+		return meta == null ? 0 : meta.mTime;
+	}
+
 	/**
 	 * 删除
 	 * 
 	 * @return 是否删除成功
 	 */
 	public boolean delete() {
-		File cacheFile = getCurrentTagCache();
-		if (cacheFile != null) {
-			return cacheFile.delete();
+		RequestMemoryCache.remove(getCurrentTagMemoryKey());
+		CacheWriteQueue.cancel(getCurrentTagMemoryKey());
+		return getStore().remove(getCurrentTagKey());
+	}
+
+	/**
+	 * 保存当前tag缓存对应的校验信息(ETag / Last-Modified)，两者均为null时清除已有的校验信息
+	 * 
+	 * @param eTag
+	 * @param lastModified
+	 * @return 是否成功
+	 */
+	public boolean saveValidators(String eTag, String lastModified) {
+		PendingData pending = getPendingData();
+		if (pending != null) {
+			CacheWriteQueue.put(getCurrentTagMemoryKey(), pending
+					.withMeta(new Meta(pending.mMeta.mTime,
+							pending.mMeta.mLength, eTag, lastModified)));
+			return true;
 		}
-		return true;
+		DataStore store = getStore();
+		String key = getCurrentTagKey();
+		Meta meta = store.getMeta(key);
+		if (meta == null) {
+			return false;
+		}
+		return store.putMeta(key, meta, new Meta(meta.mTime, meta.mLength,
+				eTag, lastModified));
 	}
 
-	private File getCurrentTagCache() {
-		File cacheFile = new File(mCacheFileDir.getAbsolutePath()
-				+ File.separator
-				+ hashKeyForDisk(mDataCacheParams.cacheFileTag));
-		return cacheFile;
+	/**
+	 * 加载当前tag缓存对应的校验信息
+	 * 
+	 * @return 校验信息，不存在缓存或校验信息时返回null
+	 */
+	public Validators loadValidators() {
+		Meta meta = getCurrentTagMeta();
+		if (meta == null || (meta.mETag == null && meta.mLastModified == null)) {
+			return null;
+		}
+		Validators validators = new Validators();
+		validators.eTag = meta.mETag;
+		validators.lastModified = meta.mLastModified;
+		return validators;
+	}
+
+	/**
+	 * 刷新当前tag缓存的有效期，用于服务器确认数据未发生变化(304)时，无需重新写入数据
+	 * 
+	 * @return 是否成功
+	 */
+	public boolean refresh() {
+		return refresh(false, null, null);
+	}
+
+	/**
+	 * 刷新当前tag缓存的有效期并更新校验信息，用于服务器返回的数据与缓存相同时，无需重新写入数据及快照
+	 * 
+	 * @param eTag
+	 * @param lastModified
+	 * @return 是否成功
+	 */
+	public boolean refresh(String eTag, String lastModified) {
+		return refresh(true, eTag, lastModified);
+	}
+
+	/**
+	 * 刷新当前tag缓存的有效期
+	 * 
+	 * @param updateValidators
+	 *            是否同时更新校验信息
+	 * @param eTag
+	 * @param lastModified
+	 * @return 是否成功
+	 */
+	private boolean refresh(boolean updateValidators, String eTag,
+			String lastModified) {
+		PendingData pending = getPendingData();
+		if (pending != null) {
+			Meta meta = pending.mMeta;
+			CacheWriteQueue.put(getCurrentTagMemoryKey(), pending
+					.withMeta(new Meta(System.currentTimeMillis(),
+							meta.mLength, updateValidators ? eTag
+									: meta.mETag, updateValidators
+									? lastModified : meta.mLastModified)));
+			return true;
+		}
+		DataStore store = getStore();
+		String key = getCurrentTagKey();
+		Meta meta = store.getMeta(key);
+		if (meta == null) {
+			return false;
+		}
+		return store.putMeta(key, meta, new Meta(System.currentTimeMillis(),
+				meta.mLength, updateValidators ? eTag : meta.mETag,
+				updateValidators ? lastModified : meta.mLastModified));
+	}
+
+	/**
+	 * 当前tag缓存在索引中的key
+	 * 
+	 * @return
+	 */
+	private String getCurrentTagKey() {
+		return hashKeyForDisk(mDataCacheParams.cacheFileTag);
+	}
+
+	/**
+	 * 当前tag缓存的属性，尚未写入文件时以写入队列中的数据为准
+	 * 
+	 * @return 不存在缓存时返回null
+	 */
+	private Meta getCurrentTagMeta() {
+		PendingData pending = getPendingData();
+		if (pending != null) {
+			return pending.mMeta;
+		}
+		return getStore().getMeta(getCurrentTagKey());
+	}
+
+	/**
+	 * 当前tag尚未写入文件的数据
+	 * 
+	 * @return 不存在时返回null
+	 */
+	private PendingData getPendingData() {
+		return (PendingData) CacheWriteQueue.get(getCurrentTagMemoryKey());
+	}
+
+	/**
+	 * 当前tag缓存在内存缓存及写入队列中的key，由缓存模块id及缓存文件标识组成
+	 * 
+	 * @return
+	 */
+	private String getCurrentTagMemoryKey() {
+		return mId + File.separator + getCurrentTagKey();
 	}
 
 	/**
@@ -348,6 +579,36 @@ public class RequestDataCache {
 		return cacheDir;
 	}
 
+	/**
+	 * 数据以{@link #CHARSET}编码后的字节数，与写入文件后的缓存属性一致，无需实际编码
+	 * 
+	 * @param data
+	 * @return
+	 */
+	private static long getEncodedLength(String data) {
+		long length = 0;
+		int count = data.length();
+		for (int i = 0; i < count; i++) {
+			char c = data.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < count
+					&& Character.isLowSurrogate(data.charAt(i + 1))) {
+				// 代理对编码为4个字节
+				length += 4;
+				i++;
+			} else if (c >= 0xD800 && c <= 0xDFFF) {
+				// 不成对的代理字符编码为'?'
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
 	/**
 	 * A hashing method that changes a string (like a URL) into a hash suitable
 	 * for using as a disk filename.
@@ -377,6 +638,775 @@ public class RequestDataCache {
 		return sb.toString();
 	}
 
+	/**
+	 * 缓存目录的索引，包装{@link DiskLruCache}，并在内存中保存已读取的缓存属性。同一缓存项的编辑在此排队依次进行，
+	 * 不使用{@link DiskLruCache#edit(String)}的等待机制(等待后会以空白缓存项替换原有缓存项)
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class DataStore {
+		/** 缓存目录 */
+		private final File mDirectory;
+		/** 缓存空间大小 */
+		private final long mMaxSize;
+		/** 缓存索引，打开失败时为null */
+		private DiskLruCache mDiskLruCache;
+		/** 是否已经尝试打开索引 */
+		private boolean mIsOpened;
+		/** 已读取的缓存属性 */
+		private final HashMap<String, Meta> mMetas = new HashMap<String, Meta>();
+		/** 正在编辑的缓存项 */
+		private final HashSet<String> mEditingKeys = new HashSet<String>();
+		/** 应用版本号，应用升级后旧的快照不再使用 */
+		private final int mAppVersion;
+
+		/**
+		 * 构造
+		 * 
+		 * @param directory
+		 * @param maxSize
+		 * @param appVersion
+		 */
+		DataStore(File directory, long maxSize, int appVersion) {
+			mDirectory = directory;
+			mMaxSize = maxSize;
+			mAppVersion = appVersion;
+		}
+
+		/**
+		 * 获取缓存索引，首次调用时打开，已关闭时重新打开
+		 * 
+		 * @return 无法打开时返回null
+		 */
+		private synchronized DiskLruCache getCache() {
+			if (mDiskLruCache != null && mDiskLruCache.isClosed()) {
+				mDiskLruCache = null;
+				mIsOpened = false;
+				mMetas.clear();
+			}
+			if (!mIsOpened) {
+				mIsOpened = true;
+				try {
+					// 清除旧版本以单个文件保存的缓存
+					if (mDirectory.exists()
+							&& !new File(mDirectory, "journal").exists()) {
+						DiskLruCache.deleteContents(mDirectory);
+					}
+					mDirectory.mkdirs();
+					mDiskLruCache = DiskLruCache.open(mDirectory,
+							STORE_VERSION, STORE_VALUE_COUNT, mMaxSize);
+				} catch (Exception e) {
+					if (DEBUG) {
+						Log.e(TAG, e);
+					}
+				}
+			}
+			return mDiskLruCache;
+		}
+
+		/**
+		 * 获取缓存属性
+		 * 
+		 * @param key
+		 * @return 不存在时返回null
+		 */
+		Meta getMeta(String key) {
+			synchronized (this) {
+				Meta meta = mMetas.get(key);
+				if (meta != null) {
+					return meta;
+				}
+			}
+			DiskLruCache cache = getCache();
+			if (cache == null) {
+				return null;
+			}
+
+			DiskLruCache.Snapshot snapshot = null;
+			try {
+				snapshot = cache.get(key);
+				if (snapshot == null) {
+					return null;
+				}
+				Properties properties = new Properties();
+				properties.load(snapshot.getInputStream(VALUE_META));
+				Meta meta = Meta.fromProperties(properties);
+				if (meta == null) {
+					return null;
+				}
+				synchronized (this) {
+					mMetas.put(key, meta);
+				}
+				return meta;
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return null;
+			} finally {
+				if (snapshot != null) {
+					snapshot.close();
+				}
+			}
+		}
+
+		/**
+		 * 读取缓存数据
+		 * 
+		 * @param key
+		 * @return 不存在时返回null
+		 */
+		String getData(String key) {
+			DiskLruCache cache = getCache();
+			if (cache == null) {
+				return null;
+			}
+
+			DiskLruCache.Snapshot snapshot = null;
+			boolean isCorrupt = false;
+			try {
+				snapshot = cache.get(key);
+				if (snapshot == null) {
+					return null;
+				}
+				return CacheEntryFormat.read(
+						snapshot.getInputStream(VALUE_DATA), CHARSET);
+			} catch (IOException e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				isCorrupt = true;
+				return null;
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return null;
+			} finally {
+				if (snapshot != null) {
+					snapshot.close();
+				}
+				// 损坏的缓存直接删除
+				if (isCorrupt) {
+					remove(key);
+				}
+			}
+		}
+
+		/**
+		 * 写入缓存数据及属性
+		 * 
+		 * @param key
+		 * @param data
+		 * @param meta
+		 * @param snapshot
+		 *            解析结果的快照数据，可为null
+		 * @param compress
+		 *            是否压缩
+		 * @return 是否成功
+		 */
+		boolean putData(String key, byte[] data, Meta meta, byte[] snapshot,
+				boolean compress) {
+			DiskLruCache.Editor editor = edit(key);
+			if (editor == null) {
+				return false;
+			}
+			CacheEntryFormat.EntryOutputStream entry = new CacheEntryFormat.EntryOutputStream(
+					compress);
+			OutputStream out = null;
+			try {
+				entry.write(data);
+				out = new BufferedOutputStream(
+						editor.newOutputStream(VALUE_DATA));
+				entry.writeTo(out);
+				out.close();
+				out = null;
+				writeMeta(editor, meta);
+				writeSnapshot(editor, snapshot);
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				DiskLruCache.closeQuietly(out);
+				abort(editor, key);
+				return false;
+			} finally {
+				entry.release();
+			}
+			return commit(key, editor, meta);
+		}
+
+		/**
+		 * 仅更新缓存属性，数据及快照由原有缓存复制。等待编辑期间缓存项已经被替换或删除时放弃更新，
+		 * 新的缓存项不应使用基于旧数据的属性
+		 * 
+		 * @param key
+		 * @param expected
+		 *            更新所基于的缓存属性
+		 * @param meta
+		 * @return 是否成功
+		 */
+		boolean putMeta(String key, Meta expected, Meta meta) {
+			DiskLruCache.Editor editor = edit(key);
+			if (editor == null) {
+				return false;
+			}
+			DiskLruCache.Snapshot snapshot = null;
+			try {
+				DiskLruCache cache = getCache();
+				snapshot = cache == null ? null : cache.get(key);
+				if (snapshot == null) {
+					abort(editor, key);
+					return false;
+				}
+				Properties properties = new Properties();
+				properties.load(snapshot.getInputStream(VALUE_META));
+				if (!expected.isSameEntry(Meta.fromProperties(properties))) {
+					abort(editor, key);
+					return false;
+				}
+				copyValue(snapshot, editor, VALUE_DATA);
+				copyValue(snapshot, editor, VALUE_SNAPSHOT);
+				writeMeta(editor, meta);
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				abort(editor, key);
+				return false;
+			} finally {
+				if (snapshot != null) {
+					snapshot.close();
+				}
+			}
+			return commit(key, editor, meta);
+		}
+
+		/**
+		 * 将原有缓存的数据复制到编辑中
+		 * 
+		 * @param snapshot
+		 * @param editor
+		 * @param index
+		 * @throws IOException
+		 */
+		private void copyValue(DiskLruCache.Snapshot snapshot,
+				DiskLruCache.Editor editor, int index) throws IOException {
+			InputStream in = snapshot.getInputStream(index);
+			OutputStream out = editor.newOutputStream(index);
+			byte[] buffer = ByteArrayPool.acquire(BUFFER_SIZE);
+			try {
+				int len;
+				while ((len = in.read(buffer)) != -1) {
+					out.write(buffer, 0, len);
+				}
+			} finally {
+				ByteArrayPool.release(buffer);
+				out.close();
+			}
+		}
+
+		/**
+		 * 开始编辑缓存项，同一缓存项正在编辑时等待其提交或放弃，编辑完成后需要调用
+		 * {@link #commit(String, DiskLruCache.Editor, Meta)}或
+		 * {@link #abort(DiskLruCache.Editor, String)}
+		 * 
+		 * @param key
+		 * @return 无法编辑时返回null
+		 */
+		DiskLruCache.Editor edit(String key) {
+			DiskLruCache cache = getCache();
+			if (cache == null) {
+				return null;
+			}
+			synchronized (this) {
+				while (mEditingKeys.contains(key)) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return null;
+					}
+				}
+				mEditingKeys.add(key);
+			}
+			DiskLruCache.Editor editor = null;
+			try {
+				editor = cache.tryEdit(key);
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+			}
+			if (editor == null) {
+				release(key);
+			}
+			return editor;
+		}
+
+		/**
+		 * 结束编辑缓存项，唤醒等待编辑同一缓存项的线程
+		 * 
+		 * @param key
+		 */
+		private synchronized void release(String key) {
+			mEditingKeys.remove(key);
+			notifyAll();
+		}
+
+		/**
+		 * 写入缓存属性
+		 * 
+		 * @param editor
+		 * @param meta
+		 * @throws IOException
+		 */
+		void writeMeta(DiskLruCache.Editor editor, Meta meta)
+				throws IOException {
+			OutputStream out = editor.newOutputStream(VALUE_META);
+			try {
+				meta.toProperties().store(out, null);
+			} finally {
+				out.close();
+			}
+		}
+
+		/**
+		 * 序列化解析结果，在调用线程中完成，之后解析结果的修改不影响快照
+		 * 
+		 * @param snapshot
+		 *            可为null
+		 * @return 快照数据，无法序列化时返回null
+		 */
+		byte[] serializeSnapshot(AbstractIFItem snapshot) {
+			if (snapshot == null) {
+				return null;
+			}
+			PooledByteArrayOutputStream data = null;
+			try {
+				data = CacheEntryFormat.writeSnapshot(snapshot, mAppVersion);
+				return data.toByteArray();
+			} catch (IOException e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return null;
+			} finally {
+				DiskLruCache.closeQuietly(data);
+			}
+		}
+
+		/**
+		 * 写入解析结果的快照，无快照时写入空的快照，数据更新时需要同时写入以清除旧的快照
+		 * 
+		 * @param editor
+		 * @param snapshot
+		 *            快照数据，可为null
+		 * @throws IOException
+		 */
+		void writeSnapshot(DiskLruCache.Editor editor, byte[] snapshot)
+				throws IOException {
+			OutputStream out = editor.newOutputStream(VALUE_SNAPSHOT);
+			try {
+				if (snapshot != null) {
+					out.write(snapshot);
+				}
+			} finally {
+				out.close();
+			}
+		}
+
+		/**
+		 * 读取解析结果的快照
+		 * 
+		 * @param key
+		 * @param itemClass
+		 * @return 不存在时返回null
+		 */
+		AbstractIFItem getSnapshot(String key,
+				Class<? extends AbstractIFItem> itemClass) {
+			DiskLruCache cache = getCache();
+			if (cache == null) {
+				return null;
+			}
+
+			DiskLruCache.Snapshot snapshot = null;
+			try {
+				snapshot = cache.get(key);
+				if (snapshot == null) {
+					return null;
+				}
+				return CacheEntryFormat.readSnapshot(
+						snapshot.getInputStream(VALUE_SNAPSHOT), itemClass,
+						mAppVersion);
+			} catch (Exception e) {
+				// 快照不可用时仍可重新解析缓存数据
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return null;
+			} finally {
+				if (snapshot != null) {
+					snapshot.close();
+				}
+			}
+		}
+
+		/**
+		 * 提交编辑，并唤醒等待编辑同一缓存项的线程
+		 * 
+		 * @param key
+		 * @param editor
+		 * @param meta
+		 *            提交后的缓存属性
+		 * @return 是否成功
+		 */
+		boolean commit(String key, DiskLruCache.Editor editor, Meta meta) {
+			synchronized (this) {
+				mMetas.remove(key);
+			}
+			boolean success = false;
+			try {
+				editor.commit();
+				DiskLruCache cache = getCache();
+				if (cache != null) {
+					cache.flush();
+					// 写入出错时索引会删除该缓存项
+					DiskLruCache.Snapshot snapshot = cache.get(key);
+					if (snapshot != null) {
+						snapshot.close();
+						success = true;
+					}
+				}
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+			}
+			synchronized (this) {
+				if (success) {
+					mMetas.put(key, meta);
+				}
+				release(key);
+			}
+			return success;
+		}
+
+		/**
+		 * 放弃编辑，并唤醒等待编辑同一缓存项的线程
+		 * 
+		 * @param editor
+		 * @param key
+		 */
+		void abort(DiskLruCache.Editor editor, String key) {
+			try {
+				editor.abort();
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+			} finally {
+				release(key);
+			}
+		}
+
+		/**
+		 * 删除缓存项
+		 * 
+		 * @param key
+		 * @return 是否成功
+		 */
+		boolean remove(String key) {
+			synchronized (this) {
+				mMetas.remove(key);
+			}
+			DiskLruCache cache = getCache();
+			if (cache == null) {
+				return true;
+			}
+			try {
+				cache.remove(key);
+				return true;
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * 写入队列中尚未写入文件的数据
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class PendingData implements CacheWriteQueue.PendingWrite {
+		/** 缓存目录的索引 */
+		private final DataStore mStore;
+		/** 缓存项的key */
+		private final String mKey;
+		/** 数据 */
+		private final String mData;
+		/** 缓存属性 */
+		private final Meta mMeta;
+		/** 解析结果的快照数据，可为null */
+		private final byte[] mSnapshot;
+		/** 是否压缩 */
+		private final boolean mCompress;
+
+		/**
+		 * 构造
+		 * 
+		 * @param store
+		 * @param key
+		 * @param data
+		 * @param meta
+		 * @param snapshot
+		 * @param compress
+		 */
+		PendingData(DataStore store, String key, String data, Meta meta,
+				byte[] snapshot, boolean compress) {
+			mStore = store;
+			mKey = key;
+			mData = data;
+			mMeta = meta;
+			mSnapshot = snapshot;
+			mCompress = compress;
+		}
+
+		/**
+		 * 以新的缓存属性替换
+		 * 
+		 * @param meta
+		 * @return
+		 */
+		PendingData withMeta(Meta meta) {
+			return new PendingData(mStore, mKey, mData, meta, mSnapshot,
+					mCompress);
+		}
+
+		@Override
+		public void write() {
+			byte[] data;
+			try {
+				data = mData.getBytes(CHARSET);
+			} catch (IOException e) {
+				return;
+			}
+			mStore.putData(mKey, data, new Meta(mMeta.mTime, data.length,
+					mMeta.mETag, mMeta.mLastModified), mSnapshot, mCompress);
+		}
+	}
+
+	/**
+	 * 缓存属性，与缓存数据一同保存
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Meta {
+		/** 写入或最近确认未变化的时间 */
+		private final long mTime;
+		/** 数据长度 */
+		private final long mLength;
+		/** ETag */
+		private final String mETag;
+		/** Last-Modified */
+		private final String mLastModified;
+
+		/**
+		 * 构造
+		 * 
+		 * @param time
+		 * @param length
+		 * @param eTag
+		 * @param lastModified
+		 */
+		Meta(long time, long length, String eTag, String lastModified) {
+			mTime = time;
+			mLength = length;
+			mETag = eTag;
+			mLastModified = lastModified;
+		}
+
+		/**
+		 * 是否为同一次写入的缓存项的属性
+		 * 
+		 * @param other
+		 * @return
+		 */
+		boolean isSameEntry(Meta other) {
+			return other != null && mTime == other.mTime
+					&& mLength == other.mLength;
+		}
+
+		/**
+		 * 转换为Properties
+		 * 
+		 * @return
+		 */
+		Properties toProperties() {
+			// 不建议使用put方法，properties继承自hashtable，若使用put方法加入非String类型参数则会出现castexception
+			Properties properties = new Properties();
+			properties.setProperty(KEY_META_TIME, String.valueOf(mTime));
+			properties.setProperty(KEY_META_LENGTH, String.valueOf(mLength));
+			if (mETag != null) {
+				properties.setProperty(KEY_VALIDATOR_ETAG, mETag);
+			}
+			if (mLastModified != null) {
+				properties.setProperty(KEY_VALIDATOR_LAST_MODIFIED,
+						mLastModified);
+			}
+			return properties;
+		}
+
+		/**
+		 * 从Properties中读取
+		 * 
+		 * @param properties
+		 * @return 格式错误时返回null
+		 */
+		static Meta fromProperties(Properties properties) {
+			try {
+				return new Meta(Long.parseLong(properties
+						.getProperty(KEY_META_TIME)), Long.parseLong(properties
+						.getProperty(KEY_META_LENGTH, "0")),
+						properties.getProperty(KEY_VALIDATOR_ETAG),
+						properties.getProperty(KEY_VALIDATOR_LAST_MODIFIED));
+			} catch (Exception e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 以流的方式写入缓存的工具
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public static class Editor {
+		/** 缓存目录的索引 */
+		private DataStore mStore;
+		/** 缓存项的key */
+		private String mKey;
+		/** 缓存项的编辑 */
+		private DiskLruCache.Editor mEditor;
+		/** 数据输出流 */
+		private CacheEntryFormat.EntryOutputStream mOutputStream;
+		/** 缓存在内存缓存中的key */
+		private String mMemoryKey;
+		/** 是否保存解析结果的快照 */
+		private boolean mSnapshotEnabled;
+		/** 解析结果的快照数据 */
+		private byte[] mSnapshot;
+		/** 是否已经提交或放弃，之后不可再操作缓存项 */
+		private boolean mIsDone;
+
+		/**
+		 * 构造
+		 * 
+		 * @param store
+		 * @param key
+		 * @param editor
+		 * @param memoryKey
+		 * @param compress
+		 * @param snapshotEnabled
+		 */
+		private Editor(DataStore store, String key, DiskLruCache.Editor editor,
+				String memoryKey, boolean compress, boolean snapshotEnabled) {
+			mStore = store;
+			mKey = key;
+			mEditor = editor;
+			mMemoryKey = memoryKey;
+			mSnapshotEnabled = snapshotEnabled;
+			mOutputStream = new CacheEntryFormat.EntryOutputStream(compress);
+		}
+
+		/**
+		 * 设置由写入的数据解析得到的结果，调用时即序列化，在{@link #commit()}时保存其快照；
+		 * 需在解析结果交给使用方之前调用
+		 * 
+		 * @param snapshot
+		 */
+		public void setSnapshot(AbstractIFItem snapshot) {
+			mSnapshot = mSnapshotEnabled ? mStore.serializeSnapshot(snapshot)
+					: null;
+		}
+
+		/**
+		 * 获取缓存输出流，写入的数据在{@link #commit()}时才压缩写入缓存文件
+		 * 
+		 * @return
+		 */
+		public OutputStream getOutputStream() {
+			return mOutputStream;
+		}
+
+		/**
+		 * 完成写入，替换原有缓存
+		 * 
+		 * @return 是否成功
+		 */
+		public synchronized boolean commit() {
+			if (mIsDone) {
+				return false;
+			}
+			mIsDone = true;
+			Meta meta = new Meta(System.currentTimeMillis(),
+					mOutputStream.getLength(), null, null);
+			OutputStream out = null;
+			try {
+				out = new BufferedOutputStream(
+						mEditor.newOutputStream(VALUE_DATA));
+				mOutputStream.writeTo(out);
+				out.close();
+				out = null;
+				mStore.writeMeta(mEditor, meta);
+				mStore.writeSnapshot(mEditor, mSnapshot);
+			} catch (Exception e) {
+				if (DEBUG) {
+					Log.e(TAG, e);
+				}
+				DiskLruCache.closeQuietly(out);
+				mStore.abort(mEditor, mKey);
+				return false;
+			} finally {
+				mOutputStream.release();
+			}
+			// 内存缓存中的数据已经过期
+			RequestMemoryCache.remove(mMemoryKey);
+			return mStore.commit(mKey, mEditor, meta);
+		}
+
+		/**
+		 * 放弃写入，保留原有缓存
+		 */
+		public synchronized void abort() {
+			if (mIsDone) {
+				return;
+			}
+			mIsDone = true;
+			mOutputStream.release();
+			mStore.abort(mEditor, mKey);
+		}
+	}
+
+	/**
+	 * 缓存对应的服务器校验信息，用于发起条件请求
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public static class Validators {
+		/** ETag */
+		public String eTag;
+		/** Last-Modified */
+		public String lastModified;
+	}
+
 	/**
 	 * 配置缓存策略的参数类，在变更请求的时候需要重新设置{@link #cacheFileTag}
 	 * 
@@ -394,5 +1424,16 @@ public class RequestDataCache {
 		public int cacheValidityTime = DEFAULT_CACHE_VALIDITY_TIME;
 		/** 缓存生存期 */
 		public int cacheExistTime = DEFAULT_CACHE_EXIST_TIME;
+		/** 是否压缩保存缓存数据，数据本身已经压缩(如图片)时可关闭 */
+		public boolean cacheCompressEnabled = DEFAULT_CACHE_COMPRESS_ENABLED;
+		/** 是否使用内存缓存，所有缓存模块共享{@link RequestMemoryCache}的字节预算 */
+		public boolean memoryCacheEnabled = DEFAULT_MEMORY_CACHE_ENABLED;
+		/**
+		 * 内存缓存中是否保存解析结果而非原始数据，命中时无需重新解析，但相同请求将共享同一解析结果实例，
+		 * 需保证使用方不会修改解析结果
+		 */
+		public boolean memoryCacheItem;
+		/** 是否在缓存数据旁保存解析结果的快照，从缓存加载时可直接反序列化，无需重新解析 */
+		public boolean snapshotEnabled = DEFAULT_SNAPSHOT_ENABLED;
 	}
 }
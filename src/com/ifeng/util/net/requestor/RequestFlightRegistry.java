@@ -0,0 +1,232 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.http.NameValuePair;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.requestor.WebRequestTask.RequestType;
+
+/**
+ * 进行中请求的登记表，用于合并相同的网络请求。相同请求地址、参数、提交方式及解析类型的
+ * {@link AbstractRequestor}同时发起请求时，仅由首个发起者(leader)访问网络，其余发起者(follower)
+ * 挂起等待，并在leader完成后各自解析leader取得的原始数据，解析结果不在requestor之间共享。
+ * 
+ * @author Calvin
+ * 
+ */
+final class RequestFlightRegistry {
+
+	/** log tag. */
+	private static final String TAG = RequestFlightRegistry.class
+			.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 进行中的请求表 */
+	private static final HashMap<String, Flight> FLIGHTS = new HashMap<String, Flight>();
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private RequestFlightRegistry() {
+	}
+
+	/**
+	 * 生成请求合并所用的key
+	 * 
+	 * @param url
+	 *            请求地址
+	 * @param params
+	 *            请求参数
+	 * @param headers
+	 *            请求头，不同请求头(如不同的鉴权信息)的请求不会被合并
+	 * @param requestType
+	 *            提交方式
+	 * @param parseTag
+	 *            解析类型标识，不同解析方式的请求不会被合并
+	 * @return key
+	 */
+	static String buildKey(String url, List<NameValuePair> params,
+			List<NameValuePair> headers, RequestType requestType,
+			String parseTag) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(requestType).append('|').append(parseTag).append('|')
+				.append(url);
+		if (params != null) {
+			for (NameValuePair param : params) {
+				sb.append('&').append(param.getName()).append('=')
+						.append(param.getValue());
+			}
+		}
+		if (headers != null) {
+			sb.append('|');
+			for (NameValuePair header : headers) {
+				sb.append('\n').append(header.getName()).append(':')
+						.append(header.getValue());
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 加入一个请求
+	 * 
+	 * @param key
+	 *            请求key
+	 * @param requestor
+	 *            requestor
+	 * @return 若当前没有相同请求在进行，则由该requestor发起网络请求并返回true；否则挂起等待结果并返回false
+	 */
+	static boolean join(String key, AbstractRequestor requestor) {
+		synchronized (FLIGHTS) {
+			Flight flight = FLIGHTS.get(key);
+			if (flight == null) {
+				FLIGHTS.put(key, new Flight(requestor));
+				return true;
+			}
+
+			if (flight.mLeader == requestor) {
+				return true;
+			}
+
+			if (DEBUG) {
+				Log.d(TAG, "join an in-flight request : " + key);
+			}
+			flight.mFollowers.add(requestor);
+			return false;
+		}
+	}
+
+	/**
+	 * 挂起的requestor退出等待，通常在其被取消时调用
+	 * 
+	 * @param key
+	 *            请求key
+	 * @param requestor
+	 *            requestor
+	 */
+	static void leave(String key, AbstractRequestor requestor) {
+		synchronized (FLIGHTS) {
+			Flight flight = FLIGHTS.get(key);
+			if (flight != null) {
+				flight.mFollowers.remove(requestor);
+			}
+		}
+	}
+
+	/**
+	 * leader请求成功，将原始数据分发给全部挂起的requestor，由其各自解析；没有原始数据时(例如流式解析、
+	 * 服务器返回304)，挂起的requestor各自重新发起请求
+	 * 
+	 * @param key
+	 *            请求key
+	 * @param leader
+	 *            发起网络请求的requestor
+	 * @param result
+	 *            原始数据，可为null
+	 */
+	static void complete(String key, AbstractRequestor leader, String result) {
+		if (result == null) {
+			abandon(key, leader);
+			return;
+		}
+		List<AbstractRequestor> followers = remove(key, leader);
+		if (followers == null) {
+			return;
+		}
+		for (AbstractRequestor follower : followers) {
+			if (!follower.isCanceled()) {
+				follower.onFlightSuccess(result);
+			}
+		}
+	}
+
+	/**
+	 * leader请求失败，将错误分发给全部挂起的requestor
+	 * 
+	 * @param key
+	 *            请求key
+	 * @param leader
+	 *            发起网络请求的requestor
+	 * @param errorCode
+	 *            错误码
+	 */
+	static void fail(String key, AbstractRequestor leader, int errorCode) {
+		List<AbstractRequestor> followers = remove(key, leader);
+		if (followers == null) {
+			return;
+		}
+		for (AbstractRequestor follower : followers) {
+			if (!follower.isCanceled()) {
+				follower.onFlightFailed(errorCode);
+			}
+		}
+	}
+
+	/**
+	 * leader未能给出任何结果(例如被取消)，挂起的requestor各自重新发起请求
+	 * 
+	 * @param key
+	 *            请求key
+	 * @param leader
+	 *            发起网络请求的requestor
+	 */
+	static void abandon(String key, AbstractRequestor leader) {
+		List<AbstractRequestor> followers = remove(key, leader);
+		if (followers == null) {
+			return;
+		}
+		for (AbstractRequestor follower : followers) {
+			if (!follower.isCanceled()) {
+				follower.request();
+			}
+		}
+	}
+
+	/**
+	 * 从登记表中移除leader发起的请求
+	 * 
+	 * @param key
+	 * @param leader
+	 * @return 挂起的requestor列表，若请求不存在或不属于该leader则返回null
+	 */
+	private static List<AbstractRequestor> remove(String key,
+			AbstractRequestor leader) {
+		synchronized (FLIGHTS) {
+			Flight flight = FLIGHTS.get(key);
+			if (flight == null || flight.mLeader != leader) {
+				return null;
+			}
+			FLIGHTS.remove(key);
+			return flight.mFollowers;
+		}
+	}
+
+	/**
+	 * 一次进行中的请求
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Flight {
+		/** 发起网络请求的requestor */
+		private AbstractRequestor mLeader;
+		/** 挂起等待结果的requestor */
+		private LinkedList<AbstractRequestor> mFollowers;
+
+		/**
+		 * 构造
+		 * 
+		 * @param leader
+		 */
+		private Flight(AbstractRequestor leader) {
+			mLeader = leader;
+			mFollowers = new LinkedList<AbstractRequestor>();
+		}
+	}
+}
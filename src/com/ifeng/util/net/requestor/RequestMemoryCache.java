@@ -0,0 +1,252 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.ComponentCallbacks2;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+import com.ifeng.util.net.parser.AbstractIFItem;
+
+/**
+ * 进程内共享的请求数据内存缓存，作为{@link RequestDataCache}文件缓存之前的一级缓存，避免频繁读取的数据
+ * (如频道配置)每次都读取文件。以缓存模块id及缓存文件标识为key，按LRU淘汰，所有缓存模块共享同一字节预算；
+ * 可保存原始数据或解析结果，系统内存不足时通过{@link #trimMemory(int)}释放。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class RequestMemoryCache {
+
+	/** log tag. */
+	private static final String TAG = RequestMemoryCache.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 默认字节预算的上限 */
+	private static final long DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+	/** 默认字节预算占最大可用内存的比例 */
+	private static final int DEFAULT_MEMORY_FRACTION = 32;
+
+	/** 缓存，按访问顺序排列 */
+	private static final LinkedHashMap<String, Entry> ENTRIES = new LinkedHashMap<String, Entry>(
+			16, 0.75f, true);
+
+	/** 字节预算 */
+	private static long sMaxSize = Math.min(DEFAULT_MAX_SIZE, Runtime
+			.getRuntime().maxMemory() / DEFAULT_MEMORY_FRACTION);
+	/** 当前占用的字节数(估算) */
+	private static long sSize;
+	/** 命中数 */
+	private static long sHitCount;
+	/** 未命中数 */
+	private static long sMissCount;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private RequestMemoryCache() {
+	}
+
+	/**
+	 * 设置字节预算，为0时关闭内存缓存
+	 * 
+	 * @param maxSize
+	 */
+	public static synchronized void setMaxSize(long maxSize) {
+		sMaxSize = Math.max(0, maxSize);
+		trimToSize(sMaxSize);
+	}
+
+	/**
+	 * @return 字节预算
+	 */
+	public static synchronized long getMaxSize() {
+		return sMaxSize;
+	}
+
+	/**
+	 * @return 当前占用的字节数(估算)
+	 */
+	public static synchronized long getSize() {
+		return sSize;
+	}
+
+	/**
+	 * @return 命中数
+	 */
+	public static synchronized long getHitCount() {
+		return sHitCount;
+	}
+
+	/**
+	 * @return 未命中数
+	 */
+	public static synchronized long getMissCount() {
+		return sMissCount;
+	}
+
+	/**
+	 * 获取原始数据
+	 * 
+	 * @param key
+	 * @return 不存在或仅保存了解析结果时返回null
+	 */
+	static synchronized String getData(String key) {
+		Entry entry = ENTRIES.get(key);
+		if (entry == null || entry.mData == null) {
+			sMissCount++;
+			return null;
+		}
+		sHitCount++;
+		return entry.mData;
+	}
+
+	/**
+	 * 获取解析结果
+	 * 
+	 * @param key
+	 * @return 不存在或未保存解析结果时返回null
+	 */
+	static synchronized AbstractIFItem getItem(String key) {
+		Entry entry = ENTRIES.get(key);
+		if (entry == null || entry.mItem == null) {
+			return null;
+		}
+		sHitCount++;
+		return entry.mItem;
+	}
+
+	/**
+	 * 保存原始数据，替换已有的数据及解析结果
+	 * 
+	 * @param key
+	 * @param data
+	 */
+	static synchronized void putData(String key, String data) {
+		if (data == null) {
+			remove(key);
+			return;
+		}
+		put(key, new Entry(data, null, (long) data.length() * 2));
+	}
+
+	/**
+	 * 保存解析结果，替换已有的数据
+	 * 
+	 * @param key
+	 * @param item
+	 * @param size
+	 *            解析结果占用的字节数(估算)
+	 */
+	static synchronized void putItem(String key, AbstractIFItem item, long size) {
+		if (item == null) {
+			remove(key);
+			return;
+		}
+		put(key, new Entry(null, item, size));
+	}
+
+	/**
+	 * 保存缓存，超出预算时淘汰最久未访问的缓存
+	 * 
+	 * @param key
+	 * @param entry
+	 */
+	private static void put(String key, Entry entry) {
+		// 超出预算一半的数据不进行缓存，避免冲掉其它全部缓存
+		if (entry.mSize > sMaxSize / 2) {
+			remove(key);
+			return;
+		}
+		Entry previous = ENTRIES.put(key, entry);
+		if (previous != null) {
+			sSize -= previous.mSize;
+		}
+		sSize += entry.mSize;
+		trimToSize(sMaxSize);
+	}
+
+	/**
+	 * 移除缓存
+	 * 
+	 * @param key
+	 */
+	static synchronized void remove(String key) {
+		Entry entry = ENTRIES.remove(key);
+		if (entry != null) {
+			sSize -= entry.mSize;
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public static synchronized void clear() {
+		ENTRIES.clear();
+		sSize = 0;
+	}
+
+	/**
+	 * 根据系统内存状态释放缓存，在Application的onTrimMemory中调用
+	 * 
+	 * @param level
+	 *            {@link ComponentCallbacks2}中的TRIM_MEMORY_*
+	 */
+	public static synchronized void trimMemory(int level) {
+		if (DEBUG) {
+			Log.d(TAG, "trim memory level " + level + " , size " + sSize);
+		}
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			clear();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			trimToSize(sSize / 2);
+		}
+	}
+
+	/**
+	 * 淘汰最久未访问的缓存，直至不超过指定大小
+	 * 
+	 * @param maxSize
+	 */
+	private static void trimToSize(long maxSize) {
+		Iterator<Map.Entry<String, Entry>> iterator = ENTRIES.entrySet()
+				.iterator();
+		while (sSize > maxSize && iterator.hasNext()) {
+			sSize -= iterator.next().getValue().mSize;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * 缓存项
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Entry {
+		/** 原始数据 */
+		private final String mData;
+		/** 解析结果 */
+		private final AbstractIFItem mItem;
+		/** 占用的字节数(估算) */
+		private final long mSize;
+
+		/**
+		 * 构造
+		 * 
+		 * @param data
+		 * @param item
+		 * @param size
+		 */
+		Entry(String data, AbstractIFItem item, long size) {
+			mData = data;
+			mItem = item;
+			mSize = size;
+		}
+	}
+}
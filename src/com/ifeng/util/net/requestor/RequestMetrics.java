@@ -0,0 +1,391 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 网络请求的统计中心，按接口(endpoint)记录请求各阶段的耗时分布、数据量及缓存命中情况，
+ * 可通过{@link #dump()}输出文本报告，用于线上监控p50/p95/p99。
+ * 
+ * @author Calvin
+ * 
+ */
+public final class RequestMetrics {
+
+	/** 报告中输出的百分位 */
+	private static final double[] DUMP_PERCENTILES = new double[] { 50, 95,
+			99 };
+
+	/** 各接口的统计 */
+	private static final HashMap<String, EndpointMetrics> ENDPOINTS = new HashMap<String, EndpointMetrics>();
+
+	/** 是否开启统计 */
+	private static volatile boolean sEnabled = true;
+
+	/**
+	 * 请求阶段
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public enum Phase {
+		/** 任务在线程池中的排队等待 */
+		QUEUE_WAIT,
+		/** 获取连接(包括建立连接) */
+		CONNECT,
+		/** 发出请求到收到响应头 */
+		FIRST_BYTE,
+		/** 开始执行请求到收到响应头，即获取连接与等待响应之和 */
+		RESPONSE,
+		/** 读取响应数据 */
+		BODY_READ,
+		/** 解析数据，流式解析时包括读取响应数据 */
+		PARSE,
+		/** 读取缓存 */
+		CACHE_READ;
+	}
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private RequestMetrics() {
+	}
+
+	/**
+	 * 设置是否开启统计
+	 * 
+	 * @param enabled
+	 */
+	public static void setEnabled(boolean enabled) {
+		sEnabled = enabled;
+	}
+
+	/**
+	 * @return 是否开启统计
+	 */
+	public static boolean isEnabled() {
+		return sEnabled;
+	}
+
+	/**
+	 * 获取接口的统计，不存在时创建
+	 * 
+	 * @param endpoint
+	 * @return 未开启统计或endpoint为null时返回null
+	 */
+	public static EndpointMetrics getEndpoint(String endpoint) {
+		if (!sEnabled || endpoint == null) {
+			return null;
+		}
+		synchronized (ENDPOINTS) {
+			EndpointMetrics metrics = ENDPOINTS.get(endpoint);
+			if (metrics == null) {
+				metrics = new EndpointMetrics(endpoint);
+				ENDPOINTS.put(endpoint, metrics);
+			}
+			return metrics;
+		}
+	}
+
+	/**
+	 * 获取所有已记录的接口
+	 * 
+	 * @return
+	 */
+	public static List<String> getEndpoints() {
+		List<String> endpoints;
+		synchronized (ENDPOINTS) {
+			endpoints = new ArrayList<String>(ENDPOINTS.keySet());
+		}
+		Collections.sort(endpoints);
+		return endpoints;
+	}
+
+	/**
+	 * 记录阶段耗时
+	 * 
+	 * @param endpoint
+	 * @param phase
+	 * @param millis
+	 */
+	public static void recordPhase(String endpoint, Phase phase, long millis) {
+		EndpointMetrics metrics = getEndpoint(endpoint);
+		if (metrics != null) {
+			metrics.getHistogram(phase).record(millis);
+		}
+	}
+
+	/**
+	 * 清空所有统计
+	 */
+	public static void reset() {
+		synchronized (ENDPOINTS) {
+			ENDPOINTS.clear();
+		}
+	}
+
+	/**
+	 * 输出文本报告
+	 * 
+	 * @return
+	 */
+	public static String dump() {
+		StringBuilder sb = new StringBuilder();
+		for (String endpoint : getEndpoints()) {
+			EndpointMetrics metrics;
+			synchronized (ENDPOINTS) {
+				metrics = ENDPOINTS.get(endpoint);
+			}
+			if (metrics != null) {
+				metrics.dump(sb);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 单个接口的统计
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public static class EndpointMetrics {
+		/** 接口 */
+		private final String mEndpoint;
+		/** 各阶段的耗时分布 */
+		private final LatencyHistogram[] mHistograms = new LatencyHistogram[Phase
+				.values().length];
+
+		/** 网络请求数 */
+		private long mRequestCount;
+		/** 网络请求失败数 */
+		private long mFailureCount;
+		/** 网络请求重试数 */
+		private long mRetryCount;
+		/** 传输的数据量(压缩) */
+		private long mCompressedBytes;
+		/** 解压后的数据量 */
+		private long mUncompressedBytes;
+		/** 缓存命中数 */
+		private long mCacheHitCount;
+		/** 命中过期缓存(预加载后仍访问网络)数 */
+		private long mCacheStaleHitCount;
+		/** 缓存未命中数 */
+		private long mCacheMissCount;
+		/** 发出的对冲请求数 */
+		private long mHedgeCount;
+		/** 对冲请求胜出数 */
+		private long mHedgeWinCount;
+
+		/**
+		 * 构造
+		 * 
+		 * @param endpoint
+		 */
+		private EndpointMetrics(String endpoint) {
+			mEndpoint = endpoint;
+		}
+
+		/**
+		 * 获取阶段的耗时分布
+		 * 
+		 * @param phase
+		 * @return
+		 */
+		public synchronized LatencyHistogram getHistogram(Phase phase) {
+			LatencyHistogram histogram = mHistograms[phase.ordinal()];
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				mHistograms[phase.ordinal()] = histogram;
+			}
+			return histogram;
+		}
+
+		/**
+		 * 记录一次网络请求
+		 */
+		public synchronized void onRequest() {
+			mRequestCount++;
+		}
+
+		/**
+		 * 记录一次网络请求失败
+		 */
+		public synchronized void onFailure() {
+			mFailureCount++;
+		}
+
+		/**
+		 * 记录一次重试
+		 */
+		public synchronized void onRetry() {
+			mRetryCount++;
+		}
+
+		/**
+		 * 记录传输的数据量
+		 * 
+		 * @param compressed
+		 *            传输的字节数
+		 * @param uncompressed
+		 *            解压后的字节数
+		 */
+		public synchronized void onBytes(long compressed, long uncompressed) {
+			mCompressedBytes += compressed;
+			mUncompressedBytes += uncompressed;
+		}
+
+		/**
+		 * 记录一次对冲请求
+		 */
+		public synchronized void onHedge() {
+			mHedgeCount++;
+		}
+
+		/**
+		 * 记录一次对冲请求胜出
+		 */
+		public synchronized void onHedgeWin() {
+			mHedgeWinCount++;
+		}
+
+		/**
+		 * 记录缓存命中
+		 */
+		public synchronized void onCacheHit() {
+			mCacheHitCount++;
+		}
+
+		/**
+		 * 记录命中过期缓存
+		 */
+		public synchronized void onCacheStaleHit() {
+			mCacheStaleHitCount++;
+		}
+
+		/**
+		 * 记录缓存未命中
+		 */
+		public synchronized void onCacheMiss() {
+			mCacheMissCount++;
+		}
+
+		/**
+		 * @return 接口
+		 */
+		public String getEndpoint() {
+			return mEndpoint;
+		}
+
+		/**
+		 * @return 网络请求数
+		 */
+		public synchronized long getRequestCount() {
+			return mRequestCount;
+		}
+
+		/**
+		 * @return 网络请求失败数
+		 */
+		public synchronized long getFailureCount() {
+			return mFailureCount;
+		}
+
+		/**
+		 * @return 网络请求重试数
+		 */
+		public synchronized long getRetryCount() {
+			return mRetryCount;
+		}
+
+		/**
+		 * @return 传输的数据量(压缩)
+		 */
+		public synchronized long getCompressedBytes() {
+			return mCompressedBytes;
+		}
+
+		/**
+		 * @return 解压后的数据量
+		 */
+		public synchronized long getUncompressedBytes() {
+			return mUncompressedBytes;
+		}
+
+		/**
+		 * @return 发出的对冲请求数
+		 */
+		public synchronized long getHedgeCount() {
+			return mHedgeCount;
+		}
+
+		/**
+		 * @return 对冲请求胜出数
+		 */
+		public synchronized long getHedgeWinCount() {
+			return mHedgeWinCount;
+		}
+
+		/**
+		 * @return 缓存命中数
+		 */
+		public synchronized long getCacheHitCount() {
+			return mCacheHitCount;
+		}
+
+		/**
+		 * @return 命中过期缓存数
+		 */
+		public synchronized long getCacheStaleHitCount() {
+			return mCacheStaleHitCount;
+		}
+
+		/**
+		 * @return 缓存未命中数
+		 */
+		public synchronized long getCacheMissCount() {
+			return mCacheMissCount;
+		}
+
+		/**
+		 * 输出文本报告
+		 * 
+		 * @param sb
+		 */
+		private synchronized void dump(StringBuilder sb) {
+			sb.append(mEndpoint).append('\n');
+			sb.append(String.format(Locale.US,
+					"  requests=%d failures=%d retries=%d\n", mRequestCount,
+					mFailureCount, mRetryCount));
+			if (mHedgeCount > 0) {
+				sb.append(String.format(Locale.US, "  hedges=%d won=%d\n",
+						mHedgeCount, mHedgeWinCount));
+			}
+			sb.append(String.format(Locale.US,
+					"  bytes compressed=%d uncompressed=%d\n",
+					mCompressedBytes, mUncompressedBytes));
+			sb.append(String.format(Locale.US,
+					"  cache hit=%d stale=%d miss=%d\n", mCacheHitCount,
+					mCacheStaleHitCount, mCacheMissCount));
+			for (Phase phase : Phase.values()) {
+				LatencyHistogram histogram = mHistograms[phase.ordinal()];
+				if (histogram == null || histogram.getCount() == 0) {
+					continue;
+				}
+				sb.append(String.format(Locale.US, "  %-10s n=%d mean=%dms",
+						phase.name().toLowerCase(Locale.US),
+						histogram.getCount(), histogram.getMean()));
+				for (double percentile : DUMP_PERCENTILES) {
+					sb.append(String.format(Locale.US, " p%d=%dms",
+							(int) percentile,
+							histogram.getValueAtPercentile(percentile)));
+				}
+				sb.append(String.format(Locale.US, " max=%dms\n",
+						histogram.getMax()));
+			}
+		}
+	}
+}
@@ -1,13 +1,16 @@
 package com.ifeng.util.net.requestor;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.os.Process;
 
 import com.ifeng.BaseApplicaion;
 import com.ifeng.util.logging.Log;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.model.PriorityScheduler.Lane;
+import com.ifeng.util.net.parser.AbstractIFItem;
 
 public abstract class RequestTask implements Runnable {
 	/** log tag. */
@@ -16,12 +19,6 @@ public abstract class RequestTask implements Runnable {
 	/** if enabled, logcat will output the log. */
 	protected static final boolean DEBUG = true & BaseApplicaion.DEBUG;
 
-	/**
-	 * 线程池
-	 */
-	private static final ExecutorService THREAD_POOL = Executors
-			.newFixedThreadPool(5);
-
 	/**
 	 * 任务是否已经删除
 	 */
@@ -32,6 +29,11 @@ public abstract class RequestTask implements Runnable {
 	 */
 	private int mPriority;
 
+	/**
+	 * 任务调度通道，为null时根据线程优先级决定
+	 */
+	private Lane mLane;
+
 	/**
 	 * 请求结果反馈
 	 */
@@ -87,7 +89,43 @@ public abstract class RequestTask implements Runnable {
 			Log.d(TAG,
 					"---- prepare request time:" + System.currentTimeMillis());
 		}
-		THREAD_POOL.execute(this);
+		PriorityScheduler.getInstance().execute(this, getLane());
+	}
+
+	/**
+	 * 任务在{@link #run()}返回后是否仍有后续操作(例如延时重试)未完成，此时结果将稍后回调
+	 * 
+	 * @return
+	 */
+	public boolean isPending() {
+		return false;
+	}
+
+	/**
+	 * @return 线程优先级
+	 */
+	protected int getPriority() {
+		return mPriority;
+	}
+
+	/**
+	 * @return 任务调度通道
+	 */
+	public Lane getLane() {
+		if (mLane != null) {
+			return mLane;
+		}
+		return mPriority >= Process.THREAD_PRIORITY_BACKGROUND ? Lane.BACKGROUND
+				: Lane.INTERACTIVE;
+	}
+
+	/**
+	 * 设置任务调度通道，异步执行的后续操作(例如延时重试)将提交至该通道
+	 * 
+	 * @param lane
+	 */
+	public void setLane(Lane lane) {
+		this.mLane = lane;
 	}
 
 	/**
@@ -132,4 +170,66 @@ public abstract class RequestTask implements Runnable {
 		 */
 		void onProgress();
 	}
+
+	/**
+	 * 以流的方式获取数据结果的Listener，数据无需完整读入内存即可交由解析器处理
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	protected interface OnStreamRequestTaskListener extends
+			OnRequestTaskListener {
+		/**
+		 * 请求成功，需要在方法返回前完成对数据流的读取
+		 * 
+		 * @param in
+		 *            已经解压的数据流
+		 * @param charset
+		 *            数据编码
+		 * @throws IOException
+		 *             读取数据流失败，请求将会重试
+		 */
+		void onSuccess(InputStream in, String charset) throws IOException;
+	}
+
+	/**
+	 * 可直接获取解析结果快照的Listener，不存在快照时仍通过{@link #onSuccess(String)}回调原始数据
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	protected interface OnSnapshotRequestTaskListener extends
+			OnRequestTaskListener {
+		/**
+		 * 请求成功，获取到解析结果的快照
+		 * 
+		 * @param item
+		 *            解析结果，来自内存缓存时为共享的实例
+		 */
+		void onSuccess(AbstractIFItem item);
+	}
+
+	/**
+	 * 支持缓存校验(ETag / Last-Modified)的Listener
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	protected interface OnRevalidateRequestTaskListener extends
+			OnRequestTaskListener {
+		/**
+		 * 收到响应中的缓存校验信息，在{@link #onSuccess(String)}之前回调
+		 * 
+		 * @param eTag
+		 *            ETag，可为null
+		 * @param lastModified
+		 *            Last-Modified，可为null
+		 */
+		void onValidatorsReceived(String eTag, String lastModified);
+
+		/**
+		 * 服务器返回304，数据未发生变化，可继续使用已有缓存
+		 */
+		void onNotModified();
+	}
 }
@@ -0,0 +1,57 @@
+package com.ifeng.util.net.requestor;
+
+import com.ifeng.BaseApplicaion;
+import com.ifeng.util.logging.Log;
+
+/**
+ * 进程内共享的重试预算(令牌桶)。每次发起新请求存入{@link #TOKEN_RATIO}个令牌，每次重试消耗一个令牌，
+ * 使重试量始终不超过请求量的一定比例；服务端持续故障时令牌耗尽，客户端停止重试，避免放大故障。
+ * 
+ * @author Calvin
+ * 
+ */
+final class RetryBudget {
+
+	/** log tag. */
+	private static final String TAG = RetryBudget.class.getSimpleName();
+
+	/** if enabled, logcat will output the log. */
+	private static final boolean DEBUG = true & BaseApplicaion.DEBUG;
+
+	/** 令牌上限，即允许的突发重试数 */
+	private static final float MAX_TOKENS = 10f;
+	/** 每次请求存入的令牌数，即重试量与请求量的比例上限 */
+	private static final float TOKEN_RATIO = 0.1f;
+
+	/** 当前令牌数 */
+	private static float sTokens = MAX_TOKENS;
+
+	/**
+	 * 工具类，不提供实例
+	 */
+	private RetryBudget() {
+	}
+
+	/**
+	 * 发起新请求时调用，存入令牌
+	 */
+	static synchronized void onRequest() {
+		sTokens = Math.min(MAX_TOKENS, sTokens + TOKEN_RATIO);
+	}
+
+	/**
+	 * 尝试获取一次重试的许可
+	 * 
+	 * @return 预算耗尽时返回false
+	 */
+	static synchronized boolean tryAcquire() {
+		if (sTokens < 1f) {
+			if (DEBUG) {
+				Log.d(TAG, "retry budget exhausted");
+			}
+			return false;
+		}
+		sTokens -= 1f;
+		return true;
+	}
+}
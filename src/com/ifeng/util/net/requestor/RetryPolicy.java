@@ -0,0 +1,90 @@
+package com.ifeng.util.net.requestor;
+
+import java.util.Random;
+
+import org.apache.http.HttpStatus;
+
+/**
+ * 配置网络请求重试策略的参数类。重试间隔采用带随机抖动的指数退避(full jitter)：第n次重试前，
+ * 在0到min(maxDelay, baseDelay * 2^n)之间随机等待，避免大量客户端在服务端故障时同步重试。
+ * 仅网络异常及{@link #retryableStatusCodes}中的状态码会触发重试，其中状态码仅对GET等幂等请求触发重试，且重试受全局的{@link RetryBudget}限制。
+ * 
+ * @author Calvin
+ * 
+ */
+public class RetryPolicy {
+
+	/** 默认请求尝试次数 */
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+	/** 默认退避基准时间 */
+	public static final long DEFAULT_BASE_DELAY = 1000L;
+	/** 默认最长退避时间 */
+	public static final long DEFAULT_MAX_DELAY = 30 * 1000L;
+
+	/** 随机数 */
+	private static final Random RANDOM = new Random();
+
+	/** 请求尝试次数(包含首次请求)，小于等于1时不重试 */
+	public int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	/** 退避基准时间 */
+	public long baseDelay = DEFAULT_BASE_DELAY;
+	/** 最长退避时间 */
+	public long maxDelay = DEFAULT_MAX_DELAY;
+	/** 可重试的http状态码 */
+	public int[] retryableStatusCodes = new int[] {
+			HttpStatus.SC_REQUEST_TIMEOUT, 429,
+			HttpStatus.SC_INTERNAL_SERVER_ERROR, HttpStatus.SC_BAD_GATEWAY,
+			HttpStatus.SC_SERVICE_UNAVAILABLE, HttpStatus.SC_GATEWAY_TIMEOUT };
+	/** 是否受全局重试预算限制 */
+	public boolean useRetryBudget = true;
+
+	/**
+	 * 创建不进行重试的策略
+	 * 
+	 * @return
+	 */
+	public static RetryPolicy newNoRetryPolicy() {
+		RetryPolicy policy = new RetryPolicy();
+		policy.maxAttempts = 1;
+		return policy;
+	}
+
+	/**
+	 * 状态码是否可重试
+	 * 
+	 * @param statusCode
+	 * @return
+	 */
+	public boolean isRetryableStatus(int statusCode) {
+		if (retryableStatusCodes == null) {
+			return false;
+		}
+		for (int code : retryableStatusCodes) {
+			if (code == statusCode) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 计算重试前的等待时间
+	 * 
+	 * @param retryCount
+	 *            已经重试的次数，从0开始
+	 * @return
+	 */
+	public long getBackoffDelay(int retryCount) {
+		long ceiling = maxDelay;
+		// 避免移位溢出
+		if (retryCount < 31 && baseDelay < (maxDelay >> retryCount)) {
+			ceiling = baseDelay << retryCount;
+		}
+		if (ceiling <= 0) {
+			return 0;
+		}
+		synchronized (RANDOM) {
+			return (long) (RANDOM.nextDouble() * (ceiling + 1));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.ifeng.util.net.requestor;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 在读取数据流的同时，将读到的数据写入另一个输出流(例如缓存文件)，使解析与缓存在一次读取中完成。
+ * 解析器通常会吞掉读取过程中的异常，因此此处记录读取异常，供调用方在解析完成后判断数据是否完整。
+ * 
+ * @author Calvin
+ * 
+ */
+class TeeInputStream extends FilterInputStream {
+
+	/** 缓冲区大小 */
+	private static final int BUFFER_SIZE = 4096;
+
+	/** 分支输出流，可为null */
+	private OutputStream mBranch;
+	/** 分支输出流是否写入失败 */
+	private boolean mIsBranchFailed;
+	/** 读取数据流时发生的异常 */
+	private IOException mReadException;
+
+	/**
+	 * 构造
+	 * 
+	 * @param in
+	 *            数据源
+	 * @param branch
+	 *            分支输出流，为null时仅记录读取异常
+	 */
+	TeeInputStream(InputStream in, OutputStream branch) {
+		super(in);
+		mBranch = branch;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b;
+		try {
+			b = super.read();
+		} catch (IOException e) {
+			mReadException = e;
+			throw e;
+		}
+		if (b >= 0 && canWriteBranch()) {
+			try {
+				mBranch.write(b);
+			} catch (IOException e) {
+				mIsBranchFailed = true;
+			}
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException {
+		int length;
+		try {
+			length = super.read(buffer, offset, count);
+		} catch (IOException e) {
+			mReadException = e;
+			throw e;
+		}
+		if (length > 0 && canWriteBranch()) {
+			try {
+				mBranch.write(buffer, offset, length);
+			} catch (IOException e) {
+				mIsBranchFailed = true;
+			}
+		}
+		return length;
+	}
+
+	@Override
+	public long skip(long byteCount) throws IOException {
+		if (byteCount <= 0) {
+			return 0;
+		}
+		// 跳过的数据同样需要写入分支
+		byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, byteCount)];
+		long skipped = 0;
+		while (skipped < byteCount) {
+			int length = read(buffer, 0,
+					(int) Math.min(buffer.length, byteCount - skipped));
+			if (length < 0) {
+				break;
+			}
+			skipped += length;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * 读取剩余的全部数据，若此前读取过程中发生过异常，则抛出该异常
+	 * 
+	 * @throws IOException
+	 */
+	void drain() throws IOException {
+		if (mReadException != null) {
+			throw mReadException;
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+		while (read(buffer, 0, buffer.length) >= 0) {
+		}
+	}
+
+	/**
+	 * 分支输出流是否写入失败
+	 * 
+	 * @return
+	 */
+	boolean isBranchFailed() {
+		return mIsBranchFailed;
+	}
+
+	/**
+	 * 是否可以继续写入分支
+	 * 
+	 * @return
+	 */
+	private boolean canWriteBranch() {
+		return mBranch != null && !mIsBranchFailed;
+	}
+}
@@ -1,38 +1,71 @@
 package com.ifeng.util.net.requestor;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.Future;
 
-import org.apache.http.Header;
-import org.apache.http.HeaderElement;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.ByteArrayBody;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.protocol.HTTP;
-import org.apache.http.util.EntityUtils;
 
 import android.content.Context;
-import android.net.Uri;
 import android.os.Process;
 
+import com.ifeng.util.Utility;
 import com.ifeng.util.logging.Log;
-import com.ifeng.util.net.ProxyHttpClient;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.net.NetworkProfile;
+import com.ifeng.util.net.SharedHttpClient;
 
 /**
- * 上传文件的网络请求类
+ * 上传文件的网络请求类。开启分片上传后，文件按分片逐个上传，每个分片的请求携带{@link #PARAM_UPLOAD_ID}、
+ * {@link #PARAM_CHUNK_INDEX}、{@link #PARAM_CHUNK_COUNT}、{@link #PARAM_CHUNK_OFFSET}、
+ * {@link #PARAM_TOTAL_SIZE}及分片数据，服务器返回2xx即视为分片完成；全部分片完成后，
+ * 以文件参数名携带上传标识并携带{@link #PARAM_UPLOAD_COMPLETE}，请求服务器合并文件
  * 
  * @author xuwei
  * 
  */
 public class UploadRequestTask extends WebRequestTask {
 
+	/** 分片上传参数：上传标识，同一文件的多次上传保持一致 */
+	protected static final String PARAM_UPLOAD_ID = "upload_id";
+	/** 分片上传参数：分片序号，从0开始 */
+	protected static final String PARAM_CHUNK_INDEX = "chunk_index";
+	/** 分片上传参数：分片数量 */
+	protected static final String PARAM_CHUNK_COUNT = "chunk_count";
+	/** 分片上传参数：分片在文件中的偏移 */
+	protected static final String PARAM_CHUNK_OFFSET = "chunk_offset";
+	/** 分片上传参数：文件大小 */
+	protected static final String PARAM_TOTAL_SIZE = "total_size";
+	/** 分片上传参数：全部分片上传完成，请求服务器合并文件 */
+	protected static final String PARAM_UPLOAD_COMPLETE = "upload_complete";
+
+	/** 默认分片大小 */
+	public static final int DEFAULT_CHUNK_SIZE = 256 * 1024;
+	/** 默认同时上传的分片数量 */
+	public static final int DEFAULT_MAX_PARALLEL_CHUNKS = 2;
+
+	/** 是否分片上传 */
+	private boolean mChunkedUploadEnabled;
+	/** 分片大小 */
+	private int mChunkSize = DEFAULT_CHUNK_SIZE;
+	/** 同时上传的分片数量 */
+	private int mMaxParallelChunks = DEFAULT_MAX_PARALLEL_CHUNKS;
+	/** 上传进度回调 */
+	private OnUploadProgressListener mOnUploadProgressListener;
+
 	/**
 	 * 构造函数
 	 * 
@@ -40,6 +73,8 @@ public class UploadRequestTask extends WebRequestTask {
 	 *            Context
 	 * @param url
 	 *            请求地址
+	 * @param headers
+	 *            请求头
 	 * @param params
 	 *            请求参数
 	 * @param listener
@@ -59,6 +94,8 @@ public class UploadRequestTask extends WebRequestTask {
 	 *            Context
 	 * @param url
 	 *            请求地址
+	 * @param headers
+	 *            请求头
 	 * @param params
 	 *            请求参数
 	 * @param priority
@@ -69,135 +106,515 @@ public class UploadRequestTask extends WebRequestTask {
 	public UploadRequestTask(Context context, String url,
 			List<NameValuePair> headers, List<NameValuePair> params,
 			int priority, OnRequestTaskListener listener) {
-		super(context, url, params, params, priority, listener);
+		super(context, url, headers, params, priority, listener);
 	}
 
 	/**
-	 * 处理文件上传请求
+	 * 创建文件上传请求
 	 * 
 	 * @throws Exception
 	 */
 	@Override
-	protected void processRequest() {
-		if (DEBUG) {
-			Log.d(TAG,
-					"---- start upload request time:"
-							+ System.currentTimeMillis());
-		}
+	protected HttpUriRequest createRequest() throws Exception {
+		HttpPost request = new HttpPost(mUrl);
+		MultipartEntityBuilder multipartEntity = MultipartEntityBuilder
+				.create();
+		multipartEntity.setCharset(Charset.forName(HTTP.UTF_8));
+		multipartEntity.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
 
-		if (mOnRequestTaskListener == null) {
-			if (DEBUG) {
-				Log.e(TAG, "upload request listener is null");
+		if (mParams != null) {
+			for (NameValuePair pair : mParams) {
+				if (pair instanceof FileValuePair) {
+					multipartEntity.addBinaryBody(pair.getName(),
+							new File(pair.getValue()));
+				} else {
+					multipartEntity.addTextBody(pair.getName(),
+							pair.getValue());
+				}
 			}
-			return;
 		}
 
-		if (mUrl == null) {
-			mOnRequestTaskListener
-					.onFailed(IRequestModelErrorCode.ERROR_CODE_NO_URL);
-			return;
+		request.setEntity(multipartEntity.build());
+		if (DEBUG) {
+			Log.d(TAG, "---- upload request url:" + mUrl);
 		}
+		return request;
+	}
 
-		int tryCount = 0;
-		while (tryCount < TRY_COUNT) {
-			ProxyHttpClient client = null;
-			try {
-				client = new ProxyHttpClient(mContext);
-				String url = mUrl;
-
-				HttpPost request = new HttpPost(url);
-				MultipartEntityBuilder multipartEntity = MultipartEntityBuilder
-						.create();
-				multipartEntity.setCharset(Charset.forName(HTTP.UTF_8));
-				multipartEntity.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
-
-				if (mParams != null) {
-					for (NameValuePair pair : mParams) {
-						if (pair instanceof FileValuePair) {
-							multipartEntity.addBinaryBody(pair.getName(),
-									new File(pair.getValue()));
-						} else {
-							multipartEntity.addTextBody(pair.getName(),
-									pair.getValue());
-						}
-					}
-				}
+	/**
+	 * 上传请求为非幂等请求，服务器返回错误时不再重试
+	 */
+	@Override
+	protected boolean isIdempotent() {
+		return false;
+	}
 
-				request.setEntity(multipartEntity.build());
+	@Override
+	protected int attempt() {
+		if (!mChunkedUploadEnabled) {
+			return super.attempt();
+		}
+		return attemptChunkedUpload();
+	}
 
-				if (mHeaders != null) {
-					for (NameValuePair header : mHeaders) {
-						request.setHeader(Uri.encode(header.getName()),
-								Uri.encode(header.getValue()));
-					}
+	/**
+	 * 分片上传：各文件按{@link #mChunkSize}分片，每个分片携带{@link #PARAM_UPLOAD_ID}等参数单独上传，
+	 * 已完成的分片会被持久化记录，失败重试或进程重启后跳过；全部分片完成后，携带
+	 * {@link #PARAM_UPLOAD_COMPLETE}及各文件的上传标识请求服务器合并文件，其响应交由listener处理
+	 * 
+	 * @return
+	 */
+	private int attemptChunkedUpload() {
+		// 准备各文件的上传进度
+		final List<Chunk> pendingChunks = new ArrayList<Chunk>();
+		final List<NameValuePair> filePairs = new ArrayList<NameValuePair>();
+		final List<ChunkedUploadState> states = new ArrayList<ChunkedUploadState>();
+		long totalBytes = 0;
+		long uploadedBytes = 0;
+		if (mParams != null) {
+			for (NameValuePair pair : mParams) {
+				if (!(pair instanceof FileValuePair)) {
+					continue;
 				}
-
-				HttpResponse response = client.execute(request);
-				String content = null;
-
-				boolean isGzip = false;
-				Header header = response.getEntity().getContentEncoding();
-				if (header != null) {
-					for (HeaderElement element : header.getElements()) {
-						if (element.getName().equalsIgnoreCase("gzip")) {
-							isGzip = true;
-							break;
-						}
+				File file = new File(pair.getValue());
+				if (!file.isFile()) {
+					if (DEBUG) {
+						Log.e(TAG, "upload file not exist : " + file);
 					}
+					return IRequestModelErrorCode.ERROR_CODE_NET_FAILED;
 				}
-				if (isGzip) {
-					GZIPInputStream gzIn = null;
-					BufferedReader reader = null;
-					try {
-						gzIn = new GZIPInputStream(response.getEntity()
-								.getContent());
-						reader = new BufferedReader(new InputStreamReader(gzIn));
-						StringBuffer str = new StringBuffer();
-						String line = null;
-						while ((line = reader.readLine()) != null) {
-							str.append(line);
-						}
-						content = str.toString();
-					} finally {
-						if (reader != null) {
-							reader.close();
-						}
-						if (gzIn != null) {
-							gzIn.close();
-						}
+				ChunkedUploadState state = ChunkedUploadState.open(mContext,
+						getUploadId(pair, file), file.length(), mChunkSize);
+				filePairs.add(pair);
+				states.add(state);
+				totalBytes += state.getTotalSize();
+				uploadedBytes += state.getUploadedBytes();
+				for (int i = 0; i < state.getChunkCount(); i++) {
+					if (!state.isDone(i)) {
+						pendingChunks.add(new Chunk(pair, file, state, i));
 					}
-				} else {
-					content = EntityUtils.toString(response.getEntity());
 				}
+			}
+		}
+
+		final ProgressCounter progress = new ProgressCounter(uploadedBytes,
+				totalBytes);
+		progress.add(0);
+
+		// 并行上传未完成的分片，任一分片失败时放弃其余分片，由重试策略决定是否重试
+		if (!pendingChunks.isEmpty()) {
+			ChunkBatch batch = new ChunkBatch(pendingChunks, progress);
+			// 当前线程参与上传，其余并行的分片由调度器中的辅助任务上传
+			int helperCount = Math.min(Math.max(1, mMaxParallelChunks),
+					pendingChunks.size()) - 1;
+			List<Future<?>> helpers = new ArrayList<Future<?>>();
+			for (int i = 0; i < helperCount; i++) {
+				helpers.add(PriorityScheduler.getInstance().execute(batch,
+						getLane()));
+			}
+			batch.run();
+
+			int errorCode;
+			try {
+				errorCode = batch.close();
+			} catch (InterruptedException e) {
+				batch.fail(IRequestModelErrorCode.ERROR_CODE_NET_FAILED);
+				errorCode = IRequestModelErrorCode.ERROR_CODE_NET_FAILED;
+			}
+			// 尚未开始的辅助任务无需执行
+			for (Future<?> helper : helpers) {
+				helper.cancel(false);
+			}
+
+			if (isCancel()) {
+				return ATTEMPT_SUCCEEDED;
+			}
+			if (errorCode != ATTEMPT_SUCCEEDED) {
+				return errorCode;
+			}
+		}
+
+		// 通知服务器合并文件
+		HttpPost request = null;
+		try {
+			request = new HttpPost(mUrl);
+			MultipartEntityBuilder multipartEntity = newMultipartEntity();
+			for (int i = 0; i < states.size(); i++) {
+				multipartEntity.addTextBody(filePairs.get(i).getName(), states
+						.get(i).getUploadId());
+			}
+			multipartEntity.addTextBody(PARAM_UPLOAD_COMPLETE, "1");
+			request.setEntity(multipartEntity.build());
+			NetworkProfile.getCurrent().applyTo(request.getParams());
+			applyHeaders(request);
+			registerRequest(request);
+
+			HttpResponse response = SharedHttpClient.getHttpClient(mContext)
+					.execute(request);
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (getRetryPolicy().isRetryableStatus(statusCode)) {
+				if (response.getEntity() != null) {
+					response.getEntity().consumeContent();
+				}
+				return IRequestModelErrorCode.ERROR_CODE_SERVICE_ERROR;
+			}
+
+			for (ChunkedUploadState state : states) {
+				state.delete();
+			}
+			handleResponse(response);
+			return ATTEMPT_SUCCEEDED;
+		} catch (Exception e) {
+			if (!isCancel()) {
+				e.printStackTrace();
+			}
+			if (request != null) {
+				request.abort();
+			}
+		} finally {
+			unregisterRequest(request);
+		}
+		return IRequestModelErrorCode.ERROR_CODE_NET_FAILED;
+	}
+
+	/**
+	 * 上传一个分片
+	 * 
+	 * @param chunk
+	 * @return 成功时返回{@link #ATTEMPT_SUCCEEDED}，否则返回错误码
+	 */
+	private int uploadChunk(Chunk chunk) {
+		ChunkedUploadState state = chunk.mState;
+		HttpPost request = null;
+		try {
+			byte[] data = readChunk(chunk.mFile,
+					state.getChunkOffset(chunk.mIndex),
+					state.getChunkLength(chunk.mIndex));
+
+			request = new HttpPost(mUrl);
+			MultipartEntityBuilder multipartEntity = newMultipartEntity();
+			multipartEntity.addTextBody(PARAM_UPLOAD_ID, state.getUploadId());
+			multipartEntity.addTextBody(PARAM_CHUNK_INDEX,
+					String.valueOf(chunk.mIndex));
+			multipartEntity.addTextBody(PARAM_CHUNK_COUNT,
+					String.valueOf(state.getChunkCount()));
+			multipartEntity.addTextBody(PARAM_CHUNK_OFFSET,
+					String.valueOf(state.getChunkOffset(chunk.mIndex)));
+			multipartEntity.addTextBody(PARAM_TOTAL_SIZE,
+					String.valueOf(state.getTotalSize()));
+			multipartEntity.addPart(chunk.mPair.getName(), new ByteArrayBody(
+					data, chunk.mFile.getName()));
+			request.setEntity(multipartEntity.build());
+			NetworkProfile.getCurrent().applyTo(request.getParams());
+			applyHeaders(request);
+			registerRequest(request);
+
+			HttpResponse response = SharedHttpClient.getHttpClient(mContext)
+					.execute(request);
+			if (response.getEntity() != null) {
+				response.getEntity().consumeContent();
+			}
+			int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode / 100 != 2) {
 				if (DEBUG) {
-					Log.d(TAG,
-							"---- upload request over time:"
-									+ System.currentTimeMillis());
+					Log.d(TAG, "---- upload chunk " + chunk.mIndex
+							+ " failed with status:" + statusCode);
 				}
-				mOnRequestTaskListener.onSuccess(content);
-				return;
-			} catch (Exception e) {
+				return IRequestModelErrorCode.ERROR_CODE_SERVICE_ERROR;
+			}
+
+			state.markDone(chunk.mIndex);
+			return ATTEMPT_SUCCEEDED;
+		} catch (Exception e) {
+			if (!isCancel()) {
 				e.printStackTrace();
-				try {
-					Thread.sleep(SLEEP_TIME_WHILE_REQUEST_FAILED);
-				} catch (InterruptedException e1) {
-					e1.printStackTrace();
+			}
+			// 中断请求，将连接归还连接池
+			if (request != null) {
+				request.abort();
+			}
+		} finally {
+			unregisterRequest(request);
+		}
+		return IRequestModelErrorCode.ERROR_CODE_NET_FAILED;
+	}
+
+	/**
+	 * 创建携带全部字符串参数的multipart实体
+	 * 
+	 * @return
+	 */
+	private MultipartEntityBuilder newMultipartEntity() {
+		MultipartEntityBuilder multipartEntity = MultipartEntityBuilder
+				.create();
+		multipartEntity.setCharset(Charset.forName(HTTP.UTF_8));
+		multipartEntity.setMode(HttpMultipartMode.BROWSER_COMPATIBLE);
+		if (mParams != null) {
+			for (NameValuePair pair : mParams) {
+				if (!(pair instanceof FileValuePair)) {
+					multipartEntity.addTextBody(pair.getName(),
+							pair.getValue());
+				}
+			}
+		}
+		return multipartEntity;
+	}
+
+	/**
+	 * 读取分片数据
+	 * 
+	 * @param file
+	 * @param offset
+	 * @param length
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] readChunk(File file, long offset, int length)
+			throws IOException {
+		byte[] data = new byte[length];
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			randomAccessFile.seek(offset);
+			randomAccessFile.readFully(data);
+		} finally {
+			randomAccessFile.close();
+		}
+		return data;
+	}
+
+	/**
+	 * 生成上传标识，同一地址、同一文件(路径、大小、修改时间均相同)的上传标识保持一致
+	 * 
+	 * @param pair
+	 * @param file
+	 * @return
+	 */
+	private String getUploadId(NameValuePair pair, File file) {
+		return Utility.getMD5(mUrl + '\n' + pair.getName() + '\n'
+				+ file.getAbsolutePath() + '\n' + file.length() + '\n'
+				+ file.lastModified() + '\n' + mChunkSize);
+	}
+
+	/**
+	 * 设置是否分片上传，分片上传需要服务器支持
+	 * 
+	 * @param chunkedUploadEnabled
+	 */
+	public void setChunkedUploadEnabled(boolean chunkedUploadEnabled) {
+		this.mChunkedUploadEnabled = chunkedUploadEnabled;
+	}
+
+	/**
+	 * 设置分片大小
+	 * 
+	 * @param chunkSize
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.mChunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+	}
+
+	/**
+	 * 设置同时上传的分片数量
+	 * 
+	 * @param maxParallelChunks
+	 */
+	public void setMaxParallelChunks(int maxParallelChunks) {
+		this.mMaxParallelChunks = maxParallelChunks;
+	}
+
+	/**
+	 * 设置上传进度回调
+	 * 
+	 * @param onUploadProgressListener
+	 */
+	public void setOnUploadProgressListener(
+			OnUploadProgressListener onUploadProgressListener) {
+		this.mOnUploadProgressListener = onUploadProgressListener;
+	}
+
+	/**
+	 * 待上传的分片
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private static class Chunk {
+		/** 文件参数 */
+		private final NameValuePair mPair;
+		/** 文件 */
+		private final File mFile;
+		/** 文件的上传进度 */
+		private final ChunkedUploadState mState;
+		/** 分片序号 */
+		private final int mIndex;
+
+		/**
+		 * 构造
+		 * 
+		 * @param pair
+		 * @param file
+		 * @param state
+		 * @param index
+		 */
+		private Chunk(NameValuePair pair, File file, ChunkedUploadState state,
+				int index) {
+			mPair = pair;
+			mFile = file;
+			mState = state;
+			mIndex = index;
+		}
+	}
+
+	/**
+	 * 一次上传中待上传的分片，由发起上传的线程及调度器中的辅助任务共同上传。发起上传的线程本身即为
+	 * 调度器的工作线程，因此结束时不等待尚未开始的辅助任务，避免工作线程互相等待
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private class ChunkBatch implements Runnable {
+		/** 待上传的分片 */
+		private final LinkedList<Chunk> mChunks;
+		/** 上传进度 */
+		private final ProgressCounter mProgress;
+		/** 首个失败分片的错误码 */
+		private int mErrorCode = ATTEMPT_SUCCEEDED;
+		/** 正在上传的线程数 */
+		private int mActiveCount;
+		/** 是否已经结束，结束后开始的辅助任务直接返回 */
+		private boolean mIsClosed;
+
+		/**
+		 * 构造
+		 * 
+		 * @param chunks
+		 * @param progress
+		 */
+		private ChunkBatch(List<Chunk> chunks, ProgressCounter progress) {
+			mChunks = new LinkedList<Chunk>(chunks);
+			mProgress = progress;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (mIsClosed) {
+					return;
+				}
+				mActiveCount++;
+			}
+			try {
+				Process.setThreadPriority(getPriority());
+				Chunk chunk;
+				while ((chunk = next()) != null) {
+					int result = uploadChunk(chunk);
+					if (result == ATTEMPT_SUCCEEDED) {
+						mProgress.add(chunk.mState.getChunkLength(chunk.mIndex));
+					} else {
+						fail(result);
+					}
 				}
 			} finally {
-				if (client != null) {
-					client.close();
+				synchronized (this) {
+					mActiveCount--;
+					notifyAll();
 				}
 			}
+		}
+
+		/**
+		 * 取出下一个待上传的分片
+		 * 
+		 * @return 已撤销、已有分片失败或全部分片已取出时返回null
+		 */
+		private synchronized Chunk next() {
+			if (isCancel() || mErrorCode != ATTEMPT_SUCCEEDED) {
+				return null;
+			}
+			return mChunks.poll();
+		}
+
+		/**
+		 * 记录分片失败，其余分片不再上传
+		 * 
+		 * @param errorCode
+		 */
+		private synchronized void fail(int errorCode) {
+			if (mErrorCode == ATTEMPT_SUCCEEDED) {
+				mErrorCode = errorCode;
+			}
+		}
+
+		/**
+		 * 结束上传，等待正在上传的分片完成
+		 * 
+		 * @return 首个失败分片的错误码，全部成功时返回{@link #ATTEMPT_SUCCEEDED}
+		 * @throws InterruptedException
+		 */
+		private synchronized int close() throws InterruptedException {
+			mIsClosed = true;
+			while (mActiveCount > 0) {
+				wait();
+			}
+			return mErrorCode;
+		}
+	}
+
+	/**
+	 * 统计全部文件的上传进度，并回调listener
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private class ProgressCounter {
+		/** 已上传的字节数 */
+		private long mUploadedBytes;
+		/** 总字节数 */
+		private final long mTotalBytes;
 
-			tryCount++;
+		/**
+		 * 构造
+		 * 
+		 * @param uploadedBytes
+		 * @param totalBytes
+		 */
+		private ProgressCounter(long uploadedBytes, long totalBytes) {
+			mUploadedBytes = uploadedBytes;
+			mTotalBytes = totalBytes;
 		}
 
-		if (mOnRequestTaskListener != null) {
-			mOnRequestTaskListener
-					.onFailed(IRequestModelErrorCode.ERROR_CODE_NET_FAILED);
+		/**
+		 * 增加已上传的字节数
+		 * 
+		 * @param bytes
+		 */
+		private synchronized void add(long bytes) {
+			mUploadedBytes += bytes;
+			if (mOnUploadProgressListener != null) {
+				mOnUploadProgressListener.onUploadProgress(mUploadedBytes,
+						mTotalBytes);
+			}
 		}
 	}
 
+	/**
+	 * 分片上传进度的回调，每完成一个分片回调一次
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	public interface OnUploadProgressListener {
+		/**
+		 * 上传进度
+		 * 
+		 * @param uploadedBytes
+		 *            已上传的字节数，包含此前已完成的分片
+		 * @param totalBytes
+		 *            全部文件的字节数
+		 */
+		void onUploadProgress(long uploadedBytes, long totalBytes);
+	}
+
 	/**
 	 * 传递上传文件参数
 	 * 
@@ -1,27 +1,43 @@
 package com.ifeng.util.net.requestor;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPInputStream;
 
 import org.apache.http.Header;
 import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
 import android.content.Context;
 import android.net.Uri;
 import android.os.Process;
 
+import com.ifeng.util.ByteArrayPool;
+import com.ifeng.util.PooledByteArrayOutputStream;
 import com.ifeng.util.logging.Log;
-import com.ifeng.util.net.ProxyHttpClient;
+import com.ifeng.util.model.PriorityScheduler;
+import com.ifeng.util.net.NetworkProfile;
+import com.ifeng.util.net.SharedHttpClient;
+import com.ifeng.util.net.requestor.HostLimiter.HostState;
+import com.ifeng.util.net.requestor.RequestMetrics.EndpointMetrics;
+import com.ifeng.util.net.requestor.RequestMetrics.Phase;
 
 /**
  * 从服务器获取数据的网络请求类
@@ -34,9 +50,6 @@ public class WebRequestTask extends RequestTask {
 	/** log tag. */
 	protected static final String TAG = WebRequestTask.class.getSimpleName();
 
-	/** 访问网络失败时，重试间隔时间 */
-	protected static final long SLEEP_TIME_WHILE_REQUEST_FAILED = 1000L;
-
 	/**
 	 * 参数提交方式
 	 * 
@@ -55,10 +68,14 @@ public class WebRequestTask extends RequestTask {
 	 */
 	private RequestType mRequestType = RequestType.POST;
 
-	/**
-	 * 请求尝试次数
-	 */
-	protected static final int TRY_COUNT = 3;
+	/** 请求已完成，无需重试 */
+	protected static final int ATTEMPT_SUCCEEDED = 0;
+
+	/** 计算对冲请求延时所需的最少样本数，样本不足时不发出对冲请求 */
+	private static final int HEDGE_MIN_SAMPLES = 20;
+
+	/** 对冲请求的最小延时 */
+	private static final long HEDGE_MIN_DELAY = 20;
 
 	/**
 	 * 访问Url
@@ -78,6 +95,45 @@ public class WebRequestTask extends RequestTask {
 	/** context */
 	protected Context mContext;
 
+	/** 是否以流的方式将数据交由listener处理 */
+	private boolean mStreamEnabled;
+
+	/** 已有缓存的ETag，用于条件请求 */
+	private String mCacheETag;
+
+	/** 已有缓存的Last-Modified，用于条件请求 */
+	private String mCacheLastModified;
+
+	/** 重试策略 */
+	private RetryPolicy mRetryPolicy = new RetryPolicy();
+
+	/** 已经尝试的次数 */
+	private int mAttemptCount;
+
+	/** 是否已经安排了延时重试或正在等待域名的并发许可 */
+	private volatile boolean mIsDeferred;
+
+	/** 已经安排的延时重试，撤销时一并取消 */
+	private volatile Future<?> mRetryFuture;
+
+	/** 任务执行的序号，每次执行时递增，用于丢弃上次执行遗留的延时重试 */
+	private volatile int mRunId;
+
+	/** 正在执行的请求，撤销时中断以释放连接 */
+	private final Set<HttpUriRequest> mActiveRequests = new HashSet<HttpUriRequest>();
+
+	/** 统计所使用的接口标识，为null时不进行统计 */
+	private String mMetricsEndpoint;
+
+	/** 当前请求的统计 */
+	private EndpointMetrics mMetrics;
+
+	/** 对冲请求所使用的响应耗时百分位，为0时不发出对冲请求 */
+	private double mHedgePercentile;
+
+	/** 是否压缩POST提交的数据 */
+	private boolean mRequestCompressionEnabled;
+
 	/**
 	 * 构造函数
 	 * 
@@ -146,118 +202,768 @@ public class WebRequestTask extends RequestTask {
 			return;
 		}
 
-		int tryCount = 0;
-		while (tryCount < TRY_COUNT) {
-			ProxyHttpClient client = null;
-			try {
-				client = new ProxyHttpClient(mContext);
-				String url = mUrl;
-
-				HttpUriRequest request = null;
-				if (mParams != null) {
-					if (mRequestType == RequestType.POST) {
-						request = new HttpPost(url);
-						UrlEncodedFormEntity formEntity = new UrlEncodedFormEntity(
-								mParams, HTTP.UTF_8);
-						((HttpPost) request).setEntity(formEntity);
-					} else {
-						StringBuffer paramsStr = new StringBuffer();
-						if (url.indexOf('?') < 0) {
-							url = url + '?';
-						}
-						for (NameValuePair param : mParams) {
-							if (paramsStr.length() != 0) {
-								paramsStr.append('&');
-							}
-							paramsStr.append(param.getName()).append('=')
-									.append(Uri.encode(param.getValue()));
+		RetryBudget.onRequest();
+		HostLimiter.observeNetwork(mContext);
+		mMetrics = RequestMetrics.getEndpoint(mMetricsEndpoint);
+		if (mMetrics != null) {
+			mMetrics.onRequest();
+		}
+		mAttemptCount = 0;
+		mRunId++;
+		performAttempt();
+	}
 
-						}
-						request = new HttpGet(url + paramsStr);
-						if (DEBUG) {
-							Log.d(TAG, "---- requst url:" + (url + paramsStr));
-						}
-					}
+	/**
+	 * 执行一次请求，失败时根据重试策略安排延时重试，等待期间不占用线程；域名熔断中时直接失败，
+	 * 域名并发数已满时等待许可释放后再执行
+	 */
+	private void performAttempt() {
+		mIsDeferred = false;
+		final int runId = mRunId;
+		final HostState host = HostLimiter.getHost(Uri.parse(mUrl).getHost());
+		if (host.isOpen()) {
+			host.onRejected();
+			retryOrFail(IRequestModelErrorCode.ERROR_CODE_CIRCUIT_OPEN);
+			return;
+		}
+
+		Runnable waiter = new Runnable() {
+
+			@Override
+			public void run() {
+				if (isCancel() || runId != mRunId) {
+					host.release();
+					return;
+				}
+				Process.setThreadPriority(getPriority());
+				performAttempt(host);
+			}
+		};
+		if (!host.acquire(waiter, getLane())) {
+			// 等待许可期间不占用线程
+			mIsDeferred = true;
+			return;
+		}
+		performAttempt(host);
+	}
+
+	/**
+	 * 已获得域名的并发许可，执行一次请求并记录熔断统计
+	 * 
+	 * @param host
+	 */
+	private void performAttempt(HostState host) {
+		int errorCode;
+		try {
+			if (!host.allowRequest()) {
+				errorCode = IRequestModelErrorCode.ERROR_CODE_CIRCUIT_OPEN;
+			} else {
+				mAttemptCount++;
+				errorCode = attempt();
+				if (isCancel()) {
+					host.onIgnored();
+				} else if (errorCode == ATTEMPT_SUCCEEDED) {
+					host.onSuccess();
 				} else {
-					request = new HttpPost(url);
-					if (DEBUG) {
-						Log.d(TAG, "---- requst url:" + url);
-					}
+					host.onFailure();
 				}
+			}
+		} finally {
+			host.release();
+		}
+
+		if (errorCode != ATTEMPT_SUCCEEDED) {
+			retryOrFail(errorCode);
+		}
+	}
+
+	/**
+	 * 执行一次请求，可由子类进行重写
+	 * 
+	 * @return 请求已完成并回调listener时返回{@link #ATTEMPT_SUCCEEDED}，否则返回错误码，将根据重试策略重试
+	 */
+	protected int attempt() {
+		HttpUriRequest request = null;
+		HedgeRace race = null;
+		try {
+			HttpClient client = SharedHttpClient.getHttpClient(mContext);
+			request = newRequest();
+
+			HttpResponse response;
+			long hedgeDelay = getHedgeDelay(request);
+			if (hedgeDelay >= 0) {
+				race = new HedgeRace();
+				response = executeHedged(client, request, race, hedgeDelay);
+			} else {
+				HttpContext httpContext = new BasicHttpContext();
+				long startTime = System.currentTimeMillis();
+				response = client.execute(request, httpContext);
+				recordResponseTime(httpContext, startTime);
+			}
+
+			int statusCode = response.getStatusLine().getStatusCode();
+			// 服务器不支持压缩的请求数据，记录后改为提交未压缩的数据
+			if (statusCode == HttpStatus.SC_UNSUPPORTED_MEDIA_TYPE
+					&& RequestCompression.isCompressed(request)) {
+				if (response.getEntity() != null) {
+					response.getEntity().consumeContent();
+				}
+				RequestCompression.markUnsupported(Uri.parse(mUrl).getHost());
+				return attempt();
+			}
+			if (mRetryPolicy.isRetryableStatus(statusCode)) {
+				if (response.getEntity() != null) {
+					response.getEntity().consumeContent();
+				}
+				if (DEBUG) {
+					Log.d(TAG, "---- web request failed with status:"
+							+ statusCode);
+				}
+				return IRequestModelErrorCode.ERROR_CODE_SERVICE_ERROR;
+			}
+
+			handleResponse(response);
+			return ATTEMPT_SUCCEEDED;
+		} catch (Exception e) {
+			if (!isCancel()) {
+				e.printStackTrace();
+			}
+			// 中断请求，将连接归还连接池
+			if (request != null) {
+				request.abort();
+			}
+			if (race != null) {
+				race.abortAll();
+			}
+		} finally {
+			unregisterRequest(request);
+			if (race != null) {
+				race.unregisterAll();
+			}
+		}
+
+		return IRequestModelErrorCode.ERROR_CODE_NET_FAILED;
+	}
+
+	/**
+	 * 创建请求并设置请求头，登记为正在执行的请求
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private HttpUriRequest newRequest() throws Exception {
+		HttpUriRequest request = createRequest();
+		NetworkProfile.getCurrent().applyTo(request.getParams());
+		applyHeaders(request);
+		registerRequest(request);
+
+		// 携带已有缓存的校验信息，数据未变化时服务器将返回304
+		if (isRevalidateMode()) {
+			if (mCacheETag != null) {
+				request.setHeader("If-None-Match", mCacheETag);
+			}
+			if (mCacheLastModified != null) {
+				request.setHeader("If-Modified-Since", mCacheLastModified);
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * 计算对冲请求的延时，即该接口响应耗时的指定百分位
+	 * 
+	 * @param request
+	 * @return 不发出对冲请求时返回-1
+	 */
+	private long getHedgeDelay(HttpUriRequest request) {
+		// 仅对幂等的GET请求进行对冲
+		if (mHedgePercentile <= 0 || mMetrics == null
+				|| !(request instanceof HttpGet)) {
+			return -1;
+		}
+		HedgeBudget.onRequest();
+		LatencyHistogram histogram = mMetrics.getHistogram(Phase.RESPONSE);
+		if (histogram.getCount() < HEDGE_MIN_SAMPLES) {
+			return -1;
+		}
+		return Math.max(HEDGE_MIN_DELAY,
+				histogram.getValueAtPercentile(mHedgePercentile));
+	}
 
-				if (mHeaders != null) {
-					for (NameValuePair header : mHeaders) {
-						request.setHeader(Uri.encode(header.getName()),
-								Uri.encode(header.getValue()));
+	/**
+	 * 执行请求，超过延时仍未收到响应时发出相同的对冲请求，先收到的响应胜出，另一个请求被中断
+	 * 
+	 * @param client
+	 * @param request
+	 * @param race
+	 * @param hedgeDelay
+	 * @return 胜出的响应
+	 * @throws Exception
+	 *             所有请求均失败
+	 */
+	private HttpResponse executeHedged(final HttpClient client,
+			HttpUriRequest request, final HedgeRace race, long hedgeDelay)
+			throws Exception {
+		race.add(request);
+		Future<?> hedgeFuture = PriorityScheduler.getInstance().schedule(
+				new Runnable() {
+
+					@Override
+					public void run() {
+						executeHedge(client, race);
 					}
+				}, getLane(), hedgeDelay);
+
+		try {
+			HttpContext httpContext = new BasicHttpContext();
+			long startTime = System.currentTimeMillis();
+			HttpResponse response = client.execute(request, httpContext);
+			if (race.offer(request, response)) {
+				recordResponseTime(httpContext, startTime);
+			} else {
+				request.abort();
+			}
+		} catch (Exception e) {
+			race.fail(e);
+		}
+
+		// 请求已有结果，尚未发出的对冲请求不再需要
+		hedgeFuture.cancel(false);
+		return race.await();
+	}
+
+	/**
+	 * 发出对冲请求。对冲请求同样占用域名的并发许可并计入熔断统计，域名并发已满或熔断器不允许请求时不发出
+	 * 
+	 * @param client
+	 * @param race
+	 */
+	private void executeHedge(HttpClient client, HedgeRace race) {
+		if (isCancel() || race.isDone()) {
+			return;
+		}
+		HostState host = HostLimiter.getHost(Uri.parse(mUrl).getHost());
+		if (!host.tryAcquire()) {
+			return;
+		}
+		try {
+			if (!host.allowRequest()) {
+				return;
+			}
+			if (!HedgeBudget.tryAcquire()) {
+				host.onIgnored();
+				return;
+			}
+			Process.setThreadPriority(getPriority());
+			executeHedge(client, race, host);
+		} finally {
+			host.release();
+		}
+	}
+
+	/**
+	 * 已获得域名的并发许可，发出对冲请求并记录熔断统计
+	 * 
+	 * @param client
+	 * @param race
+	 * @param host
+	 */
+	private void executeHedge(HttpClient client, HedgeRace race,
+			HostState host) {
+		HttpUriRequest request = null;
+		boolean isAdded = false;
+		boolean isResponded = false;
+		try {
+			request = newRequest();
+			isAdded = race.add(request);
+			if (!isAdded) {
+				host.onIgnored();
+				request.abort();
+				unregisterRequest(request);
+				return;
+			}
+			if (DEBUG) {
+				Log.d(TAG, "---- send hedged request:" + request.getURI());
+			}
+			if (mMetrics != null) {
+				mMetrics.onHedge();
+			}
+
+			HttpContext httpContext = new BasicHttpContext();
+			long startTime = System.currentTimeMillis();
+			HttpResponse response = client.execute(request, httpContext);
+			isResponded = true;
+			host.onSuccess();
+			if (race.offer(request, response)) {
+				recordResponseTime(httpContext, startTime);
+				if (mMetrics != null) {
+					mMetrics.onHedgeWin();
 				}
+			} else {
+				request.abort();
+			}
+		} catch (Exception e) {
+			// 未发出、已被撤销或其它请求已经胜出而中断时，不计入熔断统计
+			if (!isResponded) {
+				if (!isAdded || isCancel() || race.isDone()) {
+					host.onIgnored();
+				} else {
+					host.onFailure();
+				}
+			}
+			if (request != null) {
+				request.abort();
+			}
+			if (isAdded) {
+				race.fail(e);
+			} else {
+				unregisterRequest(request);
+			}
+		}
+	}
 
-				HttpResponse response = client.execute(request);
-				String content = null;
+	/**
+	 * 登记正在执行的请求，若任务已经撤销，则立即中断该请求
+	 * 
+	 * @param request
+	 */
+	protected final void registerRequest(HttpUriRequest request) {
+		synchronized (mActiveRequests) {
+			mActiveRequests.add(request);
+		}
+		if (isCancel()) {
+			request.abort();
+		}
+	}
+
+	/**
+	 * 请求结束后解除登记
+	 * 
+	 * @param request
+	 *            可为null
+	 */
+	protected final void unregisterRequest(HttpUriRequest request) {
+		if (request == null) {
+			return;
+		}
+		synchronized (mActiveRequests) {
+			mActiveRequests.remove(request);
+		}
+	}
+
+	/**
+	 * 撤销任务，中断正在执行的请求并释放连接，取消已经安排的重试
+	 */
+	@Override
+	public void cancel() {
+		super.cancel();
 
-				boolean isGzip = false;
-				Header header = response.getEntity().getContentEncoding();
-				if (header != null) {
-					for (HeaderElement element : header.getElements()) {
-						if (element.getName().equalsIgnoreCase("gzip")) {
-							isGzip = true;
-							break;
+		Future<?> retryFuture = mRetryFuture;
+		if (retryFuture != null) {
+			retryFuture.cancel(false);
+		}
+
+		HttpUriRequest[] requests;
+		synchronized (mActiveRequests) {
+			requests = mActiveRequests.toArray(new HttpUriRequest[mActiveRequests
+					.size()]);
+			mActiveRequests.clear();
+		}
+		for (HttpUriRequest request : requests) {
+			if (DEBUG) {
+				Log.d(TAG, "---- abort request:" + request.getURI());
+			}
+			request.abort();
+		}
+	}
+
+	/**
+	 * 设置请求头
+	 * 
+	 * @param request
+	 */
+	protected void applyHeaders(HttpUriRequest request) {
+		if (mHeaders != null) {
+			for (NameValuePair header : mHeaders) {
+				request.setHeader(Uri.encode(header.getName()),
+						Uri.encode(header.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * 请求失败后，在重试次数及全局重试预算允许时，经退避等待后重试，否则回调失败
+	 * 
+	 * @param errorCode
+	 *            最终失败时回调的错误码
+	 */
+	private void retryOrFail(int errorCode) {
+		if (isCancel()) {
+			// 请求已经撤销
+			return;
+		}
+
+		// 域名熔断中，不再重试；非幂等请求已被服务器处理，服务器返回错误时不再重试
+		if (errorCode != IRequestModelErrorCode.ERROR_CODE_CIRCUIT_OPEN
+				&& (isIdempotent() || errorCode != IRequestModelErrorCode.ERROR_CODE_SERVICE_ERROR)
+				&& mAttemptCount < mRetryPolicy.maxAttempts
+				&& (!mRetryPolicy.useRetryBudget || RetryBudget.tryAcquire())) {
+			long delay = mRetryPolicy.getBackoffDelay(mAttemptCount - 1);
+			if (DEBUG) {
+				Log.d(TAG, "---- web request retry after " + delay + "ms");
+			}
+			if (mMetrics != null) {
+				mMetrics.onRetry();
+			}
+			mIsDeferred = true;
+			final int runId = mRunId;
+			mRetryFuture = PriorityScheduler.getInstance().schedule(
+					new Runnable() {
+
+						@Override
+						public void run() {
+							// 任务已撤销或已重新执行，丢弃本次重试
+							if (isCancel() || runId != mRunId) {
+								return;
+							}
+							Process.setThreadPriority(getPriority());
+							performAttempt();
 						}
+					}, getLane(), delay);
+			return;
+		}
+
+		if (mMetrics != null) {
+			mMetrics.onFailure();
+		}
+		if (mOnRequestTaskListener != null) {
+			mOnRequestTaskListener.onFailed(errorCode);
+		}
+	}
+
+	/**
+	 * 创建请求，可由子类进行重写
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	protected HttpUriRequest createRequest() throws Exception {
+		String url = mUrl;
+		HttpUriRequest request;
+		if (mParams != null) {
+			if (mRequestType == RequestType.POST) {
+				request = new HttpPost(url);
+				HttpEntity formEntity = new UrlEncodedFormEntity(mParams,
+						HTTP.UTF_8);
+				if (mRequestCompressionEnabled
+						&& RequestCompression.isSupported(Uri.parse(url)
+								.getHost())) {
+					HttpEntity gzipEntity = RequestCompression
+							.compress(formEntity);
+					if (gzipEntity != null) {
+						formEntity = gzipEntity;
 					}
 				}
-				if (isGzip) {
-					GZIPInputStream gzIn = null;
-					BufferedReader reader = null;
-					try {
-						gzIn = new GZIPInputStream(response.getEntity()
-								.getContent());
-						reader = new BufferedReader(new InputStreamReader(gzIn));
-						StringBuffer str = new StringBuffer();
-						String line = null;
-						while ((line = reader.readLine()) != null) {
-							str.append(line);
-						}
-						content = str.toString();
-					} finally {
-						if (reader != null) {
-							reader.close();
-						}
-						if (gzIn != null) {
-							gzIn.close();
-						}
+				((HttpPost) request).setEntity(formEntity);
+			} else {
+				StringBuffer paramsStr = new StringBuffer();
+				if (url.indexOf('?') < 0) {
+					url = url + '?';
+				}
+				for (NameValuePair param : mParams) {
+					if (paramsStr.length() != 0) {
+						paramsStr.append('&');
 					}
-				} else {
-					content = EntityUtils.toString(response.getEntity());
+					paramsStr.append(param.getName()).append('=')
+							.append(Uri.encode(param.getValue()));
+
 				}
+				request = new HttpGet(url + paramsStr);
 				if (DEBUG) {
-					Log.d(TAG,
-							"---- web request over time:"
-									+ System.currentTimeMillis());
+					Log.d(TAG, "---- requst url:" + (url + paramsStr));
 				}
-				mOnRequestTaskListener.onSuccess(content);
+			}
+		} else {
+			request = new HttpPost(url);
+			if (DEBUG) {
+				Log.d(TAG, "---- requst url:" + url);
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * 处理服务器响应，将数据交由listener
+	 * 
+	 * @param response
+	 * @throws Exception
+	 */
+	protected void handleResponse(HttpResponse response) throws Exception {
+		String content = null;
+
+		if (mOnRequestTaskListener instanceof OnRevalidateRequestTaskListener) {
+			OnRevalidateRequestTaskListener revalidateListener = (OnRevalidateRequestTaskListener) mOnRequestTaskListener;
+			if (isRevalidateMode()
+					&& response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+				if (response.getEntity() != null) {
+					response.getEntity().consumeContent();
+				}
+				if (DEBUG) {
+					Log.d(TAG, "---- web request not modified time:"
+							+ System.currentTimeMillis());
+				}
+				revalidateListener.onNotModified();
 				return;
-			} catch (Exception e) {
-				e.printStackTrace();
-				try {
-					Thread.sleep(SLEEP_TIME_WHILE_REQUEST_FAILED);
-				} catch (InterruptedException e1) {
-					e1.printStackTrace();
+			}
+			revalidateListener.onValidatorsReceived(
+					getHeaderValue(response, "ETag"),
+					getHeaderValue(response, "Last-Modified"));
+		}
+
+		boolean isGzip = false;
+		Header header = response.getEntity().getContentEncoding();
+		if (header != null) {
+			for (HeaderElement element : header.getElements()) {
+				if (element.getName().equalsIgnoreCase("gzip")) {
+					isGzip = true;
+					break;
 				}
+			}
+		}
+
+		HttpEntity entity = response.getEntity();
+		final CountingInputStream rawIn = new CountingInputStream(
+				entity.getContent());
+
+		// 流式处理，数据不经过完整的字符串
+		if (isStreamMode()) {
+			InputStream in = rawIn;
+			CountingInputStream unzipIn = null;
+			try {
+				if (isGzip) {
+					unzipIn = new CountingInputStream(new GZIPInputStream(in));
+					in = unzipIn;
+				}
+				((OnStreamRequestTaskListener) mOnRequestTaskListener)
+						.onSuccess(in, EntityUtils.getContentCharSet(entity));
 			} finally {
-				if (client != null) {
-					client.close();
+				in.close();
+			}
+			recordBytes(rawIn, unzipIn);
+			if (DEBUG) {
+				Log.d(TAG,
+						"---- web stream request over time:"
+								+ System.currentTimeMillis());
+			}
+			return;
+		}
+
+		long readStartTime = System.currentTimeMillis();
+		CountingInputStream unzipIn = null;
+		// 数据直接读入缓冲池中的缓冲区，并从中解码为字符串
+		String charset = EntityUtils.getContentCharSet(entity);
+		InputStream in = rawIn;
+		PooledByteArrayOutputStream out = null;
+		try {
+			if (isGzip) {
+				unzipIn = new CountingInputStream(new GZIPInputStream(rawIn));
+				in = unzipIn;
+				out = new PooledByteArrayOutputStream();
+				if (charset == null) {
+					charset = HTTP.UTF_8;
+				}
+			} else {
+				// 已知数据长度时按长度分配，避免扩容
+				long contentLength = entity.getContentLength();
+				if (contentLength > 0
+						&& contentLength <= ByteArrayPool.MAX_BUFFER_SIZE) {
+					out = new PooledByteArrayOutputStream((int) contentLength);
+				} else {
+					out = new PooledByteArrayOutputStream();
 				}
+				if (charset == null) {
+					charset = HTTP.DEFAULT_CONTENT_CHARSET;
+				}
+			}
+			out.readFrom(in);
+			content = out.toString(charset);
+		} finally {
+			if (out != null) {
+				out.close();
 			}
+			in.close();
+		}
+		long readTime = System.currentTimeMillis() - readStartTime;
+		if (mMetrics != null) {
+			mMetrics.getHistogram(Phase.BODY_READ).record(readTime);
+		}
+		NetworkProfile.recordThroughput(rawIn.getCount(), readTime);
+		recordBytes(rawIn, unzipIn);
+		if (DEBUG) {
+			Log.d(TAG,
+					"---- web request over time:" + System.currentTimeMillis());
+		}
+		mOnRequestTaskListener.onSuccess(content);
+	}
 
-			tryCount++;
+	/**
+	 * 记录获取连接及等待响应的耗时
+	 * 
+	 * @param httpContext
+	 * @param startTime
+	 *            开始执行请求的时间
+	 */
+	private void recordResponseTime(HttpContext httpContext, long startTime) {
+		long responseTime = System.currentTimeMillis();
+		NetworkProfile.recordResponseTime(responseTime - startTime);
+		if (mMetrics == null) {
+			return;
+		}
+		mMetrics.getHistogram(Phase.RESPONSE).record(responseTime - startTime);
+		Object sentTime = httpContext
+				.getAttribute(SharedHttpClient.ATTR_REQUEST_SENT_TIME);
+		if (sentTime instanceof Long) {
+			long sent = ((Long) sentTime).longValue();
+			mMetrics.getHistogram(Phase.CONNECT).record(sent - startTime);
+			mMetrics.getHistogram(Phase.FIRST_BYTE).record(responseTime - sent);
+		} else {
+			mMetrics.getHistogram(Phase.FIRST_BYTE).record(
+					responseTime - startTime);
 		}
+	}
 
-		if (mOnRequestTaskListener != null) {
-			mOnRequestTaskListener
-					.onFailed(IRequestModelErrorCode.ERROR_CODE_NET_FAILED);
+	/**
+	 * 记录传输及解压后的数据量
+	 * 
+	 * @param rawIn
+	 *            原始数据流
+	 * @param unzipIn
+	 *            解压后的数据流，未压缩时为null
+	 */
+	private void recordBytes(CountingInputStream rawIn,
+			CountingInputStream unzipIn) {
+		if (mMetrics != null) {
+			mMetrics.onBytes(rawIn.getCount(),
+					unzipIn == null ? rawIn.getCount() : unzipIn.getCount());
 		}
 	}
 
+	/**
+	 * 设置统计所使用的接口标识，为null时不进行统计
+	 * 
+	 * @param metricsEndpoint
+	 */
+	public void setMetricsEndpoint(String metricsEndpoint) {
+		this.mMetricsEndpoint = metricsEndpoint;
+	}
+
+	/**
+	 * 设置对冲请求所使用的响应耗时百分位，仅对GET请求有效，需要同时开启统计
+	 * 
+	 * @param hedgePercentile
+	 *            0 - 100，为0时不发出对冲请求
+	 */
+	public void setHedgePercentile(double hedgePercentile) {
+		this.mHedgePercentile = hedgePercentile;
+	}
+
+	/**
+	 * 设置是否以gzip压缩POST提交的数据，超过{@link RequestCompression#setMinSize(int)}
+	 * 的数据才会压缩，服务器不支持时自动改为提交未压缩的数据
+	 * 
+	 * @param requestCompressionEnabled
+	 */
+	public void setRequestCompressionEnabled(boolean requestCompressionEnabled) {
+		this.mRequestCompressionEnabled = requestCompressionEnabled;
+	}
+
+	@Override
+	public boolean isPending() {
+		return mIsDeferred;
+	}
+
+	/**
+	 * 请求是否幂等，仅幂等请求在服务器返回{@link RetryPolicy#retryableStatusCodes}中的状态码时重试，
+	 * 可由子类进行重写
+	 * 
+	 * @return 默认GET请求为幂等请求
+	 */
+	protected boolean isIdempotent() {
+		return mRequestType == RequestType.GET;
+	}
+
+	/**
+	 * @return the mRetryPolicy
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return mRetryPolicy;
+	}
+
+	/**
+	 * 设置重试策略
+	 * 
+	 * @param retryPolicy
+	 *            the mRetryPolicy to set
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.mRetryPolicy = retryPolicy == null ? RetryPolicy
+				.newNoRetryPolicy() : retryPolicy;
+	}
+
+	/**
+	 * 获取响应头的值
+	 * 
+	 * @param response
+	 * @param name
+	 * @return 不存在时返回null
+	 */
+	private static String getHeaderValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * 是否发起条件请求
+	 * 
+	 * @return
+	 */
+	private boolean isRevalidateMode() {
+		return (mCacheETag != null || mCacheLastModified != null)
+				&& mOnRequestTaskListener instanceof OnRevalidateRequestTaskListener;
+	}
+
+	/**
+	 * 设置已有缓存的校验信息，listener为{@link OnRevalidateRequestTaskListener}时将发起条件请求
+	 * 
+	 * @param eTag
+	 *            ETag，可为null
+	 * @param lastModified
+	 *            Last-Modified，可为null
+	 */
+	public void setCacheValidators(String eTag, String lastModified) {
+		this.mCacheETag = eTag;
+		this.mCacheLastModified = lastModified;
+	}
+
+	/**
+	 * 是否以流的方式处理数据
+	 * 
+	 * @return
+	 */
+	private boolean isStreamMode() {
+		return mStreamEnabled
+				&& mOnRequestTaskListener instanceof OnStreamRequestTaskListener;
+	}
+
+	/**
+	 * 设置是否以流的方式将数据交由listener处理，要求listener为{@link OnStreamRequestTaskListener}
+	 * 
+	 * @param streamEnabled
+	 */
+	public void setStreamEnabled(boolean streamEnabled) {
+		this.mStreamEnabled = streamEnabled;
+	}
+
 	/**
 	 * @return the mRequestType
 	 */
@@ -273,4 +979,127 @@ public class WebRequestTask extends RequestTask {
 		this.mRequestType = requestType;
 	}
 
+	/**
+	 * 原请求与对冲请求的竞争结果，先收到的响应胜出，其余请求被中断
+	 * 
+	 * @author Calvin
+	 * 
+	 */
+	private class HedgeRace {
+		/** 参与竞争的请求 */
+		private final List<HttpUriRequest> mRequests = new ArrayList<HttpUriRequest>();
+		/** 尚未结束的请求数 */
+		private int mPendingCount;
+		/** 是否已有结果 */
+		private boolean mIsDone;
+		/** 胜出的响应 */
+		private HttpResponse mResponse;
+		/** 所有请求均失败时，最后一个请求的异常 */
+		private Exception mError;
+
+		/**
+		 * @return 是否已有结果
+		 */
+		synchronized boolean isDone() {
+			return mIsDone;
+		}
+
+		/**
+		 * 加入竞争
+		 * 
+		 * @param request
+		 * @return 已有结果时返回false
+		 */
+		synchronized boolean add(HttpUriRequest request) {
+			if (mIsDone) {
+				return false;
+			}
+			mRequests.add(request);
+			mPendingCount++;
+			return true;
+		}
+
+		/**
+		 * 收到响应，若为第一个响应则胜出，并中断其余请求
+		 * 
+		 * @param request
+		 * @param response
+		 * @return 是否胜出
+		 */
+		boolean offer(HttpUriRequest request, HttpResponse response) {
+			List<HttpUriRequest> losers;
+			synchronized (this) {
+				mPendingCount--;
+				if (mIsDone) {
+					return false;
+				}
+				mIsDone = true;
+				mResponse = response;
+				notifyAll();
+
+				losers = new ArrayList<HttpUriRequest>(mRequests);
+				losers.remove(request);
+			}
+			for (HttpUriRequest loser : losers) {
+				loser.abort();
+			}
+			return true;
+		}
+
+		/**
+		 * 请求失败，所有请求均失败时结束竞争
+		 * 
+		 * @param e
+		 */
+		synchronized void fail(Exception e) {
+			mPendingCount--;
+			if (!mIsDone && mPendingCount <= 0) {
+				mIsDone = true;
+				mError = e;
+				notifyAll();
+			}
+		}
+
+		/**
+		 * 等待竞争结果
+		 * 
+		 * @return 胜出的响应
+		 * @throws Exception
+		 *             所有请求均失败
+		 */
+		synchronized HttpResponse await() throws Exception {
+			while (!mIsDone) {
+				wait();
+			}
+			if (mResponse == null) {
+				throw mError;
+			}
+			return mResponse;
+		}
+
+		/**
+		 * 中断所有请求
+		 */
+		void abortAll() {
+			for (HttpUriRequest request : getRequests()) {
+				request.abort();
+			}
+		}
+
+		/**
+		 * 解除所有请求的登记
+		 */
+		void unregisterAll() {
+			for (HttpUriRequest request : getRequests()) {
+				unregisterRequest(request);
+			}
+		}
+
+		/**
+		 * @return 参与竞争的请求
+		 */
+		private synchronized List<HttpUriRequest> getRequests() {
+			return new ArrayList<HttpUriRequest>(mRequests);
+		}
+	}
 }